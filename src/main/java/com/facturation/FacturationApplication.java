@@ -2,12 +2,14 @@ package com.facturation;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Classe principale de l'application de facturation
  * Point d'entrée pour démarrer le serveur Spring Boot
  */
 @SpringBootApplication
+@EnableScheduling
 public class FacturationApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,39 @@
+package com.facturation.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Configuration des formats binaires pour les échanges entre services
+ * Les mêmes endpoints servent et acceptent application/cbor et application/x-jackson-smile
+ * selon les en-têtes Accept et Content-Type, avec la configuration Jackson de l'application
+ * (modules, dates, sérialiseurs dédiés)
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    /**
+     * Convertisseur CBOR construit à partir du builder Jackson configuré par Spring Boot
+     * @param builder le builder Jackson de l'application
+     * @return le convertisseur application/cbor
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Convertisseur Smile construit à partir du builder Jackson configuré par Spring Boot
+     * @param builder le builder Jackson de l'application
+     * @return le convertisseur application/x-jackson-smile
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
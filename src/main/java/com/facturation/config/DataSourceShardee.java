@@ -0,0 +1,46 @@
+package com.facturation.config;
+
+import com.facturation.repository.RoutageShards;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource de routage entre les shards : chaque connexion est prise dans le pool du shard
+ * sélectionné sur le thread courant (voir RoutageShards), ou du shard principal à défaut
+ */
+public class DataSourceShardee extends AbstractRoutingDataSource implements Closeable {
+
+    private final List<DataSource> shards;
+
+    public DataSourceShardee(List<DataSource> shards) {
+        this.shards = shards;
+        Map<Object, Object> cibles = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            cibles.put(i, shards.get(i));
+        }
+        setTargetDataSources(cibles);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return RoutageShards.shardCourant();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards) {
+            if (shard instanceof Closeable pool) {
+                pool.close();
+            }
+        }
+    }
+}
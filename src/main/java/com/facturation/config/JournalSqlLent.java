@@ -0,0 +1,182 @@
+package com.facturation.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal des requêtes SQL lentes, en remplacement de show-sql
+ * Enveloppe la DataSource pour chronométrer chaque exécution de requête : seules les requêtes au-delà du seuil,
+ * plus un échantillon des autres, sont journalisées avec leurs paramètres et la méthode de service d'origine
+ * (recherchée dans la pile uniquement lorsqu'une requête est journalisée)
+ */
+public final class JournalSqlLent {
+
+    private static final Logger journal = LoggerFactory.getLogger("facturation.slow-log.sql");
+    private static final StackWalker PILE = StackWalker.getInstance();
+    private static final String PACKAGE_SERVICES = "com.facturation.service.";
+    private static final int LONGUEUR_MAX_PARAMETRE = 64;
+
+    private final long seuilNanos;
+    private final double tauxEchantillon;
+
+    public JournalSqlLent(long seuilMs, double tauxEchantillon) {
+        this.seuilNanos = TimeUnit.MILLISECONDS.toNanos(seuilMs);
+        this.tauxEchantillon = tauxEchantillon;
+    }
+
+    /**
+     * Enveloppe une DataSource : les connexions et requêtes obtenues sont chronométrées
+     * @param dataSource la DataSource d'origine (fermée avec l'enveloppe si elle est fermable)
+     * @return la DataSource enveloppée
+     */
+    public DataSource envelopper(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DataSource.class, Closeable.class}, (proxy, methode, args) -> {
+                    if (methode.getName().equals("close") && methode.getDeclaringClass() == Closeable.class) {
+                        if (dataSource instanceof AutoCloseable fermable) {
+                            fermable.close();
+                        }
+                        return null;
+                    }
+                    Object resultat = invoquer(dataSource, methode, args);
+                    return resultat instanceof Connection connexion ? envelopper(connexion) : resultat;
+                });
+    }
+
+    private Connection envelopper(Connection connexion) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, methode, args) -> {
+                    Object resultat = invoquer(connexion, methode, args);
+                    if (resultat instanceof Statement statement && methode.getName().startsWith("prepare")) {
+                        return enveloppe(statement, methode.getReturnType(), (String) args[0]);
+                    }
+                    if (resultat instanceof Statement statement) {
+                        return enveloppe(statement, methode.getReturnType(), null);
+                    }
+                    return resultat;
+                });
+    }
+
+    private Object enveloppe(Statement statement, Class<?> type, String sql) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, new Execution(statement, sql));
+    }
+
+    /**
+     * Chronomètre les exécutions d'une requête et mémorise ses paramètres
+     */
+    private final class Execution implements InvocationHandler {
+
+        private final Statement statement;
+        private final String sql;
+        private Object[] parametres = new Object[8];
+        private int nombreParametres;
+        private int tailleLot;
+
+        Execution(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method methode, Object[] args) throws Throwable {
+            String nom = methode.getName();
+            if (nom.startsWith("execute")) {
+                long debut = System.nanoTime();
+                try {
+                    return invoquer(statement, methode, args);
+                } finally {
+                    long duree = System.nanoTime() - debut;
+                    if (duree >= seuilNanos || echantillonnee()) {
+                        journaliser(args != null && args.length > 0 && args[0] instanceof String requete ? requete : sql,
+                                duree, nom.contains("Batch"));
+                    }
+                    if (nom.contains("Batch")) {
+                        tailleLot = 0;
+                    }
+                }
+            }
+            if (statement instanceof PreparedStatement && nom.startsWith("set")
+                    && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                memoriser(index, nom.equals("setNull") ? null : args[1]);
+            } else if (nom.equals("clearParameters")) {
+                Arrays.fill(parametres, null);
+                nombreParametres = 0;
+            } else if (nom.equals("addBatch")) {
+                tailleLot++;
+            } else if (nom.equals("clearBatch")) {
+                tailleLot = 0;
+            }
+            return invoquer(statement, methode, args);
+        }
+
+        private void memoriser(int index, Object valeur) {
+            if (index > parametres.length) {
+                parametres = Arrays.copyOf(parametres, Math.max(index, parametres.length * 2));
+            }
+            parametres[index - 1] = valeur;
+            nombreParametres = Math.max(nombreParametres, index);
+        }
+
+        private void journaliser(String requete, long dureeNanos, boolean lot) {
+            StringBuilder valeurs = new StringBuilder("[");
+            for (int i = 0; i < nombreParametres; i++) {
+                valeurs.append(i > 0 ? ", " : "").append(formater(parametres[i]));
+            }
+            valeurs.append(']');
+            String origine = PILE.walk(frames -> frames
+                    .filter(f -> f.getClassName().startsWith(PACKAGE_SERVICES) && !f.getClassName().contains("$$"))
+                    .findFirst())
+                    .map(f -> f.getClassName().substring(PACKAGE_SERVICES.length()) + "." + f.getMethodName()
+                            + ":" + f.getLineNumber())
+                    .orElse("-");
+            String duree = String.format("%.1f", dureeNanos / 1_000_000.0);
+            String detailLot = lot ? " (lot de " + tailleLot + ")" : "";
+            if (dureeNanos >= seuilNanos) {
+                journal.warn("SQL lente {} ms{} : {} {} ({})", duree, detailLot, requete, valeurs, origine);
+            } else {
+                journal.info("SQL échantillonnée {} ms{} : {} {} ({})", duree, detailLot, requete, valeurs, origine);
+            }
+        }
+    }
+
+    private boolean echantillonnee() {
+        return tauxEchantillon > 0 && ThreadLocalRandom.current().nextDouble() < tauxEchantillon;
+    }
+
+    private static String formater(Object valeur) {
+        if (valeur == null) {
+            return "NULL";
+        }
+        if (valeur instanceof byte[] octets) {
+            return "<" + octets.length + " octets>";
+        }
+        if (valeur instanceof CharSequence || valeur instanceof Date || valeur instanceof Temporal) {
+            String texte = valeur.toString();
+            return "'" + (texte.length() > LONGUEUR_MAX_PARAMETRE ? texte.substring(0, LONGUEUR_MAX_PARAMETRE) + "…" : texte) + "'";
+        }
+        return String.valueOf(valeur);
+    }
+
+    private static Object invoquer(Object cible, Method methode, Object[] args) throws Throwable {
+        try {
+            return methode.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.facturation.config;
+
+import com.facturation.serializer.FacturationJsonModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration de la sérialisation JSON
+ * Active les sérialiseurs dédiés des factures (réponses de FactureController et factures incluses
+ * dans les clients) lorsque facturation.json.dedicated-serializers=true
+ */
+@Configuration
+public class JsonConfig {
+
+    /**
+     * Module enregistré automatiquement dans l'ObjectMapper de Spring Boot
+     * @return le module des sérialiseurs dédiés
+     */
+    @Bean
+    @ConditionalOnProperty(name = "facturation.json.dedicated-serializers", havingValue = "true")
+    public FacturationJsonModule facturationJsonModule() {
+        return new FacturationJsonModule();
+    }
+}
@@ -0,0 +1,71 @@
+package com.facturation.config;
+
+import com.facturation.repository.RoutageShards;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mise à niveau des données existantes après la mise à jour du schéma par Hibernate (ddl-auto=update),
+ * qui ajoute les colonnes manquantes sans renseigner les lignes existantes ni modifier les colonnes déjà créées
+ * Appliquée sur chaque shard au démarrage, avant l'ouverture du serveur HTTP ; sans effet sur un schéma à jour
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class MiseANiveauSchema {
+
+    private static final String COLONNE_NULLABLE = "SELECT is_nullable FROM information_schema.columns "
+            + "WHERE UPPER(table_name) = ? AND UPPER(column_name) = ? AND table_schema = CURRENT_SCHEMA";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoutageShards routageShards;
+
+    public MiseANiveauSchema(JdbcTemplate jdbcTemplate, RoutageShards routageShards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.routageShards = routageShards;
+    }
+
+    @PostConstruct
+    public void appliquer() {
+        for (int shard = 0; shard < routageShards.getNombreShards(); shard++) {
+            routageShards.executer(shard, () -> {
+                versionnerFactures();
+                reserverClesIdempotence();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Version des factures (verrouillage optimiste, cache des documents) : une colonne ajoutée à une table existante
+     * est nulle pour les factures antérieures, qui deviendraient introuvables par version et non modifiables
+     */
+    private void versionnerFactures() {
+        if (!nullable("FACTURES", "VERSION")) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE factures ALTER COLUMN version SET DEFAULT 0");
+        int renseignees = jdbcTemplate.update("UPDATE factures SET version = 0 WHERE version IS NULL");
+        jdbcTemplate.execute("ALTER TABLE factures ALTER COLUMN version SET NOT NULL");
+        log.info("Version initialisée à 0 pour {} factures existantes", renseignees);
+    }
+
+    /**
+     * Statut des clés d'idempotence : nul pendant la réservation d'une clé, alors que la colonne
+     * était créée non nulle quand seules les réponses terminées étaient enregistrées
+     */
+    private void reserverClesIdempotence() {
+        if (nullable("IDEMPOTENCY_KEYS", "STATUT")) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE idempotency_keys ALTER COLUMN statut DROP NOT NULL");
+        log.info("Statut des clés d'idempotence rendu facultatif pour la réservation des clés");
+    }
+
+    private boolean nullable(String table, String colonne) {
+        return "YES".equals(jdbcTemplate.queryForObject(COLONNE_NULLABLE, String.class, table, colonne));
+    }
+}
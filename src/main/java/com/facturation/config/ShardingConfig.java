@@ -0,0 +1,160 @@
+package com.facturation.config;
+
+import com.facturation.filter.RoutageShardsInterceptor;
+import com.facturation.repository.RoutageShards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration du partitionnement des clients entre plusieurs bases (activé par facturation.sharding.urls)
+ * Le shard principal est la base spring.datasource, qui conserve aussi les données de référence (produits,
+ * taux de TVA, clés d'idempotence) ; les shards supplémentaires partagent ses identifiants de connexion
+ * Au démarrage, le schéma est appliqué à chaque shard comme au shard principal (spring.jpa.hibernate.ddl-auto),
+ * puis les colonnes d'identité des tables partitionnées sont entrelacées : sur N shards, le shard s attribue
+ * les ID premierId + s, premierId + s + N, ... Le premier ID est enregistré sur la base principale au premier
+ * démarrage partitionné, au-delà de ses ID existants (voir RoutageShards.initialiserPremierId)
+ * Une colonne déjà entrelacée (pas égal au nombre de shards) n'est plus modifiée aux démarrages suivants :
+ * la reprendre au MAX(id) courant pendant que d'autres instances insèrent pourrait attribuer un ID déjà utilisé
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${facturation.sharding.urls:}'.isBlank()")
+@RequiredArgsConstructor
+public class ShardingConfig implements WebMvcConfigurer {
+
+    // Tables partitionnées dont l'ID désigne le shard (ou doit rester unique entre les shards)
+    private static final List<String> TABLES_ENTRELACEES = List.of(
+            "clients", "factures", "lignes_facture", "modeles_facture_recurrente", "outbox_changements");
+
+    private final RoutageShards routageShards;
+
+    /**
+     * DataSource de routage, remplaçant celle de Spring Boot
+     * @param proprietes les propriétés spring.datasource du shard principal
+     * @param urls les URL JDBC des shards supplémentaires
+     * @return la DataSource de routage entre les shards
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties proprietes,
+                                 @Value("${facturation.sharding.urls}") List<String> urls) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(proprietes.initializeDataSourceBuilder().build());
+        for (String url : urls) {
+            if (!url.isBlank()) {
+                shards.add(DataSourceBuilder.create()
+                        .driverClassName(proprietes.determineDriverClassName())
+                        .url(url.trim())
+                        .username(proprietes.determineUsername())
+                        .password(proprietes.determinePassword())
+                        .build());
+            }
+        }
+        log.info("Partitionnement des clients sur {} shards", shards.size());
+        return new DataSourceShardee(shards);
+    }
+
+    /**
+     * Initialise les shards une fois la SessionFactory construite (schéma du shard principal déjà appliqué),
+     * avant que l'EntityManagerFactory ne soit utilisée
+     * @param dataSource la DataSource de routage
+     * @return le paramétrage Hibernate enregistrant l'initialisation des shards
+     */
+    @Bean
+    public HibernatePropertiesCustomizer initialisationShards(DataSource dataSource) {
+        Integrator integrator = new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+                sessionFactory.addObserver(new SessionFactoryObserver() {
+                    @Override
+                    public void sessionFactoryCreated(SessionFactory factory) {
+                        initialiser(metadata, bootstrapContext, factory, dataSource);
+                    }
+                });
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+        return proprietes -> proprietes.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(integrator));
+    }
+
+    /**
+     * Le shard de chaque requête HTTP désignant un client, une facture ou un modèle par son ID
+     * est sélectionné avant l'exécution du contrôleur
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RoutageShardsInterceptor(routageShards))
+                .addPathPatterns("/api/clients/**", "/api/factures/**", "/api/factures-recurrentes/**");
+    }
+
+    private void initialiser(Metadata metadata, BootstrapContext bootstrapContext, SessionFactory factory,
+                             DataSource dataSource) {
+        int nombreShards = routageShards.getNombreShards();
+        for (int shard = 1; shard < nombreShards; shard++) {
+            // Pas de suppression du schéma à l'arrêt (create-drop) : seul le shard principal est concerné
+            routageShards.executer(shard, () -> {
+                SchemaManagementToolCoordinator.process(metadata, bootstrapContext.getServiceRegistry(),
+                        factory.getProperties(), action -> { });
+                return null;
+            });
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        routageShards.initialiserPremierId(jdbcTemplate, TABLES_ENTRELACEES);
+        for (int shard = 0; shard < nombreShards; shard++) {
+            int numero = shard;
+            routageShards.executer(shard, () -> {
+                entrelacer(jdbcTemplate, numero, nombreShards);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Reprend chaque colonne d'identité pas encore entrelacée au premier ID libre du shard,
+     * avec un pas égal au nombre de shards
+     */
+    void entrelacer(JdbcTemplate jdbcTemplate, int shard, int nombreShards) {
+        long premierId = routageShards.getPremierId();
+        for (String table : TABLES_ENTRELACEES) {
+            String pas = jdbcTemplate.queryForObject("SELECT identity_increment FROM information_schema.columns "
+                    + "WHERE table_schema = CURRENT_SCHEMA AND LOWER(table_name) = ? AND LOWER(column_name) = 'id'",
+                    String.class, table);
+            if (pas != null && Long.parseLong(pas) == nombreShards) {
+                continue;
+            }
+            Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            long base = Math.max(premierId, max + 1);
+            long debut = base + Math.floorMod(shard - (base - premierId), (long) nombreShards);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id SET INCREMENT BY " + nombreShards
+                    + " RESTART WITH " + debut);
+            log.info("Colonne d'identité {}.id du shard {} entrelacée à partir de {}", table, shard, debut);
+        }
+    }
+}
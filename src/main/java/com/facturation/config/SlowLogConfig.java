@@ -0,0 +1,36 @@
+package com.facturation.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration du journal des requêtes SQL lentes (activé par facturation.slow-log.enabled=true, voir le profil prod)
+ * La DataSource est enveloppée par JournalSqlLent ; les requêtes HTTP sont journalisées par CorrelationIdFilter
+ */
+@Configuration
+@ConditionalOnProperty(name = "facturation.slow-log.enabled", havingValue = "true")
+public class SlowLogConfig {
+
+    /**
+     * Enveloppe toute DataSource créée par Spring Boot
+     * Méthode statique : le post-processeur est créé avant les autres beans de la configuration
+     * @return le post-processeur des DataSources
+     */
+    @Bean
+    public static BeanPostProcessor journalSqlLentPostProcessor(
+            @Value("${facturation.slow-log.sql-threshold-ms:100}") long seuilMs,
+            @Value("${facturation.slow-log.sample-rate:0.01}") double tauxEchantillon) {
+        JournalSqlLent journal = new JournalSqlLent(seuilMs, tauxEchantillon);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? journal.envelopper(dataSource) : bean;
+            }
+        };
+    }
+}
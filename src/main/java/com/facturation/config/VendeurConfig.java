@@ -0,0 +1,25 @@
+package com.facturation.config;
+
+import com.facturation.model.Vendeur;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Identification du vendeur imprimée sur les factures exportées et rendues
+ */
+@Configuration
+public class VendeurConfig {
+
+    @Bean
+    public Vendeur vendeur(@Value("${facturation.export.vendeur-nom:}") String nom,
+                           @Value("${facturation.export.vendeur-siret:}") String siret,
+                           @Value("${facturation.export.vendeur-tva:}") String numeroTva,
+                           @Value("${facturation.export.vendeur-adresse:}") String adresse,
+                           @Value("${facturation.export.vendeur-code-postal:}") String codePostal,
+                           @Value("${facturation.export.vendeur-ville:}") String ville,
+                           @Value("${facturation.export.vendeur-pays:FR}") String pays,
+                           @Value("${facturation.export.delai-paiement-jours:30}") int delaiPaiementJours) {
+        return new Vendeur(nom, siret, numeroTva, adresse, codePostal, ville, pays, delaiPaiementJours);
+    }
+}
@@ -0,0 +1,71 @@
+package com.facturation.controller;
+
+import com.facturation.model.DimensionAnalytique;
+import com.facturation.model.TauxTva;
+import com.facturation.service.AnalytiqueService;
+import com.facturation.service.AnalytiqueService.Resultat;
+import com.facturation.service.AnalytiqueService.Statistiques;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Contrôleur REST des agrégats analytiques sur les lignes de facture
+ */
+@RestController
+@RequestMapping("/api/analytique")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class AnalytiqueController {
+
+    private final AnalytiqueService analytiqueService;
+
+    /**
+     * Calcule les montants HT, TVA et TTC par groupe
+     * GET /api/analytique/lignes?par=CLIENT,SEMAINE&du=2024-01-01&au=2024-12-31
+     * @param par les dimensions de regroupement (aucune pour un total ; au plus une parmi JOUR, SEMAINE, MOIS, ANNEE)
+     * @param du la première date de facture incluse
+     * @param au la dernière date de facture incluse
+     * @param clientId le client à retenir
+     * @param tauxTva la catégorie de TVA à retenir
+     * @return les groupes triés, le nombre de lignes parcourues et la durée du calcul
+     */
+    @GetMapping("/lignes")
+    public ResponseEntity<Resultat> agreger(@RequestParam(required = false) Set<DimensionAnalytique> par,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au,
+                                            @RequestParam(required = false) Long clientId,
+                                            @RequestParam(required = false) TauxTva tauxTva) {
+        Set<DimensionAnalytique> dimensions = par == null || par.isEmpty()
+                ? EnumSet.noneOf(DimensionAnalytique.class) : EnumSet.copyOf(par);
+        return ResponseEntity.ok(analytiqueService.agreger(dimensions, du, au, clientId, tauxTva));
+    }
+
+    /**
+     * Récupère l'état de l'instantané analytique
+     * GET /api/analytique/statistiques
+     * @return le nombre de lignes, la mémoire occupée et la date de construction
+     */
+    @GetMapping("/statistiques")
+    public ResponseEntity<Statistiques> getStatistiques() {
+        return ResponseEntity.ok(analytiqueService.getStatistiques());
+    }
+
+    /**
+     * Reconstruit l'instantané depuis la base (par exemple après une modification rétroactive du barème de TVA)
+     * POST /api/analytique/reconstruction
+     * @return l'état du nouvel instantané
+     */
+    @PostMapping("/reconstruction")
+    public ResponseEntity<Statistiques> reconstruire() {
+        analytiqueService.reconstruire();
+        return ResponseEntity.ok(analytiqueService.getStatistiques());
+    }
+}
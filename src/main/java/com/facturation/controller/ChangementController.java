@@ -0,0 +1,54 @@
+package com.facturation.controller;
+
+import com.facturation.service.RelaisChangementsService;
+import com.facturation.service.RelaisChangementsService.PageChangements;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Contrôleur REST du flux des changements de clients et de factures
+ * Les consommateurs suivent le journal à partir du dernier offset traité au lieu de relire toutes les factures
+ */
+@RestController
+@RequestMapping("/api/changes")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ChangementController {
+
+    private static final int LIMITE_MAX = 1000;
+
+    private final RelaisChangementsService relaisChangementsService;
+
+    /**
+     * Lit une page de changements
+     * GET /api/changes?from=0&limit=100
+     * @param from l'offset du premier changement (0 pour le début, ou le champ suivant de la page précédente),
+     * refusé en 409 s'il provient d'un journal précédent du relais
+     * @param limit le nombre maximal de changements (au plus 1000)
+     * @return les changements et l'offset de la page suivante
+     */
+    @GetMapping
+    public ResponseEntity<PageChangements> lire(@RequestParam(defaultValue = "0") long from,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("La limite doit être positive : " + limit);
+        }
+        return ResponseEntity.ok(relaisChangementsService.lire(from, Math.min(limit, LIMITE_MAX)));
+    }
+
+    /**
+     * Suit les changements en Server-Sent Events (événements « changement », d'ID l'offset de reprise)
+     * GET /api/changes?from=0 avec Accept: text/event-stream
+     * @param from l'offset du premier changement
+     * @param dernierId l'en-tête Last-Event-ID envoyé par le navigateur à la reconnexion (prioritaire sur from)
+     * @return le flux des changements
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suivre(@RequestParam(defaultValue = "0") long from,
+                             @RequestHeader(value = "Last-Event-ID", required = false) Long dernierId) {
+        return relaisChangementsService.suivre(dernierId != null ? dernierId : from);
+    }
+}
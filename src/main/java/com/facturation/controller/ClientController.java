@@ -1,6 +1,8 @@
 package com.facturation.controller;
 
+import com.facturation.exception.RessourceNonTrouveeException;
 import com.facturation.model.Client;
+import com.facturation.repository.RoutageShards;
 import com.facturation.service.ClientService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +23,7 @@ import java.util.List;
 public class ClientController {
 
     private final ClientService clientService;
+    private final RoutageShards routageShards;
 
     /**
      * Récupère tous les clients
@@ -37,13 +40,14 @@ public class ClientController {
      * Récupère un client par son ID
      * GET /api/clients/{id}
      * @param id l'ID du client
-     * @return le client trouvé ou 404 si non trouvé
+     * @return le client trouvé
+     * @throws RessourceNonTrouveeException si le client n'existe pas
      */
     @GetMapping("/{id}")
     public ResponseEntity<Client> getClientById(@PathVariable Long id) {
         return clientService.getClientById(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElseThrow(() -> RessourceNonTrouveeException.client(id));
     }
 
     /**
@@ -54,12 +58,9 @@ public class ClientController {
      */
     @PostMapping
     public ResponseEntity<Client> createClient(@Valid @RequestBody Client client) {
-        try {
-            Client createdClient = clientService.createClient(client);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdClient);
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        routageShards.routerRequete(routageShards.shardNouveauClient(client.getSiret()));
+        Client createdClient = clientService.createClient(client);
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdClient);
     }
 
     /**
@@ -71,15 +72,8 @@ public class ClientController {
      */
     @PutMapping("/{id}")
     public ResponseEntity<Client> updateClient(@PathVariable Long id, @Valid @RequestBody Client client) {
-        try {
-            Client updatedClient = clientService.updateClient(id, client);
-            return ResponseEntity.ok(updatedClient);
-        } catch (IllegalArgumentException e) {
-            if (e.getMessage().contains("non trouvé")) {
-                return ResponseEntity.notFound().build();
-            }
-            return ResponseEntity.badRequest().build();
-        }
+        Client updatedClient = clientService.updateClient(id, client);
+        return ResponseEntity.ok(updatedClient);
     }
 
     /**
@@ -90,11 +84,7 @@ public class ClientController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteClient(@PathVariable Long id) {
-        try {
-            clientService.deleteClient(id);
-            return ResponseEntity.noContent().build();
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.notFound().build();
-        }
+        clientService.deleteClient(id);
+        return ResponseEntity.noContent().build();
     }
 } 
\ No newline at end of file
@@ -1,20 +1,35 @@
 package com.facturation.controller;
 
+import com.facturation.exception.DonneesInvalidesException;
+import com.facturation.exception.RessourceNonTrouveeException;
 import com.facturation.model.Facture;
+import com.facturation.model.FormatFactureXml;
 import com.facturation.model.TauxTva;
+import com.facturation.repository.RoutageShards;
+import com.facturation.service.ExportFactureService;
 import com.facturation.service.FactureService;
+import com.facturation.service.RenduFactureService;
+import com.facturation.service.RenduFactureService.Statistiques;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
 /**
  * Contrôleur REST pour la gestion des factures
- * Fournit les endpoints pour les opérations CRUD sur les factures et l'export JSON
+ * Fournit les endpoints pour les opérations CRUD sur les factures et l'export JSON ou XML (UBL, CII)
+ * ainsi que le rendu des documents HTML imprimables
  */
 @RestController
 @RequestMapping("/api/factures")
@@ -23,6 +38,9 @@ import java.util.List;
 public class FactureController {
 
     private final FactureService factureService;
+    private final ExportFactureService exportFactureService;
+    private final RenduFactureService renduFactureService;
+    private final RoutageShards routageShards;
 
     /**
      * Récupère toutes les factures
@@ -39,13 +57,14 @@ public class FactureController {
      * Récupère une facture par son ID
      * GET /api/factures/{id}
      * @param id l'ID de la facture
-     * @return la facture trouvée ou 404 si non trouvée
+     * @return la facture trouvée
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
      */
     @GetMapping("/{id}")
     public ResponseEntity<Facture> getFactureById(@PathVariable Long id) {
         return factureService.getFactureById(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElseThrow(() -> RessourceNonTrouveeException.facture(id));
     }
 
     /**
@@ -68,17 +87,16 @@ public class FactureController {
      */
     @PostMapping
     public ResponseEntity<Facture> createFacture(@RequestBody CreateFactureRequest request) {
-        try {
-            Facture createdFacture = factureService.createFacture(request.getClientId(), request.getDateFacture());
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdFacture);
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
-        }
+        // La facture est créée sur le shard de son client
+        routageShards.routerRequete(routageShards.shardDe(request.getClientId()));
+        Facture createdFacture = factureService.createFacture(request.getClientId(), request.getDateFacture());
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdFacture);
     }
 
     /**
      * Ajoute une ligne à une facture avec JSON
      * POST /api/factures/{id}/lignes
+     * La ligne est libre, ou référence un produit du catalogue si codeProduit est renseigné
      * @param id l'ID de la facture
      * @param request les données de la ligne en JSON
      * @return la facture mise à jour
@@ -87,18 +105,27 @@ public class FactureController {
     public ResponseEntity<Facture> ajouterLigneFacture(
             @PathVariable Long id,
             @RequestBody AddLigneRequest request) {
-        try {
-            Facture updatedFacture = factureService.ajouterLigneFacture(
+        Facture updatedFacture;
+        if (request.getCodeProduit() != null) {
+            // Ligne du catalogue : les champs fournis surchargent ceux du produit
+            updatedFacture = factureService.ajouterLigneProduit(
+                id,
+                request.getCodeProduit(),
+                request.getQuantite(),
+                request.getDescription(),
+                request.getPrixUnitaireHt(),
+                request.getTauxTva()
+            );
+        } else {
+            updatedFacture = factureService.ajouterLigneFacture(
                 id, 
                 request.getDescription(), 
                 request.getQuantite(), 
                 request.getPrixUnitaireHt(), 
                 request.getTauxTva()
             );
-            return ResponseEntity.ok(updatedFacture);
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(updatedFacture);
     }
 
     /**
@@ -112,15 +139,8 @@ public class FactureController {
     public ResponseEntity<Facture> updateFacture(
             @PathVariable Long id,
             @RequestBody CreateFactureRequest request) {
-        try {
-            Facture updatedFacture = factureService.updateFacture(id, request.getClientId(), request.getDateFacture());
-            return ResponseEntity.ok(updatedFacture);
-        } catch (IllegalArgumentException e) {
-            if (e.getMessage().contains("non trouvée")) {
-                return ResponseEntity.notFound().build();
-            }
-            return ResponseEntity.badRequest().build();
-        }
+        Facture updatedFacture = factureService.updateFacture(id, request.getClientId(), request.getDateFacture());
+        return ResponseEntity.ok(updatedFacture);
     }
 
     /**
@@ -131,25 +151,105 @@ public class FactureController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteFacture(@PathVariable Long id) {
-        try {
-            factureService.deleteFacture(id);
-            return ResponseEntity.noContent().build();
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.notFound().build();
-        }
+        factureService.deleteFacture(id);
+        return ResponseEntity.noContent().build();
     }
 
     /**
      * Exporte une facture au format JSON
      * GET /api/factures/{id}/export
      * @param id l'ID de la facture à exporter
-     * @return la facture au format JSON ou 404 si non trouvée
+     * @return la facture au format JSON
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
      */
     @GetMapping("/{id}/export")
     public ResponseEntity<Facture> exportFacture(@PathVariable Long id) {
         return factureService.getFactureById(id)
                 .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+                .orElseThrow(() -> RessourceNonTrouveeException.facture(id));
+    }
+
+    /**
+     * Exporte une facture au format XML de facture électronique
+     * GET /api/factures/{id}/export/xml?format=UBL
+     * @param id l'ID de la facture à exporter
+     * @param format le format XML (UBL par défaut, ou CII)
+     * @return le document XML ou 404 si non trouvée
+     */
+    @GetMapping(value = "/{id}/export/xml", produces = MediaType.APPLICATION_XML_VALUE)
+    public ResponseEntity<byte[]> exportFactureXml(@PathVariable Long id,
+                                                   @RequestParam(defaultValue = "UBL") FormatFactureXml format) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_XML)
+                .body(exportFactureService.exporterFacture(id, format));
+    }
+
+    /**
+     * Exporte les factures d'une période dans une archive ZIP (un document XML par facture), écrite en flux
+     * GET /api/factures/export/xml?du=2024-01-01&au=2024-01-31&format=CII
+     * @param du la date de début
+     * @param au la date de fin
+     * @param format le format XML (UBL par défaut, ou CII)
+     * @param response la réponse, dans laquelle l'archive est écrite
+     * @throws DonneesInvalidesException si la date de début suit la date de fin
+     */
+    @GetMapping("/export/xml")
+    public void exportFacturesXml(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+                                  @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au,
+                                  @RequestParam(defaultValue = "UBL") FormatFactureXml format,
+                                  HttpServletResponse response) throws IOException {
+        // Vérifiée avant d'écrire les en-têtes de l'archive, pour que l'erreur puisse être renvoyée en JSON
+        if (du.isAfter(au)) {
+            throw new DonneesInvalidesException("La date de début doit précéder la date de fin");
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("factures-" + du + "-" + au + "-" + format.getSuffixe() + ".zip").build().toString());
+        exportFactureService.exporterPeriode(du, au, format, response.getOutputStream());
+    }
+
+    /**
+     * Rend une facture en document HTML imprimable (depuis le cache si la facture n'a pas changé)
+     * GET /api/factures/{id}/document
+     * @param id l'ID de la facture
+     * @return le document HTML ou 404 si non trouvée
+     */
+    @GetMapping(value = "/{id}/document", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<byte[]> getDocument(@PathVariable Long id) {
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .body(renduFactureService.rendreFacture(id));
+    }
+
+    /**
+     * Rend les factures d'une période dans une archive ZIP (un document HTML par facture), écrite en flux
+     * GET /api/factures/documents?du=2024-01-01&au=2024-01-31
+     * @param du la date de début
+     * @param au la date de fin
+     * @param response la réponse, dans laquelle l'archive est écrite
+     * @throws DonneesInvalidesException si la date de début suit la date de fin
+     */
+    @GetMapping("/documents")
+    public void getDocuments(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au,
+                             HttpServletResponse response) throws IOException {
+        if (du.isAfter(au)) {
+            throw new DonneesInvalidesException("La date de début doit précéder la date de fin");
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("factures-" + du + "-" + au + ".zip").build().toString());
+        renduFactureService.rendrePeriode(du, au, response.getOutputStream());
+    }
+
+    /**
+     * Statistiques du rendu des documents : cache et débit du dernier rendu par lot
+     * GET /api/factures/documents/statistiques
+     * @return les statistiques du rendu
+     */
+    @GetMapping("/documents/statistiques")
+    public ResponseEntity<Statistiques> getStatistiquesDocuments() {
+        return ResponseEntity.ok(renduFactureService.getStatistiques());
     }
 
     /**
@@ -170,12 +270,15 @@ public class FactureController {
      * Classe pour recevoir les données d'ajout de ligne en JSON
      */
     public static class AddLigneRequest {
+        private String codeProduit;
         private String description;
         private Integer quantite;
         private BigDecimal prixUnitaireHt;
         private TauxTva tauxTva;
 
         // Getters et setters
+        public String getCodeProduit() { return codeProduit; }
+        public void setCodeProduit(String codeProduit) { this.codeProduit = codeProduit; }
         public String getDescription() { return description; }
         public void setDescription(String description) { this.description = description; }
         public Integer getQuantite() { return quantite; }
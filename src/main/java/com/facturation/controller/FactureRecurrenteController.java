@@ -0,0 +1,123 @@
+package com.facturation.controller;
+
+import com.facturation.model.LigneModele;
+import com.facturation.model.ModeleFactureRecurrente;
+import com.facturation.repository.RoutageShards;
+import com.facturation.service.GenerationRecurrenteService;
+import com.facturation.service.GenerationRecurrenteService.RapportGeneration;
+import com.facturation.service.ModeleFactureRecurrenteService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Contrôleur REST pour les factures récurrentes
+ * Fournit les endpoints de gestion des modèles récurrents et de lancement de la génération mensuelle
+ */
+@RestController
+@RequestMapping("/api/factures-recurrentes")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class FactureRecurrenteController {
+
+    private final ModeleFactureRecurrenteService modeleService;
+    private final GenerationRecurrenteService generationService;
+    private final RoutageShards routageShards;
+
+    /**
+     * Récupère les modèles récurrents d'un client
+     * GET /api/factures-recurrentes/modeles/client/{clientId}
+     * @param clientId l'ID du client
+     * @return la liste des modèles du client
+     */
+    @GetMapping("/modeles/client/{clientId}")
+    public ResponseEntity<List<ModeleFactureRecurrente>> getModelesByClientId(@PathVariable Long clientId) {
+        return ResponseEntity.ok(modeleService.getModelesByClientId(clientId));
+    }
+
+    /**
+     * Crée un modèle récurrent avec JSON
+     * POST /api/factures-recurrentes/modeles
+     * @param request les données du modèle en JSON
+     * @return le modèle créé avec le statut 201
+     */
+    @PostMapping("/modeles")
+    public ResponseEntity<ModeleFactureRecurrente> createModele(@Valid @RequestBody CreateModeleRequest request) {
+        routageShards.routerRequete(routageShards.shardDe(request.getClientId()));
+        ModeleFactureRecurrente modele = modeleService.createModele(request.getClientId(), request.getLignes());
+        return ResponseEntity.status(HttpStatus.CREATED).body(modele);
+    }
+
+    /**
+     * Active ou suspend un modèle récurrent
+     * PUT /api/factures-recurrentes/modeles/{id}/actif?actif=true
+     * @param id l'ID du modèle
+     * @param actif le nouvel état du modèle
+     * @return le modèle mis à jour ou 404 si non trouvé
+     */
+    @PutMapping("/modeles/{id}/actif")
+    public ResponseEntity<ModeleFactureRecurrente> setActif(@PathVariable Long id, @RequestParam boolean actif) {
+        return ResponseEntity.ok(modeleService.setActif(id, actif));
+    }
+
+    /**
+     * Supprime un modèle récurrent
+     * DELETE /api/factures-recurrentes/modeles/{id}
+     * @param id l'ID du modèle à supprimer
+     * @return 204 si supprimé avec succès ou 404 si non trouvé
+     */
+    @DeleteMapping("/modeles/{id}")
+    public ResponseEntity<Void> deleteModele(@PathVariable Long id) {
+        modeleService.deleteModele(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Lance (ou reprend) la génération des factures récurrentes d'une période
+     * POST /api/factures-recurrentes/generation
+     * @param request la période et la date de facture en JSON
+     * @return le rapport d'exécution, ou 409 si une génération est déjà en cours
+     */
+    @PostMapping("/generation")
+    public ResponseEntity<RapportGeneration> genererPeriode(@RequestBody GenerationRequest request) {
+        if (request.getPeriode() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(generationService.genererPeriode(request.getPeriode(), request.getDateFacture()));
+    }
+
+    /**
+     * Classe pour recevoir les données de création de modèle en JSON
+     */
+    public static class CreateModeleRequest {
+        private Long clientId;
+        @Valid
+        private List<LigneModele> lignes;
+
+        // Getters et setters
+        public Long getClientId() { return clientId; }
+        public void setClientId(Long clientId) { this.clientId = clientId; }
+        public List<LigneModele> getLignes() { return lignes; }
+        public void setLignes(List<LigneModele> lignes) { this.lignes = lignes; }
+    }
+
+    /**
+     * Classe pour recevoir les paramètres de génération en JSON
+     */
+    public static class GenerationRequest {
+        private YearMonth periode;
+        private LocalDate dateFacture;
+
+        // Getters et setters
+        public YearMonth getPeriode() { return periode; }
+        public void setPeriode(YearMonth periode) { this.periode = periode; }
+        public LocalDate getDateFacture() { return dateFacture; }
+        public void setDateFacture(LocalDate dateFacture) { this.dateFacture = dateFacture; }
+    }
+}
@@ -0,0 +1,73 @@
+package com.facturation.controller;
+
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.Produit;
+import com.facturation.service.CatalogueProduitsService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Contrôleur REST pour le catalogue produits
+ * Fournit les endpoints de consultation et d'alimentation du catalogue
+ */
+@RestController
+@RequestMapping("/api/produits")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ProduitController {
+
+    private final CatalogueProduitsService catalogueProduitsService;
+
+    /**
+     * Récupère tous les produits du catalogue
+     * GET /api/produits
+     * @return la liste de tous les produits
+     */
+    @GetMapping
+    public ResponseEntity<List<Produit>> getAllProduits() {
+        return ResponseEntity.ok(catalogueProduitsService.getAllProduits());
+    }
+
+    /**
+     * Récupère un produit par son code
+     * GET /api/produits/{code}
+     * @param code le code du produit
+     * @return le produit trouvé
+     * @throws RessourceNonTrouveeException si le produit n'existe pas
+     */
+    @GetMapping("/{code}")
+    public ResponseEntity<Produit> getProduitByCode(@PathVariable String code) {
+        return catalogueProduitsService.getProduitByCode(code)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> RessourceNonTrouveeException.produit(code));
+    }
+
+    /**
+     * Crée un nouveau produit
+     * POST /api/produits
+     * @param produit les données du produit à créer
+     * @return le produit créé avec le statut 201
+     */
+    @PostMapping
+    public ResponseEntity<Produit> createProduit(@Valid @RequestBody Produit produit) {
+        Produit createdProduit = catalogueProduitsService.createProduit(produit);
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdProduit);
+    }
+
+    /**
+     * Retire ou réactive un produit du catalogue
+     * PUT /api/produits/{code}/actif?actif=false
+     * @param code le code du produit
+     * @param actif le nouvel état du produit
+     * @return le produit mis à jour ou 404 si non trouvé
+     */
+    @PutMapping("/{code}/actif")
+    public ResponseEntity<Produit> setActif(@PathVariable String code, @RequestParam boolean actif) {
+        return ResponseEntity.ok(catalogueProduitsService.setActif(code, actif));
+    }
+}
@@ -0,0 +1,74 @@
+package com.facturation.controller;
+
+import com.facturation.model.TauxTva;
+import com.facturation.model.TauxTvaPeriode;
+import com.facturation.service.BaremeTvaService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Contrôleur REST pour l'administration des taux de TVA datés
+ */
+@RestController
+@RequestMapping("/api/taux-tva")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class TauxTvaController {
+
+    private final BaremeTvaService baremeTvaService;
+
+    /**
+     * Récupère toutes les périodes de TVA
+     * GET /api/taux-tva
+     * @return la liste des périodes
+     */
+    @GetMapping
+    public ResponseEntity<List<TauxTvaPeriode>> getAllPeriodes() {
+        return ResponseEntity.ok(baremeTvaService.getAllPeriodes());
+    }
+
+    /**
+     * Résout le taux d'une catégorie à une date
+     * GET /api/taux-tva/{categorie}?date=2024-01-15
+     * @param categorie la catégorie de TVA
+     * @param date la date de facture (taux le plus récent si absente)
+     * @return le taux en pourcentage
+     */
+    @GetMapping("/{categorie}")
+    public ResponseEntity<BigDecimal> getTaux(@PathVariable TauxTva categorie,
+                                              @RequestParam(required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(baremeTvaService.getTaux(categorie, date));
+    }
+
+    /**
+     * Ajoute une période de TVA
+     * POST /api/taux-tva
+     * @param periode la catégorie, le taux et la date d'effet
+     * @return la période créée avec le statut 201
+     */
+    @PostMapping
+    public ResponseEntity<TauxTvaPeriode> createPeriode(@Valid @RequestBody TauxTvaPeriode periode) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(baremeTvaService.createPeriode(periode));
+    }
+
+    /**
+     * Supprime une période de TVA
+     * DELETE /api/taux-tva/{id}
+     * @param id l'ID de la période
+     * @return 204 si supprimée avec succès ou 404 si non trouvée
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePeriode(@PathVariable Long id) {
+        baremeTvaService.deletePeriode(id);
+        return ResponseEntity.noContent().build();
+    }
+}
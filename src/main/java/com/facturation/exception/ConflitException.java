@@ -0,0 +1,30 @@
+package com.facturation.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Erreur levée lorsqu'une opération entre en conflit avec l'état existant (409)
+ */
+public class ConflitException extends DomainException {
+
+    public static final ConflitException EMAIL_CLIENT = new ConflitException("Un client avec cet email existe déjà");
+    public static final ConflitException SIRET_CLIENT = new ConflitException("Un client avec ce SIRET existe déjà");
+    public static final ConflitException CODE_PRODUIT = new ConflitException("Un produit avec ce code existe déjà");
+    public static final ConflitException PERIODE_TVA =
+            new ConflitException("Une période existe déjà pour cette catégorie à cette date");
+    public static final ConflitException GENERATION_EN_COURS =
+            new ConflitException("Une génération récurrente est déjà en cours");
+    public static final ConflitException RELAIS_AUTRE_INSTANCE =
+            new ConflitException("Le flux des changements est servi par l'instance qui relaie l'outbox");
+    public static final ConflitException JOURNAL_PRECEDENT = new ConflitException(
+            "Offset d'un journal précédent du relais des changements : reprendre depuis l'offset 0");
+
+    public ConflitException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.CONFLICT;
+    }
+}
@@ -0,0 +1,21 @@
+package com.facturation.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Erreur métier typée, traduite en réponse RFC 7807 par GlobalExceptionHandler
+ * Sans pile d'appels ni exceptions supprimées : la créer ne coûte qu'une allocation,
+ * et une instance à message constant peut être préallouée et partagée entre threads
+ */
+public abstract class DomainException extends RuntimeException {
+
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * Retourne le statut HTTP associé à l'erreur
+     * @return le statut HTTP
+     */
+    public abstract HttpStatus getStatus();
+}
@@ -0,0 +1,34 @@
+package com.facturation.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Erreur levée lorsque les données d'une requête sont invalides,
+ * y compris lorsqu'elles référencent une ressource inexistante (400)
+ */
+public class DonneesInvalidesException extends DomainException {
+
+    public static final DonneesInvalidesException MODELE_SANS_LIGNE =
+            new DonneesInvalidesException("Un modèle récurrent doit contenir au moins une ligne");
+
+    public DonneesInvalidesException(String message) {
+        super(message);
+    }
+
+    public static DonneesInvalidesException clientInconnu(Long id) {
+        return new DonneesInvalidesException("Client non trouvé avec l'ID: " + id);
+    }
+
+    public static DonneesInvalidesException clientAutreShard(Long clientId, Long factureId) {
+        return new DonneesInvalidesException("Le client " + clientId + " n'est pas sur le même shard que la facture " + factureId);
+    }
+
+    public static DonneesInvalidesException produitInconnu(String code) {
+        return new DonneesInvalidesException("Produit non trouvé avec le code: " + code);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.BAD_REQUEST;
+    }
+}
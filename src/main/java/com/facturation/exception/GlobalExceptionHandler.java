@@ -1,59 +1,120 @@
 package com.facturation.exception;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
-import java.util.HashMap;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Gestionnaire global d'exceptions
- * Intercepte et gère les exceptions de l'application
+ * Traduit les erreurs en réponses RFC 7807 (application/problem+json)
+ * Les exceptions Spring MVC standard (route inconnue, corps illisible...) sont traitées par ResponseEntityExceptionHandler
  */
 @ControllerAdvice
-public class GlobalExceptionHandler {
+public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+
+    // Code SQLSTATE standard d'une violation de contrainte d'unicité (PostgreSQL et H2)
+    private static final String VIOLATION_UNICITE = "23505";
+
+    /**
+     * Gère les erreurs métier typées : le statut est porté par le type de l'exception
+     * @param ex l'erreur métier
+     * @return une réponse problem+json avec le statut de l'erreur
+     */
+    @ExceptionHandler(DomainException.class)
+    public ResponseEntity<ProblemDetail> handleDomainException(DomainException ex) {
+        return ResponseEntity.status(ex.getStatus())
+                .body(ProblemDetail.forStatusAndDetail(ex.getStatus(), ex.getMessage()));
+    }
 
     /**
      * Gère les erreurs de validation des DTOs
-     * @param ex l'exception de validation
-     * @return une réponse avec les erreurs de validation
+     * Les messages par champ sont ajoutés dans la propriété "erreurs" du problème
      */
-    @ExceptionHandler(MethodArgumentNotValidException.class)
-    public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException ex) {
-        Map<String, String> errors = new HashMap<>();
-        ex.getBindingResult().getAllErrors().forEach((error) -> {
-            String fieldName = ((FieldError) error).getField();
-            String errorMessage = error.getDefaultMessage();
-            errors.put(fieldName, errorMessage);
-        });
-        return ResponseEntity.badRequest().body(errors);
+    @Override
+    protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, HttpHeaders headers,
+                                                                  HttpStatusCode status, WebRequest request) {
+        Map<String, String> erreurs = new LinkedHashMap<>();
+        for (ObjectError error : ex.getBindingResult().getAllErrors()) {
+            String nom = error instanceof FieldError fieldError ? fieldError.getField() : error.getObjectName();
+            erreurs.put(nom, error.getDefaultMessage());
+        }
+        ProblemDetail problem = ex.getBody();
+        problem.setProperty("erreurs", erreurs);
+        return handleExceptionInternal(ex, problem, headers, status, request);
     }
 
     /**
      * Gère les exceptions IllegalArgumentException
      * @param ex l'exception
-     * @return une réponse avec le message d'erreur
+     * @return une réponse problem+json 400 avec le message d'erreur
      */
     @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<Map<String, String>> handleIllegalArgumentException(IllegalArgumentException ex) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", ex.getMessage());
-        return ResponseEntity.badRequest().body(error);
+    public ResponseEntity<ProblemDetail> handleIllegalArgumentException(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest()
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, ex.getMessage()));
+    }
+
+    /**
+     * Gère les violations de contraintes d'unicité non détectées par les vérifications métier
+     * (par exemple l'email d'un client supprimé logiquement mais pas encore purgé)
+     * Les autres violations (clé étrangère, non-nullité...) révèlent un défaut de validation et restent des erreurs internes
+     * @param ex l'exception
+     * @return une réponse problem+json 409, ou 500 si la contrainte violée n'est pas une contrainte d'unicité
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ProblemDetail> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        if (!violationUnicite(ex)) {
+            return handleGeneralException(ex);
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Conflit avec des données existantes"));
+    }
+
+    /**
+     * Gère les modifications concurrentes d'une même facture (verrouillage optimiste sur sa version)
+     * @param ex l'exception
+     * @return une réponse problem+json 409 : la requête peut être rejouée
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ProblemDetail> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Modification concurrente, veuillez réessayer"));
     }
 
     /**
      * Gère les exceptions générales
      * @param ex l'exception
-     * @return une réponse d'erreur interne du serveur
+     * @return une réponse problem+json d'erreur interne du serveur
      */
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<Map<String, String>> handleGeneralException(Exception ex) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Une erreur interne s'est produite");
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    public ResponseEntity<ProblemDetail> handleGeneralException(Exception ex) {
+        logger.error("Erreur interne non gérée", ex);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.INTERNAL_SERVER_ERROR, "Une erreur interne s'est produite"));
+    }
+
+    private static boolean violationUnicite(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && VIOLATION_UNICITE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return ex instanceof DuplicateKeyException;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.facturation.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Erreur levée lorsqu'une ressource désignée par l'URL n'existe pas (404)
+ */
+public class RessourceNonTrouveeException extends DomainException {
+
+    public RessourceNonTrouveeException(String message) {
+        super(message);
+    }
+
+    public static RessourceNonTrouveeException client(Long id) {
+        return new RessourceNonTrouveeException("Client non trouvé avec l'ID: " + id);
+    }
+
+    public static RessourceNonTrouveeException facture(Long id) {
+        return new RessourceNonTrouveeException("Facture non trouvée avec l'ID: " + id);
+    }
+
+    public static RessourceNonTrouveeException produit(String code) {
+        return new RessourceNonTrouveeException("Produit non trouvé avec le code: " + code);
+    }
+
+    public static RessourceNonTrouveeException modeleRecurrent(Long id) {
+        return new RessourceNonTrouveeException("Modèle récurrent non trouvé avec l'ID: " + id);
+    }
+
+    public static RessourceNonTrouveeException periodeTva(Long id) {
+        return new RessourceNonTrouveeException("Période de TVA non trouvée avec l'ID: " + id);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.NOT_FOUND;
+    }
+}
@@ -0,0 +1,88 @@
+package com.facturation.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Filtre attribuant à chaque requête un identifiant de corrélation (en-tête X-Correlation-Id repris ou généré),
+ * placé dans le MDC pour figurer dans tous les logs de la requête et renvoyé dans la réponse
+ * Si le journal des requêtes lentes est activé, journalise les requêtes au-delà du seuil et un échantillon des autres
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    public static final String CORRELATION_ID_HEADER = "X-Correlation-Id";
+    public static final String MDC_KEY = "correlationId";
+
+    private static final Logger journal = LoggerFactory.getLogger("facturation.slow-log.requests");
+    // Un identifiant reçu n'est repris que s'il ne peut pas altérer les lignes de log
+    private static final Pattern ID_VALIDE = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final boolean journalActif;
+    private final long seuilNanos;
+    private final double tauxEchantillon;
+
+    public CorrelationIdFilter(@Value("${facturation.slow-log.enabled:false}") boolean journalActif,
+                               @Value("${facturation.slow-log.request-threshold-ms:500}") long seuilMs,
+                               @Value("${facturation.slow-log.sample-rate:0.01}") double tauxEchantillon) {
+        this.journalActif = journalActif;
+        this.seuilNanos = TimeUnit.MILLISECONDS.toNanos(seuilMs);
+        this.tauxEchantillon = tauxEchantillon;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String recu = request.getHeader(CORRELATION_ID_HEADER);
+        String correlationId = recu != null && ID_VALIDE.matcher(recu).matches()
+                ? recu : Long.toHexString(ThreadLocalRandom.current().nextLong());
+        MDC.put(MDC_KEY, correlationId);
+        response.setHeader(CORRELATION_ID_HEADER, correlationId);
+        long debut = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (journalActif) {
+                journaliser(request, response, System.nanoTime() - debut);
+            }
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    private void journaliser(HttpServletRequest request, HttpServletResponse response, long dureeNanos) {
+        boolean lente = dureeNanos >= seuilNanos;
+        if (!lente && (tauxEchantillon <= 0 || ThreadLocalRandom.current().nextDouble() >= tauxEchantillon)) {
+            return;
+        }
+        String uri = request.getQueryString() != null
+                ? request.getRequestURI() + "?" + request.getQueryString() : request.getRequestURI();
+        String handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod methode
+                ? methode.getBeanType().getSimpleName() + "." + methode.getMethod().getName() : "-";
+        double dureeMs = dureeNanos / 1_000_000.0;
+        if (lente) {
+            journal.warn("Requête lente {} ms : {} {} -> {} ({})",
+                    String.format("%.1f", dureeMs), request.getMethod(), uri, response.getStatus(), handler);
+        } else {
+            journal.info("Requête échantillonnée {} ms : {} {} -> {} ({})",
+                    String.format("%.1f", dureeMs), request.getMethod(), uri, response.getStatus(), handler);
+        }
+    }
+}
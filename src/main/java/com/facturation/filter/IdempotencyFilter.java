@@ -0,0 +1,230 @@
+package com.facturation.filter;
+
+import com.facturation.service.IdempotencyService;
+import com.facturation.service.IdempotencyService.ReponseMemorisee;
+import com.facturation.service.IdempotencyService.Reservation;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Filtre appliquant l'en-tête Idempotency-Key sur les requêtes POST
+ * Une requête rejouée reçoit la réponse d'origine sans réexécuter le service,
+ * un doublon en cours, sur cette instance ou une autre, attend la fin de la requête d'origine,
+ * et une clé réutilisée avec un corps différent est refusée (422)
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAY_HEADER = "Idempotent-Replayed";
+
+    private static final long INTERVALLE_ATTENTE_MS = 50;
+
+    // Réponses transitoires, qu'une nouvelle tentative avec la même clé doit pouvoir réexécuter
+    private static final Set<Integer> STATUTS_TRANSITOIRES = Set.of(408, 409, 425, 429);
+
+    private final IdempotencyService idempotencyService;
+    private final long attenteMaxMs;
+
+    public IdempotencyFilter(IdempotencyService idempotencyService,
+                             @Value("${facturation.idempotency.wait-timeout-ms:30000}") long attenteMaxMs) {
+        this.idempotencyService = idempotencyService;
+        this.attenteMaxMs = attenteMaxMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // La clé est liée au chemin pour qu'une même valeur ne puisse pas servir sur deux endpoints
+        String cle = request.getHeader(IDEMPOTENCY_KEY_HEADER) + " " + request.getRequestURI();
+        // Corps lu une fois pour son empreinte, puis relu par le contrôleur
+        CorpsRelisible requete = new CorpsRelisible(request);
+        String empreinte = empreinte(requete.corps);
+        long limite = System.currentTimeMillis() + attenteMaxMs;
+
+        while (true) {
+            Reservation reservation = idempotencyService.reserver(cle, empreinte);
+            switch (reservation.statut()) {
+                case RESERVEE -> {
+                    executer(cle, reservation.dateReservation(), empreinte, requete, response, chain);
+                    return;
+                }
+                case TERMINEE -> {
+                    if (autreRequete(reservation, empreinte)) {
+                        refuserCorpsDifferent(response);
+                    } else {
+                        rejouer(reservation.reponse(), response);
+                    }
+                    return;
+                }
+                case EN_COURS -> {
+                    if (autreRequete(reservation, empreinte)) {
+                        refuserCorpsDifferent(response);
+                        return;
+                    }
+                    if (System.currentTimeMillis() >= limite) {
+                        response.sendError(HttpStatus.CONFLICT.value(), "Une requête avec cette clé d'idempotence est en cours");
+                        return;
+                    }
+                    // La requête d'origine peut s'exécuter sur une autre instance : on relit la réservation
+                    // jusqu'à sa réponse, ou jusqu'à sa libération après un échec
+                    attendre();
+                }
+            }
+        }
+    }
+
+    /**
+     * Exécute la requête propriétaire de la clé et mémorise sa réponse
+     */
+    private void executer(String cle, LocalDateTime dateReservation, String empreinte, HttpServletRequest request,
+                          HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean memorisee = false;
+        try {
+            chain.doFilter(request, wrapper);
+            // Seules les réponses définitives sont mémorisées : une erreur serveur ou un conflit
+            // doit pouvoir être retenté avec la même clé
+            if (memorisable(wrapper.getStatus())) {
+                idempotencyService.terminer(cle, dateReservation, empreinte,
+                        new ReponseMemorisee(wrapper.getStatus(), wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                memorisee = true;
+            }
+        } finally {
+            if (!memorisee) {
+                idempotencyService.abandonner(cle, dateReservation);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static boolean memorisable(int statut) {
+        return statut < 500 && !STATUTS_TRANSITOIRES.contains(statut);
+    }
+
+    /**
+     * Vrai si la clé a été réservée par une requête de corps différent
+     * Les clés mémorisées sans empreinte ne sont pas contrôlées
+     */
+    private static boolean autreRequete(Reservation reservation, String empreinte) {
+        return reservation.empreinte() != null && !reservation.empreinte().equals(empreinte);
+    }
+
+    private static void refuserCorpsDifferent(HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                "Cette clé d'idempotence a déjà été utilisée pour une requête différente");
+    }
+
+    private static String empreinte(byte[] corps) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(corps));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void attendre() throws ServletException {
+        try {
+            Thread.sleep(INTERVALLE_ATTENTE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        }
+    }
+
+    private void rejouer(ReponseMemorisee reponse, HttpServletResponse response) throws IOException {
+        response.setStatus(reponse.statut());
+        response.setHeader(REPLAY_HEADER, "true");
+        if (reponse.contentType() != null) {
+            response.setContentType(reponse.contentType());
+        }
+        if (reponse.corps() != null) {
+            response.setContentLength(reponse.corps().length);
+            response.getOutputStream().write(reponse.corps());
+        }
+    }
+
+    /**
+     * Requête dont le corps, lu entièrement à la construction, peut être relu par la suite de la chaîne
+     */
+    private static final class CorpsRelisible extends HttpServletRequestWrapper {
+
+        private final byte[] corps;
+
+        CorpsRelisible(HttpServletRequest request) throws IOException {
+            super(request);
+            this.corps = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream flux = new ByteArrayInputStream(corps);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return flux.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return flux.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return flux.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // Corps déjà entièrement en mémoire : toutes les données sont disponibles dès l'enregistrement
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encodage = getCharacterEncoding();
+            Charset charset = encodage != null ? Charset.forName(encodage) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.facturation.filter;
+
+import com.facturation.repository.RoutageShards;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Intercepteur qui sélectionne le shard d'une requête désignant un client (variable clientId)
+ * ou une entité partitionnée (variable id) dans son chemin, avant toute transaction de la requête
+ * Les requêtes sans ID restent sur le shard principal ; leurs services répartissent eux-mêmes le travail
+ */
+public class RoutageShardsInterceptor implements AsyncHandlerInterceptor {
+
+    private final RoutageShards routageShards;
+
+    public RoutageShardsInterceptor(RoutageShards routageShards) {
+        this.routageShards = routageShards;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables != null) {
+            String id = variables.getOrDefault("clientId", variables.get("id"));
+            if (id != null) {
+                try {
+                    routageShards.routerRequete(routageShards.shardDe(Long.valueOf(id)));
+                } catch (NumberFormatException e) {
+                    // ID invalide : rejeté ensuite par la conversion du paramètre (400)
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        routageShards.libererRequete();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        routageShards.libererRequete();
+    }
+}
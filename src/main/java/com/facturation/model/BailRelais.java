@@ -0,0 +1,62 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité représentant le bail du relais des changements (ligne unique, sur la base principale)
+ * Seule l'instance qui détient un bail non expiré relaie l'outbox vers son journal : le flux des changements
+ * est ainsi complet sur cette instance, au lieu d'être réparti au hasard entre les journaux de chaque instance
+ */
+@Entity
+@Table(name = "relais_changements_bail")
+@Data
+@NoArgsConstructor
+public class BailRelais implements Persistable<Integer> {
+
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Integer id;
+
+    // Instance détentrice : hôte et chemin de son journal
+    @Column(name = "instance", nullable = false, length = 512)
+    private String instance;
+
+    @Column(name = "expiration", nullable = false)
+    private LocalDateTime expiration;
+
+    // Incrémentée à chaque changement de détenteur : chaque détenteur sert son propre journal, dont les offsets
+    // ne prolongent pas ceux du précédent
+    @Column(name = "generation", nullable = false)
+    @ColumnDefault("1")
+    private long generation;
+
+    // Insertion seule (persist) : deux instances qui créent le bail en même temps ne l'obtiennent pas toutes les deux
+    @Transient
+    private boolean nouveau;
+
+    /**
+     * Crée le bail détenu par une instance
+     */
+    public static BailRelais nouveau(String instance, LocalDateTime expiration) {
+        BailRelais bail = new BailRelais();
+        bail.setId(ID);
+        bail.setInstance(instance);
+        bail.setExpiration(expiration);
+        bail.setGeneration(1);
+        bail.setNouveau(true);
+        return bail;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nouveau;
+    }
+}
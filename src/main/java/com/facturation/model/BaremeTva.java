@@ -0,0 +1,142 @@
+package com.facturation.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Barème immuable des taux de TVA datés
+ * Les taux sont pré-divisés par 100 et rangés par catégorie avec les jours de leurs dates d'effet, triés :
+ * la résolution d'un taux pour une date est une recherche dichotomique parmi les quelques transitions
+ * de la catégorie, sans allocation, et la taille du barème ne dépend pas de l'écart entre les dates
+ * Le barème courant est remplacé en bloc (écriture volatile) lors d'une mise à jour, sans bloquer les lecteurs
+ */
+public final class BaremeTva {
+
+    private static final BigDecimal CENT = BigDecimal.valueOf(100);
+
+    private static volatile BaremeTva courant = construire(List.of());
+
+    // Taux applicable avant la première date d'effet de chaque catégorie (valeur de l'énumération)
+    private final BigDecimal[] avantPremiereDate;
+    // Jours (epoch day) des dates d'effet de chaque catégorie, en ordre croissant
+    private final long[][] transitions;
+    // Taux applicable à partir de chaque date d'effet, jusqu'à la suivante
+    private final BigDecimal[][] tauxParTransition;
+
+    private BaremeTva(BigDecimal[] avantPremiereDate, long[][] transitions, BigDecimal[][] tauxParTransition) {
+        this.avantPremiereDate = avantPremiereDate;
+        this.transitions = transitions;
+        this.tauxParTransition = tauxParTransition;
+    }
+
+    /**
+     * Retourne le barème courant
+     * @return le barème en vigueur
+     */
+    public static BaremeTva courant() {
+        return courant;
+    }
+
+    /**
+     * Remplace atomiquement le barème courant
+     * @param bareme le nouveau barème
+     */
+    public static void publier(BaremeTva bareme) {
+        courant = bareme;
+    }
+
+    /**
+     * Construit un barème à partir des périodes de TVA
+     * @param periodes les périodes de toutes les catégories, dans un ordre quelconque
+     * @return le barème correspondant
+     */
+    public static BaremeTva construire(List<TauxTvaPeriode> periodes) {
+        TauxTva[] categories = TauxTva.values();
+        BigDecimal[] avantPremiereDate = new BigDecimal[categories.length];
+        long[][] transitions = new long[categories.length][];
+        BigDecimal[][] tauxParTransition = new BigDecimal[categories.length][];
+
+        Map<TauxTva, List<TauxTvaPeriode>> parCategorie = new EnumMap<>(TauxTva.class);
+        for (TauxTvaPeriode periode : periodes) {
+            parCategorie.computeIfAbsent(periode.getCategorie(), c -> new ArrayList<>()).add(periode);
+        }
+
+        for (TauxTva categorie : categories) {
+            int c = categorie.ordinal();
+            avantPremiereDate[c] = versDecimal(categorie.getValeur());
+            List<TauxTvaPeriode> liste = parCategorie.getOrDefault(categorie, new ArrayList<>());
+            liste.sort(Comparator.comparing(TauxTvaPeriode::getDateEffet));
+            transitions[c] = new long[liste.size()];
+            tauxParTransition[c] = new BigDecimal[liste.size()];
+            for (int i = 0; i < liste.size(); i++) {
+                transitions[c][i] = liste.get(i).getDateEffet().toEpochDay();
+                tauxParTransition[c][i] = versDecimal(normaliser(liste.get(i).getTaux()));
+            }
+        }
+        return new BaremeTva(avantPremiereDate, transitions, tauxParTransition);
+    }
+
+    /**
+     * Résout le taux décimal (ex : 0.2 pour 20%) d'une catégorie à une date
+     * @param categorie la catégorie de TVA
+     * @param date la date de la facture (null pour le taux le plus récent)
+     * @return le taux décimal applicable
+     */
+    public BigDecimal tauxDecimal(TauxTva categorie, LocalDate date) {
+        int c = categorie.ordinal();
+        long[] jours = transitions[c];
+        if (jours.length == 0) {
+            return avantPremiereDate[c];
+        }
+        if (date == null) {
+            return tauxParTransition[c][jours.length - 1];
+        }
+        // Hors jour de transition, binarySearch retourne -(point d'insertion) - 1 : la période applicable est la précédente
+        int index = Arrays.binarySearch(jours, date.toEpochDay());
+        int periode = index >= 0 ? index : -index - 2;
+        return periode < 0 ? avantPremiereDate[c] : tauxParTransition[c][periode];
+    }
+
+    /**
+     * Résout le taux en pourcentage (ex : 20.0) d'une catégorie à une date
+     * @param categorie la catégorie de TVA
+     * @param date la date de la facture (null pour le taux le plus récent)
+     * @return le taux en pourcentage applicable
+     */
+    public BigDecimal tauxPourcentage(TauxTva categorie, LocalDate date) {
+        return normaliser(tauxDecimal(categorie, date).multiply(CENT));
+    }
+
+    /**
+     * Deux barèmes sont égaux s'ils résolvent les mêmes taux à toutes les dates
+     */
+    @Override
+    public boolean equals(Object autre) {
+        return autre instanceof BaremeTva bareme
+                && Arrays.equals(avantPremiereDate, bareme.avantPremiereDate)
+                && Arrays.deepEquals(transitions, bareme.transitions)
+                && Arrays.deepEquals(tauxParTransition, bareme.tauxParTransition);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.deepHashCode(transitions) + Arrays.deepHashCode(tauxParTransition);
+    }
+
+    // Même calcul que l'ancien calcul par ligne, pour conserver l'échelle des montants
+    private static BigDecimal versDecimal(BigDecimal pourcentage) {
+        return pourcentage.divide(CENT);
+    }
+
+    // Ramène un taux en pourcentage à l'échelle des valeurs de l'énumération (20.00 -> 20.0)
+    private static BigDecimal normaliser(BigDecimal pourcentage) {
+        BigDecimal taux = pourcentage.stripTrailingZeros();
+        return taux.scale() < 1 ? taux.setScale(1) : taux;
+    }
+}
@@ -0,0 +1,44 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité représentant un changement en attente de publication (table outbox)
+ * Enregistré dans la transaction de la modification, puis recopié dans le journal des changements
+ * et supprimé par le relais (voir RelaisChangementsService)
+ */
+@Entity
+@Table(name = "outbox_changements")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "donnees")
+public class Changement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "type", nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    private TypeChangement type;
+
+    @Column(name = "client_id")
+    private Long clientId;
+
+    @Column(name = "facture_id")
+    private Long factureId;
+
+    @Column(name = "date_changement", nullable = false)
+    private LocalDateTime dateChangement;
+
+    // État de l'entité après la modification, en JSON (nul pour une suppression)
+    @Column(name = "donnees", length = 1_000_000)
+    private String donnees;
+}
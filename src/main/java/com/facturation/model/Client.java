@@ -1,5 +1,8 @@
 package com.facturation.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -8,6 +11,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -16,13 +20,16 @@ import java.util.List;
 /**
  * Entité représentant un client
  * Contient les informations de base d'un client
+ * Les clients supprimés logiquement (date_suppression renseignée) sont exclus de toutes les requêtes
  */
 @Entity
-@Table(name = "clients")
+@Table(name = "clients", indexes = @Index(name = "idx_client_suppression", columnList = "date_suppression"))
+@JsonPropertyOrder({"id", "nom", "email", "siret", "dateCreation", "factures"})
+@SQLRestriction("date_suppression IS NULL")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = "factures")
+@ToString(exclude = {"factures", "modelesRecurrents"})
 public class Client {
 
     @Id
@@ -46,11 +53,21 @@ public class Client {
     @Column(name = "date_creation", nullable = false)
     private LocalDateTime dateCreation;
 
+    // Suppression logique : le client est masqué de toutes les requêtes puis purgé en arrière-plan
+    @Column(name = "date_suppression")
+    @JsonIgnore
+    private LocalDateTime dateSuppression;
+
     // Relation avec les factures (un client peut avoir plusieurs factures)
     @OneToMany(mappedBy = "client", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @com.fasterxml.jackson.annotation.JsonManagedReference
+    @JsonManagedReference
     private List<Facture> factures = new ArrayList<>();
 
+    // Modèles de factures récurrentes du client (non exposés dans le JSON du client)
+    @OneToMany(mappedBy = "client", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<ModeleFactureRecurrente> modelesRecurrents = new ArrayList<>();
+
     // Constructeur avec paramètres (sans id et dateCreation)
     public Client(String nom, String email, String siret) {
         this.nom = nom;
@@ -0,0 +1,501 @@
+package com.facturation.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Instantané analytique des lignes de facture, stocké en colonnes de types primitifs
+ * (montants en centimes, jour en epoch day, ID client, ordinal du taux de TVA) découpées en segments
+ * de taille fixe : une ligne occupe 29 octets, sans objet par ligne, et l'ajout ne recopie jamais les données
+ * Un seul écrivain à la fois ; chaque modification se termine par une écriture volatile de la taille,
+ * lue en premier par les parcours, qui ne prennent donc aucun verrou
+ * Les agrégats sont calculés par un parcours parallèle fork/join, un segment par tâche feuille
+ */
+public final class ColonnesLignes {
+
+    public static final int BITS_SEGMENT = 16;
+    public static final int TAILLE_SEGMENT = 1 << BITS_SEGMENT;
+    private static final int MASQUE_SEGMENT = TAILLE_SEGMENT - 1;
+    private static final int OCTETS_PAR_LIGNE = 8 + 8 + 4 + 4 + 1 + 4;
+
+    // Valeur de la colonne taux marquant une ligne supprimée
+    private static final byte SUPPRIMEE = -1;
+    // Fin de la chaîne des lignes d'une facture
+    private static final int AUCUNE = -1;
+    private static final TauxTva[] TAUX = TauxTva.values();
+    // Au-delà, les groupes sans dimension client sont cumulés dans une table de hachage plutôt qu'un tableau
+    private static final int MAX_GROUPES_DENSES = 4096;
+
+    private long[][] montantHt = new long[0][];
+    private long[][] montantTva = new long[0][];
+    private int[][] jour = new int[0][];
+    private int[][] client = new int[0][];
+    private byte[][] taux = new byte[0][];
+    // Rang de la ligne précédente de la même facture, pour retrouver ses lignes sans parcours
+    private int[][] precedente = new int[0][];
+
+    private final IndexFactures derniereLigne = new IndexFactures();
+    private int nombre;
+    private int supprimees;
+    private int jourMin = Integer.MAX_VALUE;
+    private int jourMax = Integer.MIN_VALUE;
+    private volatile int taille;
+
+    /**
+     * Ajoute une ligne
+     * @param factureId l'ID de la facture
+     * @param clientId l'ID du client de la facture
+     * @param jourFacture la date de la facture en epoch day
+     * @param tauxTva la catégorie de TVA de la ligne
+     * @param htCentimes le montant HT en centimes
+     * @param tvaCentimes le montant de TVA en centimes
+     */
+    public void ajouter(long factureId, int clientId, int jourFacture, TauxTva tauxTva, long htCentimes, long tvaCentimes) {
+        int rang = nombre;
+        int s = rang >>> BITS_SEGMENT;
+        int k = rang & MASQUE_SEGMENT;
+        if (s == montantHt.length) {
+            nouveauSegment();
+        }
+        montantHt[s][k] = htCentimes;
+        montantTva[s][k] = tvaCentimes;
+        jour[s][k] = jourFacture;
+        client[s][k] = clientId;
+        taux[s][k] = (byte) tauxTva.ordinal();
+        precedente[s][k] = derniereLigne.get(factureId);
+        derniereLigne.put(factureId, rang);
+        jourMin = Math.min(jourMin, jourFacture);
+        jourMax = Math.max(jourMax, jourFacture);
+        nombre = rang + 1;
+        taille = nombre;
+    }
+
+    /**
+     * Marque supprimées toutes les lignes d'une facture
+     * @param factureId l'ID de la facture
+     * @return le nombre de lignes supprimées
+     */
+    public int supprimerFacture(long factureId) {
+        int n = 0;
+        for (int rang = derniereLigne.get(factureId); rang != AUCUNE; ) {
+            int s = rang >>> BITS_SEGMENT;
+            int k = rang & MASQUE_SEGMENT;
+            if (taux[s][k] != SUPPRIMEE) {
+                taux[s][k] = SUPPRIMEE;
+                n++;
+            }
+            rang = precedente[s][k];
+        }
+        derniereLigne.put(factureId, AUCUNE);
+        supprimees += n;
+        taille = nombre;
+        return n;
+    }
+
+    /**
+     * Marque supprimées toutes les lignes d'un client
+     * @param clientId l'ID du client
+     * @return le nombre de lignes supprimées
+     */
+    public int supprimerClient(int clientId) {
+        int n = 0;
+        for (int s = 0; s * TAILLE_SEGMENT < nombre; s++) {
+            int fin = Math.min(nombre - s * TAILLE_SEGMENT, TAILLE_SEGMENT);
+            int[] clients = client[s];
+            byte[] tauxSegment = taux[s];
+            for (int k = 0; k < fin; k++) {
+                if (clients[k] == clientId && tauxSegment[k] != SUPPRIMEE) {
+                    tauxSegment[k] = SUPPRIMEE;
+                    n++;
+                }
+            }
+        }
+        supprimees += n;
+        taille = nombre;
+        return n;
+    }
+
+    /**
+     * @return le nombre de lignes vivantes
+     */
+    public int getNombreLignes() {
+        int n = taille;
+        return n - supprimees;
+    }
+
+    /**
+     * @return le nombre de lignes supprimées encore présentes (récupérées à la reconstruction)
+     */
+    public int getLignesSupprimees() {
+        return supprimees;
+    }
+
+    /**
+     * @return la mémoire occupée par les colonnes et l'index des factures, en octets
+     */
+    public long getOctets() {
+        return (long) montantHt.length * TAILLE_SEGMENT * OCTETS_PAR_LIGNE + derniereLigne.getOctets();
+    }
+
+    /**
+     * Calcule les montants et le nombre de lignes par groupe
+     * @param dimensions les dimensions de regroupement (au plus une temporelle, aucune pour un total)
+     * @param du la première date incluse (null pour aucune borne)
+     * @param au la dernière date incluse (null pour aucune borne)
+     * @param clientId le client à retenir (null pour tous)
+     * @param tauxTva la catégorie de TVA à retenir (null pour toutes)
+     * @param pool le pool fork/join du parcours
+     * @return les agrégats par groupe
+     */
+    public Agregats agreger(Set<DimensionAnalytique> dimensions, LocalDate du, LocalDate au,
+                            Integer clientId, TauxTva tauxTva, ForkJoinPool pool) {
+        int n = taille;
+        DimensionAnalytique temporelle = dimensions.stream()
+                .filter(DimensionAnalytique::isTemporelle)
+                .reduce((a, b) -> {
+                    throw new IllegalArgumentException("Une seule dimension temporelle est autorisée");
+                })
+                .orElse(null);
+        int premier = Math.max(du != null ? Math.toIntExact(du.toEpochDay()) : Integer.MIN_VALUE, jourMin);
+        int dernier = Math.min(au != null ? Math.toIntExact(au.toEpochDay()) : Integer.MAX_VALUE, jourMax);
+
+        boolean grouperClient = dimensions.contains(DimensionAnalytique.CLIENT);
+        boolean grouperTaux = dimensions.contains(DimensionAnalytique.TAUX_TVA);
+        if (n == 0 || premier > dernier) {
+            return new Agregats(new TableAgregats(), n, grouperClient, null, grouperTaux);
+        }
+
+        // Numéro de période de chaque jour de l'intervalle et premier jour de chaque période
+        int[] indexParJour = null;
+        int[] debutsPeriodes = null;
+        if (temporelle != null) {
+            indexParJour = new int[dernier - premier + 1];
+            debutsPeriodes = periodes(temporelle, premier, indexParJour);
+        }
+        int nombreGroupes = (debutsPeriodes != null ? debutsPeriodes.length : 1) * (grouperTaux ? TAUX.length : 1);
+        Parcours parcours = new Parcours(montantHt, montantTva, jour, client, taux, premier, dernier,
+                clientId != null, clientId != null ? clientId : 0, tauxTva != null ? (byte) tauxTva.ordinal() : SUPPRIMEE,
+                grouperClient, indexParJour, grouperTaux,
+                !grouperClient && nombreGroupes <= MAX_GROUPES_DENSES ? nombreGroupes : 0);
+        return new Agregats(pool.invoke(new Agregation(parcours, 0, n)), n, grouperClient, debutsPeriodes, grouperTaux);
+    }
+
+    private void nouveauSegment() {
+        int s = montantHt.length;
+        montantHt = Arrays.copyOf(montantHt, s + 1);
+        montantTva = Arrays.copyOf(montantTva, s + 1);
+        jour = Arrays.copyOf(jour, s + 1);
+        client = Arrays.copyOf(client, s + 1);
+        taux = Arrays.copyOf(taux, s + 1);
+        precedente = Arrays.copyOf(precedente, s + 1);
+        montantHt[s] = new long[TAILLE_SEGMENT];
+        montantTva[s] = new long[TAILLE_SEGMENT];
+        jour[s] = new int[TAILLE_SEGMENT];
+        client[s] = new int[TAILLE_SEGMENT];
+        taux[s] = new byte[TAILLE_SEGMENT];
+        precedente[s] = new int[TAILLE_SEGMENT];
+    }
+
+    /**
+     * Remplit le numéro de période de chaque jour à partir du premier jour
+     * @return le premier jour (epoch day) de chaque période
+     */
+    private static int[] periodes(DimensionAnalytique dimension, int premier, int[] indexParJour) {
+        int[] debuts = new int[indexParJour.length];
+        int nombre = 0;
+        LocalDate date = LocalDate.ofEpochDay(premier);
+        for (int i = 0; i < indexParJour.length; i++, date = date.plusDays(1)) {
+            LocalDate debut = switch (dimension) {
+                case SEMAINE -> date.minusDays(date.getDayOfWeek().getValue() - 1);
+                case MOIS -> date.withDayOfMonth(1);
+                case ANNEE -> date.withDayOfYear(1);
+                default -> date;
+            };
+            if (nombre == 0 || debuts[nombre - 1] != debut.toEpochDay()) {
+                debuts[nombre++] = (int) debut.toEpochDay();
+            }
+            indexParJour[i] = nombre - 1;
+        }
+        return Arrays.copyOf(debuts, nombre);
+    }
+
+    /**
+     * Colonnes et critères figés au début d'un parcours
+     */
+    private record Parcours(long[][] montantHt, long[][] montantTva, int[][] jour, int[][] client, byte[][] taux,
+                            int premier, int dernier, boolean filtreClient, int clientId, byte filtreTaux,
+                            boolean grouperClient, int[] periodes, boolean grouperTaux, int groupesDenses) {
+
+        // Clé de groupe : ID client sur 32 bits, numéro de période sur 24 bits, ordinal du taux sur 8 bits
+        TableAgregats agreger(int debut, int fin) {
+            if (groupesDenses > 0) {
+                return agregerDense(debut, fin);
+            }
+            TableAgregats table = new TableAgregats();
+            int s = debut >>> BITS_SEGMENT;
+            int finSegment = Math.min(fin - (s << BITS_SEGMENT), TAILLE_SEGMENT);
+            long[] ht = montantHt[s];
+            long[] tva = montantTva[s];
+            int[] jours = jour[s];
+            int[] clients = client[s];
+            byte[] tauxSegment = taux[s];
+            for (int k = debut & MASQUE_SEGMENT; k < finSegment; k++) {
+                byte t = tauxSegment[k];
+                int j = jours[k];
+                int c = clients[k];
+                if (t == SUPPRIMEE || j < premier || j > dernier
+                        || (filtreTaux != SUPPRIMEE && t != filtreTaux) || (filtreClient && c != clientId)) {
+                    continue;
+                }
+                long cle = 0;
+                if (grouperClient) {
+                    cle = (long) c << 32;
+                }
+                if (periodes != null) {
+                    cle |= (long) periodes[j - premier] << 8;
+                }
+                if (grouperTaux) {
+                    cle |= t;
+                }
+                table.ajouter(cle, ht[k], tva[k], 1);
+            }
+            return table;
+        }
+
+        // Sans dimension client, peu de groupes : cumul dans des tableaux indexés par période et taux
+        private TableAgregats agregerDense(int debut, int fin) {
+            int nombreTaux = grouperTaux ? TAUX.length : 1;
+            long[] sommesHt = new long[groupesDenses];
+            long[] sommesTva = new long[groupesDenses];
+            long[] nombres = new long[groupesDenses];
+            int s = debut >>> BITS_SEGMENT;
+            int finSegment = Math.min(fin - (s << BITS_SEGMENT), TAILLE_SEGMENT);
+            long[] ht = montantHt[s];
+            long[] tva = montantTva[s];
+            int[] jours = jour[s];
+            int[] clients = client[s];
+            byte[] tauxSegment = taux[s];
+            for (int k = debut & MASQUE_SEGMENT; k < finSegment; k++) {
+                byte t = tauxSegment[k];
+                int j = jours[k];
+                if (t == SUPPRIMEE || j < premier || j > dernier
+                        || (filtreTaux != SUPPRIMEE && t != filtreTaux) || (filtreClient && clients[k] != clientId)) {
+                    continue;
+                }
+                int g = (periodes != null ? periodes[j - premier] * nombreTaux : 0) + (grouperTaux ? t : 0);
+                sommesHt[g] += ht[k];
+                sommesTva[g] += tva[k];
+                nombres[g]++;
+            }
+            TableAgregats table = new TableAgregats();
+            for (int g = 0; g < groupesDenses; g++) {
+                if (nombres[g] != 0) {
+                    table.ajouter((long) (g / nombreTaux) << 8 | (g % nombreTaux), sommesHt[g], sommesTva[g], nombres[g]);
+                }
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Tâche fork/join : découpe l'intervalle de rangs par segments et fusionne les tables partielles
+     */
+    private static final class Agregation extends RecursiveTask<TableAgregats> {
+
+        private final Parcours parcours;
+        private final int debut;
+        private final int fin;
+
+        Agregation(Parcours parcours, int debut, int fin) {
+            this.parcours = parcours;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected TableAgregats compute() {
+            if (fin - debut <= TAILLE_SEGMENT && (debut >>> BITS_SEGMENT) == ((fin - 1) >>> BITS_SEGMENT)) {
+                return parcours.agreger(debut, fin);
+            }
+            int milieu = ((debut + fin) >>> 1) & ~MASQUE_SEGMENT;
+            if (milieu <= debut) {
+                milieu = (debut & ~MASQUE_SEGMENT) + TAILLE_SEGMENT;
+            }
+            Agregation gauche = new Agregation(parcours, debut, milieu);
+            gauche.fork();
+            TableAgregats droite = new Agregation(parcours, milieu, fin).compute();
+            return TableAgregats.fusionner(gauche.join(), droite);
+        }
+    }
+
+    /**
+     * Résultat d'une agrégation, décodé groupe par groupe
+     */
+    public static final class Agregats {
+
+        /**
+         * Reçoit un groupe ; les dimensions non demandées valent null
+         */
+        @FunctionalInterface
+        public interface Visiteur {
+            void groupe(Long clientId, LocalDate periode, TauxTva tauxTva, long htCentimes, long tvaCentimes, long lignes);
+        }
+
+        private final TableAgregats table;
+        private final int lignesParcourues;
+        private final boolean grouperClient;
+        private final int[] debutsPeriodes;
+        private final boolean grouperTaux;
+
+        private Agregats(TableAgregats table, int lignesParcourues, boolean grouperClient, int[] debutsPeriodes,
+                         boolean grouperTaux) {
+            this.table = table;
+            this.lignesParcourues = lignesParcourues;
+            this.grouperClient = grouperClient;
+            this.debutsPeriodes = debutsPeriodes;
+            this.grouperTaux = grouperTaux;
+        }
+
+        public int getNombreGroupes() {
+            return table.taille;
+        }
+
+        public int getLignesParcourues() {
+            return lignesParcourues;
+        }
+
+        public void parcourir(Visiteur visiteur) {
+            for (int i = 0; i < table.cles.length; i++) {
+                if (table.lignes[i] == 0) {
+                    continue;
+                }
+                long cle = table.cles[i];
+                visiteur.groupe(
+                        grouperClient ? (long) (int) (cle >>> 32) : null,
+                        debutsPeriodes != null ? LocalDate.ofEpochDay(debutsPeriodes[(int) ((cle >>> 8) & 0xFFFFFF)]) : null,
+                        grouperTaux ? TAUX[(int) (cle & 0xFF)] : null,
+                        table.ht[i], table.tva[i], table.lignes[i]);
+            }
+        }
+    }
+
+    /**
+     * Table de hachage à adressage ouvert des agrégats par clé de groupe, sans objet par entrée
+     * Une case est libre tant que son nombre de lignes est nul
+     */
+    private static final class TableAgregats {
+
+        private long[] cles = new long[16];
+        private long[] ht = new long[16];
+        private long[] tva = new long[16];
+        private long[] lignes = new long[16];
+        private int taille;
+
+        void ajouter(long cle, long montantHt, long montantTva, long nombre) {
+            int masque = cles.length - 1;
+            int i = hacher(cle) & masque;
+            while (lignes[i] != 0 && cles[i] != cle) {
+                i = (i + 1) & masque;
+            }
+            if (lignes[i] == 0) {
+                cles[i] = cle;
+                taille++;
+            }
+            ht[i] += montantHt;
+            tva[i] += montantTva;
+            lignes[i] += nombre;
+            if (taille * 2 > cles.length) {
+                agrandir();
+            }
+        }
+
+        static TableAgregats fusionner(TableAgregats a, TableAgregats b) {
+            TableAgregats grande = a.taille >= b.taille ? a : b;
+            TableAgregats petite = grande == a ? b : a;
+            while ((grande.taille + petite.taille) * 2 > grande.cles.length) {
+                grande.agrandir();
+            }
+            for (int i = 0; i < petite.cles.length; i++) {
+                if (petite.lignes[i] != 0) {
+                    grande.ajouter(petite.cles[i], petite.ht[i], petite.tva[i], petite.lignes[i]);
+                }
+            }
+            return grande;
+        }
+
+        private void agrandir() {
+            long[] anciennesCles = cles;
+            long[] anciensHt = ht;
+            long[] anciennesTva = tva;
+            long[] anciennesLignes = lignes;
+            int capacite = cles.length * 2;
+            cles = new long[capacite];
+            ht = new long[capacite];
+            tva = new long[capacite];
+            lignes = new long[capacite];
+            taille = 0;
+            for (int i = 0; i < anciennesCles.length; i++) {
+                if (anciennesLignes[i] != 0) {
+                    ajouter(anciennesCles[i], anciensHt[i], anciennesTva[i], anciennesLignes[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Index à adressage ouvert ID de facture -> rang de sa dernière ligne (les ID sont strictement positifs)
+     */
+    private static final class IndexFactures {
+
+        private long[] cles = new long[1024];
+        private int[] rangs = new int[1024];
+        private int taille;
+
+        int get(long factureId) {
+            int masque = cles.length - 1;
+            for (int i = hacher(factureId) & masque; cles[i] != 0; i = (i + 1) & masque) {
+                if (cles[i] == factureId) {
+                    return rangs[i];
+                }
+            }
+            return AUCUNE;
+        }
+
+        void put(long factureId, int rang) {
+            int masque = cles.length - 1;
+            int i = hacher(factureId) & masque;
+            while (cles[i] != 0 && cles[i] != factureId) {
+                i = (i + 1) & masque;
+            }
+            if (cles[i] == 0) {
+                cles[i] = factureId;
+                taille++;
+            }
+            rangs[i] = rang;
+            if (taille * 2 > cles.length) {
+                long[] anciennesCles = cles;
+                int[] anciensRangs = rangs;
+                cles = new long[anciennesCles.length * 2];
+                rangs = new int[anciennesCles.length * 2];
+                taille = 0;
+                for (int j = 0; j < anciennesCles.length; j++) {
+                    if (anciennesCles[j] != 0) {
+                        put(anciennesCles[j], anciensRangs[j]);
+                    }
+                }
+            }
+        }
+
+        long getOctets() {
+            return (long) cles.length * (8 + 4);
+        }
+    }
+
+    private static int hacher(long cle) {
+        long h = cle * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,18 @@
+package com.facturation.model;
+
+/**
+ * Dimensions de regroupement des agrégats analytiques sur les lignes de facture
+ * Une requête combine au plus une dimension temporelle (JOUR, SEMAINE, MOIS ou ANNEE)
+ */
+public enum DimensionAnalytique {
+    CLIENT,
+    TAUX_TVA,
+    JOUR,
+    SEMAINE,
+    MOIS,
+    ANNEE;
+
+    public boolean isTemporelle() {
+        return this != CLIENT && this != TAUX_TVA;
+    }
+}
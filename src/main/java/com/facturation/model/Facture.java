@@ -1,5 +1,8 @@
 package com.facturation.model;
 
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -7,18 +10,26 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Entité représentant une facture
  * Contient les informations de base d'une facture et ses lignes
+ * Les factures supprimées logiquement (date_suppression renseignée) sont exclues de toutes les requêtes
  */
 @Entity
-@Table(name = "factures")
+@Table(name = "factures", indexes = {
+        @Index(name = "idx_facture_client", columnList = "client_id"),
+        @Index(name = "idx_facture_suppression", columnList = "date_suppression")})
+@JsonPropertyOrder({"id", "dateFacture", "lignes", "totalHt", "totalTva", "totalTtc"})
+@SQLRestriction("date_suppression IS NULL")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,9 +47,23 @@ public class Facture {
     @NotNull(message = "Le client est obligatoire")
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "client_id", nullable = false)
-    @com.fasterxml.jackson.annotation.JsonBackReference
+    @JsonBackReference
     private Client client;
 
+    // Suppression logique : la facture est masquée de toutes les requêtes puis purgée en arrière-plan
+    @Column(name = "date_suppression")
+    @JsonIgnore
+    private LocalDateTime dateSuppression;
+
+    // Version incrémentée à chaque modification de la facture ou de ses lignes (verrouillage optimiste),
+    // qui identifie aussi les documents rendus en cache
+    // Défaut en base pour les factures antérieures à la colonne (voir MiseANiveauSchema)
+    @Version
+    @Column(name = "version", nullable = false)
+    @ColumnDefault("0")
+    @JsonIgnore
+    private Long version;
+
     @OneToMany(mappedBy = "facture", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
     private List<LigneFacture> lignes = new ArrayList<>();
 
@@ -0,0 +1,18 @@
+package com.facturation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Formats XML de facture électronique (norme EN 16931)
+ */
+@Getter
+@AllArgsConstructor
+public enum FormatFactureXml {
+    // OASIS UBL 2.1 (Invoice)
+    UBL("ubl"),
+    // UN/CEFACT Cross Industry Invoice, syntaxe de Factur-X
+    CII("cii");
+
+    private final String suffixe;
+}
@@ -0,0 +1,50 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Entité représentant une exécution de la génération des factures récurrentes pour une période
+ * Une génération interrompue est reprise à partir de ses lots non terminés
+ */
+@Entity
+@Table(name = "generations_recurrentes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationRecurrente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Période au format AAAA-MM
+    @Column(name = "periode", nullable = false, unique = true, length = 7)
+    private String periode;
+
+    @Column(name = "date_facture", nullable = false)
+    private LocalDate dateFacture;
+
+    @Column(name = "statut", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private StatutGeneration statut;
+
+    @Column(name = "date_debut", nullable = false)
+    private LocalDateTime dateDebut;
+
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+
+    // Constructeur pour une nouvelle génération
+    public GenerationRecurrente(String periode, LocalDate dateFacture) {
+        this.periode = periode;
+        this.dateFacture = dateFacture;
+        this.statut = StatutGeneration.EN_COURS;
+        this.dateDebut = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,72 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entité représentant une réponse mémorisée pour une clé d'idempotence
+ * Permet de rejouer la première réponse d'un POST sans le réexécuter
+ * La ligne est insérée sans statut dès la réservation de la clé, puis complétée par la réponse :
+ * un doublon reçu par une autre instance voit ainsi que la requête d'origine est en cours
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@ToString(exclude = "corps")
+public class IdempotencyRecord implements Persistable<String> {
+
+    // Clé composée de l'en-tête Idempotency-Key et du chemin de la requête
+    @Id
+    @Column(name = "cle", nullable = false, length = 512)
+    private String cle;
+
+    // Nul tant que la requête propriétaire de la clé est en cours
+    @Column(name = "statut")
+    private Integer statut;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "corps", length = 1_000_000)
+    private byte[] corps;
+
+    // Empreinte SHA-256 du corps de la requête, nulle pour les clés mémorisées avant son introduction
+    @Column(name = "empreinte", length = 64)
+    private String empreinte;
+
+    // Date de réservation, qui identifie aussi la requête propriétaire de la clé
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+
+    // Insertion seule (persist) : une clé déjà réservée fait échouer l'insertion au lieu d'être écrasée
+    @Transient
+    private boolean nouvelle;
+
+    /**
+     * Crée la ligne de réservation d'une clé, sans réponse
+     */
+    public static IdempotencyRecord reservation(String cle, String empreinte, LocalDateTime dateCreation) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setCle(cle);
+        record.setEmpreinte(empreinte);
+        record.setDateCreation(dateCreation);
+        record.setNouvelle(true);
+        return record;
+    }
+
+    @Override
+    public String getId() {
+        return cle;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nouvelle;
+    }
+}
@@ -1,5 +1,9 @@
 package com.facturation.model;
 
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
@@ -15,21 +19,26 @@ import java.math.BigDecimal;
 /**
  * Entité représentant une ligne de facture
  * Contient les détails d'un article ou service facturé
+ * Une ligne peut référencer un produit du catalogue : seuls la référence et les valeurs
+ * surchargées sont alors stockées, les autres valeurs sont lues sur le produit
  */
 @Entity
-@Table(name = "lignes_facture")
+@Table(name = "lignes_facture", indexes = @Index(name = "idx_ligne_facture", columnList = "facture_id"))
+@EntityListeners(ProduitLigneListener.class)
+@JsonPropertyOrder({"id", "description", "quantite", "prixUnitaireHt", "tauxTva", "produitId",
+                    "montantHt", "montantTva", "produitCode", "montantTtc"})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = "facture")
+@ToString(exclude = {"facture", "produit"})
 public class LigneFacture {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @NotBlank(message = "La description est obligatoire")
-    @Column(name = "description", nullable = false)
+    // Nulle si la valeur est celle du produit référencé
+    @Column(name = "description")
     private String description;
 
     @NotNull(message = "La quantité est obligatoire")
@@ -37,20 +46,29 @@ public class LigneFacture {
     @Column(name = "quantite", nullable = false)
     private Integer quantite;
 
-    @NotNull(message = "Le prix unitaire HT est obligatoire")
-    @DecimalMin(value = "0.01", message = "Le prix unitaire HT doit être supérieur à 0")
-    @Column(name = "prix_unitaire_ht", nullable = false, precision = 10, scale = 2)
+    // Nul si la valeur est celle du produit référencé
+    @Column(name = "prix_unitaire_ht", precision = 10, scale = 2)
     private BigDecimal prixUnitaireHt;
 
-    @NotNull(message = "Le taux de TVA est obligatoire")
-    @Column(name = "taux_tva", nullable = false)
+    // Nul si la valeur est celle du produit référencé
+    @Column(name = "taux_tva")
     @Enumerated(EnumType.STRING)
     private TauxTva tauxTva;
 
+    // Référence au produit du catalogue (ligne saisie librement si nulle)
+    @Column(name = "produit_id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long produitId;
+
+    // Produit résolu depuis le catalogue en mémoire au chargement (voir ProduitLigneListener)
+    @Transient
+    @JsonIgnore
+    private Produit produit;
+
     // Relation avec la facture
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "facture_id", nullable = false)
-    @com.fasterxml.jackson.annotation.JsonBackReference
+    @JsonBackReference
     private Facture facture;
 
     // Constructeur avec paramètres (sans id et facture)
@@ -61,6 +79,46 @@ public class LigneFacture {
         this.tauxTva = tauxTva;
     }
 
+    /**
+     * Crée une ligne référençant un produit du catalogue
+     * @param produit le produit facturé
+     * @param quantite la quantité
+     * @return la ligne, sans valeur surchargée
+     */
+    public static LigneFacture depuisProduit(Produit produit, Integer quantite) {
+        LigneFacture ligne = new LigneFacture();
+        ligne.setProduitId(produit.getId());
+        ligne.setProduit(produit);
+        ligne.setQuantite(quantite);
+        return ligne;
+    }
+
+    // Valeurs effectives : valeur surchargée, sinon valeur du produit référencé
+    @NotBlank(message = "La description est obligatoire")
+    public String getDescription() {
+        return description != null || produit == null ? description : produit.getDescription();
+    }
+
+    @NotNull(message = "Le prix unitaire HT est obligatoire")
+    @DecimalMin(value = "0.01", message = "Le prix unitaire HT doit être supérieur à 0")
+    public BigDecimal getPrixUnitaireHt() {
+        return prixUnitaireHt != null || produit == null ? prixUnitaireHt : produit.getPrixUnitaireHt();
+    }
+
+    @NotNull(message = "Le taux de TVA est obligatoire")
+    public TauxTva getTauxTva() {
+        return tauxTva != null || produit == null ? tauxTva : produit.getTauxTva();
+    }
+
+    /**
+     * Retourne le code du produit référencé
+     * @return le code produit ou null pour une ligne libre
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getProduitCode() {
+        return produit != null ? produit.getCode() : null;
+    }
+
     // Méthodes de calcul
     /**
      * Calcule le montant HT de la ligne
@@ -69,19 +127,26 @@ public class LigneFacture {
     public BigDecimal getMontantHt() {
         // Multiplier la quantité par le prix unitaire
         BigDecimal quantiteBigDecimal = BigDecimal.valueOf(quantite);
-        return prixUnitaireHt.multiply(quantiteBigDecimal);
+        return getPrixUnitaireHt().multiply(quantiteBigDecimal);
     }
 
     /**
      * Calcule le montant de TVA de la ligne
-     * @return montant TVA (montant HT * taux TVA)
+     * @return montant TVA (montant HT * taux TVA en vigueur à la date de la facture)
      */
     public BigDecimal getMontantTva() {
         // Récupérer le montant HT
-        BigDecimal montantHt = getMontantHt();
-        
-        // Calculer le taux de TVA (diviser par 100 car c'est un pourcentage)
-        BigDecimal tauxDecimal = tauxTva.getValeur().divide(BigDecimal.valueOf(100));
+        return calculerMontantTva(getMontantHt());
+    }
+
+    /**
+     * Calcule le montant de TVA de la ligne à partir d'un montant HT déjà calculé
+     * @param montantHt le montant HT de la ligne
+     * @return montant TVA (montant HT * taux TVA en vigueur à la date de la facture)
+     */
+    public BigDecimal calculerMontantTva(BigDecimal montantHt) {
+        // Résoudre le taux décimal en vigueur à la date de la facture (déjà divisé par 100)
+        BigDecimal tauxDecimal = BaremeTva.courant().tauxDecimal(getTauxTva(), facture != null ? facture.getDateFacture() : null);
         
         // Multiplier le montant HT par le taux de TVA
         return montantHt.multiply(tauxDecimal);
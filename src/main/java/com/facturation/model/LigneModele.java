@@ -0,0 +1,53 @@
+package com.facturation.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Ligne d'un modèle de facture récurrente
+ * Recopiée en LigneFacture à chaque génération
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LigneModele {
+
+    @NotBlank(message = "La description est obligatoire")
+    @Column(name = "description", nullable = false)
+    private String description;
+
+    @NotNull(message = "La quantité est obligatoire")
+    @Min(value = 1, message = "La quantité doit être au moins égale à 1")
+    @Column(name = "quantite", nullable = false)
+    private Integer quantite;
+
+    @NotNull(message = "Le prix unitaire HT est obligatoire")
+    @DecimalMin(value = "0.01", message = "Le prix unitaire HT doit être supérieur à 0")
+    @Column(name = "prix_unitaire_ht", nullable = false, precision = 10, scale = 2)
+    private BigDecimal prixUnitaireHt;
+
+    @NotNull(message = "Le taux de TVA est obligatoire")
+    @Column(name = "taux_tva", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private TauxTva tauxTva;
+
+    /**
+     * Crée la ligne de facture correspondant à cette ligne de modèle
+     * @return une nouvelle ligne de facture
+     */
+    public LigneFacture toLigneFacture() {
+        return new LigneFacture(description, quantite, prixUnitaireHt, tauxTva);
+    }
+}
@@ -0,0 +1,49 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Entité représentant un lot de clients d'une génération récurrente
+ * Le passage du lot à TERMINEE est validé dans la même transaction que ses factures (point de reprise)
+ */
+@Entity
+@Table(name = "lots_generation", indexes = @Index(name = "idx_lot_generation", columnList = "generation_id, statut"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "generation")
+public class LotGeneration {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "generation_id", nullable = false)
+    private GenerationRecurrente generation;
+
+    @Column(name = "premier_client_id", nullable = false)
+    private Long premierClientId;
+
+    @Column(name = "dernier_client_id", nullable = false)
+    private Long dernierClientId;
+
+    @Column(name = "statut", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private StatutGeneration statut;
+
+    @Column(name = "nombre_factures", nullable = false)
+    private int nombreFactures;
+
+    // Constructeur pour un nouveau lot
+    public LotGeneration(GenerationRecurrente generation, Long premierClientId, Long dernierClientId) {
+        this.generation = generation;
+        this.premierClientId = premierClientId;
+        this.dernierClientId = dernierClientId;
+        this.statut = StatutGeneration.EN_ATTENTE;
+    }
+}
@@ -0,0 +1,72 @@
+package com.facturation.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entité représentant un modèle de facture récurrente rattaché à un client
+ * Sert de base à la génération mensuelle des factures d'abonnement
+ */
+@Entity
+@Table(name = "modeles_facture_recurrente", indexes = @Index(name = "idx_modele_recurrent_client", columnList = "client_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "client")
+public class ModeleFactureRecurrente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "client_id", nullable = false)
+    @JsonIgnore
+    private Client client;
+
+    @Column(name = "actif", nullable = false)
+    private boolean actif = true;
+
+    @Valid
+    @ElementCollection
+    @CollectionTable(name = "lignes_modele", joinColumns = @JoinColumn(name = "modele_id"))
+    @OrderColumn(name = "position")
+    private List<LigneModele> lignes = new ArrayList<>();
+
+    // Constructeur avec client
+    public ModeleFactureRecurrente(Client client, List<LigneModele> lignes) {
+        this.client = client;
+        this.lignes = new ArrayList<>(lignes);
+    }
+
+    /**
+     * Retourne l'ID du client sans initialiser le proxy
+     * @return l'ID du client
+     */
+    public Long getClientId() {
+        return client != null ? client.getId() : null;
+    }
+
+    /**
+     * Crée une nouvelle facture à partir du modèle
+     * @param dateFacture la date de la facture à générer
+     * @return la facture générée (non sauvegardée)
+     */
+    public Facture genererFacture(LocalDate dateFacture) {
+        Facture facture = new Facture(client);
+        facture.setDateFacture(dateFacture);
+        for (LigneModele ligne : lignes) {
+            facture.ajouterLigne(ligne.toLigneFacture());
+        }
+        return facture;
+    }
+}
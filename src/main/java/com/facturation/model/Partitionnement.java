@@ -0,0 +1,30 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entité représentant les paramètres du partitionnement, enregistrés sur la base principale au premier
+ * démarrage avec plusieurs shards (ligne unique) : le shard d'un ID en dépend, ils ne doivent plus changer
+ * Lue et écrite au démarrage, avant l'ouverture des repositories (voir RoutageShards.initialiserPremierId)
+ */
+@Entity
+@Table(name = "partitionnement")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Partitionnement {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Integer id;
+
+    // Premier ID entrelacé : les ID inférieurs sont ceux de la base principale avant le partitionnement
+    @Column(name = "premier_id", nullable = false)
+    private Long premierId;
+
+    @Column(name = "nombre_shards", nullable = false)
+    private Integer nombreShards;
+}
@@ -0,0 +1,48 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Entité représentant un produit du catalogue
+ * Un produit est immuable une fois créé : les lignes de facture qui le référencent en dépendent
+ */
+@Entity
+@Table(name = "produits")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Produit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotBlank(message = "Le code produit est obligatoire")
+    @Column(name = "code", nullable = false, unique = true, length = 64)
+    private String code;
+
+    @NotBlank(message = "La description est obligatoire")
+    @Column(name = "description", nullable = false)
+    private String description;
+
+    @NotNull(message = "Le prix unitaire HT est obligatoire")
+    @DecimalMin(value = "0.01", message = "Le prix unitaire HT doit être supérieur à 0")
+    @Column(name = "prix_unitaire_ht", nullable = false, precision = 10, scale = 2)
+    private BigDecimal prixUnitaireHt;
+
+    @NotNull(message = "Le taux de TVA est obligatoire")
+    @Column(name = "taux_tva", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private TauxTva tauxTva;
+
+    @Column(name = "actif", nullable = false)
+    private boolean actif = true;
+}
@@ -0,0 +1,36 @@
+package com.facturation.model;
+
+import com.facturation.service.CatalogueProduitsService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Listener JPA qui rattache aux lignes de facture chargées le produit du catalogue en mémoire
+ * Les lignes d'un même produit partagent ainsi une seule instance, sans requête supplémentaire
+ */
+public class ProduitLigneListener {
+
+    // Résolu à l'usage : le catalogue dépend lui-même de l'EntityManagerFactory qui crée ce listener
+    private final ObjectProvider<CatalogueProduitsService> catalogueProduitsService;
+
+    public ProduitLigneListener(ObjectProvider<CatalogueProduitsService> catalogueProduitsService) {
+        this.catalogueProduitsService = catalogueProduitsService;
+    }
+
+    // PrePersist : la copie créée par un merge en cascade ne reprend pas le produit transient
+    @PostLoad
+    @PrePersist
+    public void resoudreProduit(LigneFacture ligne) {
+        if (ligne.getProduitId() != null && ligne.getProduit() == null) {
+            Produit produit = catalogueProduitsService.getObject().getProduit(ligne.getProduitId());
+            // Sans le produit, les valeurs non surchargées de la ligne seraient nulles et ses montants incalculables
+            // (les produits ne sont jamais supprimés, mais la référence n'est pas une clé étrangère entre shards)
+            if (produit == null) {
+                throw new IllegalStateException("Produit " + ligne.getProduitId()
+                        + " référencé par la ligne de facture " + ligne.getId() + " introuvable dans le catalogue");
+            }
+            ligne.setProduit(produit);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.facturation.model;
+
+/**
+ * Énumération des états d'une génération de factures récurrentes et de ses lots
+ */
+public enum StatutGeneration {
+    EN_ATTENTE,
+    EN_COURS,
+    TERMINEE
+}
@@ -6,8 +6,8 @@ import lombok.Getter;
 import java.math.BigDecimal;
 
 /**
- * Énumération des taux de TVA autorisés
- * Définit les valeurs de TVA supportées par le système
+ * Énumération des catégories de TVA autorisées
+ * La valeur de chaque catégorie s'applique tant qu'aucune période datée ne la remplace (voir BaremeTva)
  */
 @Getter
 @AllArgsConstructor
@@ -0,0 +1,46 @@
+package com.facturation.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Entité représentant la valeur d'une catégorie de TVA à partir d'une date d'effet
+ * La valeur s'applique aux factures dont la date est postérieure ou égale à la date d'effet,
+ * jusqu'à la période suivante de la même catégorie
+ */
+@Entity
+@Table(name = "taux_tva_periodes",
+       uniqueConstraints = @UniqueConstraint(name = "uk_taux_tva_periode", columnNames = {"categorie", "date_effet"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TauxTvaPeriode {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull(message = "La catégorie de TVA est obligatoire")
+    @Column(name = "categorie", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private TauxTva categorie;
+
+    // Taux en pourcentage (ex : 20.0)
+    @NotNull(message = "Le taux est obligatoire")
+    @DecimalMin(value = "0.0", message = "Le taux doit être positif")
+    @DecimalMax(value = "100.0", message = "Le taux ne peut pas dépasser 100")
+    @Column(name = "taux", nullable = false, precision = 5, scale = 2)
+    private BigDecimal taux;
+
+    @NotNull(message = "La date d'effet est obligatoire")
+    @Column(name = "date_effet", nullable = false)
+    private LocalDate dateEffet;
+}
@@ -0,0 +1,15 @@
+package com.facturation.model;
+
+/**
+ * Types de modification publiés dans le flux des changements
+ */
+public enum TypeChangement {
+    CLIENT_CREE,
+    CLIENT_MODIFIE,
+    // Les factures du client sont supprimées avec lui, sans changement propre
+    CLIENT_SUPPRIME,
+    FACTURE_CREEE,
+    LIGNE_AJOUTEE,
+    FACTURE_MODIFIEE,
+    FACTURE_SUPPRIMEE
+}
@@ -0,0 +1,16 @@
+package com.facturation.model;
+
+/**
+ * Identification du vendeur, émetteur de toutes les factures (documents XML et HTML)
+ * @param nom la raison sociale
+ * @param siret le SIRET
+ * @param numeroTva le numéro de TVA intracommunautaire (omis si vide)
+ * @param adresse la ligne d'adresse postale (omise si vide)
+ * @param codePostal le code postal (omis si vide)
+ * @param ville la ville (omise si vide)
+ * @param pays le code pays ISO 3166-1 alpha-2, obligatoire en EN 16931
+ * @param delaiPaiementJours le délai de paiement en jours, qui donne la date d'échéance des factures
+ */
+public record Vendeur(String nom, String siret, String numeroTva, String adresse, String codePostal, String ville,
+                      String pays, int delaiPaiementJours) {
+}
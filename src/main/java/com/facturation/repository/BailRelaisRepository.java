@@ -0,0 +1,39 @@
+package com.facturation.repository;
+
+import com.facturation.model.BailRelais;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository du bail du relais des changements
+ */
+@Repository
+public interface BailRelaisRepository extends JpaRepository<BailRelais, Integer> {
+
+    /**
+     * Prolonge le bail s'il est détenu par l'instance, ou le reprend s'il a expiré
+     * Une reprise par une autre instance incrémente la génération du bail
+     * @return 1 si l'instance détient le bail, 0 sinon
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BailRelais b SET b.generation = CASE WHEN b.instance = :instance THEN b.generation "
+            + "ELSE b.generation + 1 END, b.instance = :instance, b.expiration = :expiration "
+            + "WHERE b.id = :id AND (b.instance = :instance OR b.expiration < :maintenant)")
+    int prolonger(@Param("id") Integer id, @Param("instance") String instance,
+                  @Param("expiration") LocalDateTime expiration, @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Libère le bail détenu par l'instance (arrêt), pour qu'une autre instance le reprenne sans attendre
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BailRelais b SET b.expiration = :maintenant WHERE b.id = :id AND b.instance = :instance")
+    int liberer(@Param("id") Integer id, @Param("instance") String instance, @Param("maintenant") LocalDateTime maintenant);
+}
@@ -0,0 +1,24 @@
+package com.facturation.repository;
+
+import com.facturation.model.Changement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository de la table outbox des changements en attente de publication
+ */
+@Repository
+public interface ChangementRepository extends JpaRepository<Changement, Long> {
+
+    /**
+     * Lit les plus anciens changements en attente
+     * @param page la taille du lot
+     * @return les changements du lot, par ID croissant
+     */
+    @Query("SELECT c FROM Changement c ORDER BY c.id")
+    List<Changement> findPlusAnciens(Pageable page);
+}
@@ -2,17 +2,30 @@ package com.facturation.repository;
 
 import com.facturation.model.Client;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository pour les opérations de base de données sur les clients
  * Fournit les méthodes CRUD de base et des requêtes personnalisées
+ * Les clients supprimés logiquement sont exclus de toutes les requêtes JPQL (voir Client)
  */
 @Repository
 public interface ClientRepository extends JpaRepository<Client, Long> {
 
+    /**
+     * Charge tous les clients avec leurs factures en une seule requête
+     * @return les clients, par ID croissant
+     */
+    @Query("SELECT DISTINCT c FROM Client c LEFT JOIN FETCH c.factures ORDER BY c.id")
+    List<Client> findAllWithFactures();
+
     /**
      * Trouve un client par son email
      * @param email l'email du client
@@ -40,4 +53,26 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
      * @return true si un client existe avec ce SIRET, false sinon
      */
     boolean existsBySiret(String siret);
-} 
\ No newline at end of file
+
+    /**
+     * Supprime logiquement un client (masqué immédiatement, purgé plus tard)
+     * @param id l'ID du client
+     * @param dateSuppression la date de suppression
+     * @return le nombre de clients marqués (0 si le client n'existe pas ou est déjà supprimé)
+     */
+    @Modifying
+    @Query("UPDATE Client c SET c.dateSuppression = :dateSuppression WHERE c.id = :id AND c.dateSuppression IS NULL")
+    int marquerSupprime(@Param("id") Long id, @Param("dateSuppression") LocalDateTime dateSuppression);
+
+    /**
+     * Purge un lot de clients supprimés logiquement qui n'ont plus ni factures ni modèles récurrents
+     * @param limite le nombre maximal de clients supprimés
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query(value = "DELETE FROM clients WHERE id IN (SELECT c.id FROM clients c WHERE c.date_suppression IS NOT NULL " +
+                   "AND NOT EXISTS (SELECT 1 FROM factures f WHERE f.client_id = c.id) " +
+                   "AND NOT EXISTS (SELECT 1 FROM modeles_facture_recurrente m WHERE m.client_id = c.id) LIMIT :limite)",
+           nativeQuery = true)
+    int purgerSupprimes(@Param("limite") int limite);
+}
@@ -1,17 +1,22 @@
 package com.facturation.repository;
 
 import com.facturation.model.Facture;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository pour les opérations de base de données sur les factures
  * Fournit les méthodes CRUD de base et des requêtes personnalisées
+ * Les factures supprimées logiquement sont exclues de toutes les requêtes JPQL (voir Facture)
  */
 @Repository
 public interface FactureRepository extends JpaRepository<Facture, Long> {
@@ -54,4 +59,96 @@ public interface FactureRepository extends JpaRepository<Facture, Long> {
      */
     @Query("SELECT f FROM Facture f LEFT JOIN FETCH f.lignes LEFT JOIN FETCH f.client WHERE f.id = :factureId")
     Facture findByIdWithLignesAndClient(@Param("factureId") Long factureId);
-} 
\ No newline at end of file
+
+    /**
+     * Liste par pages d'ID croissants les factures d'une période (pagination par clé, sans OFFSET)
+     * @param dateDebut la date de début
+     * @param dateFin la date de fin
+     * @param apresId l'ID de la dernière facture de la page précédente (0 pour la première page)
+     * @param page la taille de la page
+     * @return les ID des factures de la page, par ordre croissant
+     */
+    @Query("SELECT f.id FROM Facture f WHERE f.dateFacture BETWEEN :dateDebut AND :dateFin AND f.id > :apresId ORDER BY f.id")
+    List<Long> findIdsByDateFactureBetween(@Param("dateDebut") LocalDate dateDebut, @Param("dateFin") LocalDate dateFin,
+                                           @Param("apresId") Long apresId, Pageable page);
+
+    /**
+     * Identifiant et version d'une facture
+     */
+    interface VersionFacture {
+        Long getId();
+        Long getVersion();
+    }
+
+    /**
+     * Lit la version courante d'une facture, sans charger la facture
+     * @param factureId l'ID de la facture
+     * @return la version, ou empty si la facture n'existe pas
+     */
+    @Query("SELECT f.version FROM Facture f WHERE f.id = :factureId")
+    Optional<Long> findVersionById(@Param("factureId") Long factureId);
+
+    /**
+     * Liste par pages d'ID croissants les versions des factures d'une période (pagination par clé, sans OFFSET)
+     * @param dateDebut la date de début
+     * @param dateFin la date de fin
+     * @param apresId l'ID de la dernière facture de la page précédente (0 pour la première page)
+     * @param page la taille de la page
+     * @return les ID et versions des factures de la page, par ID croissant
+     */
+    @Query("SELECT f.id AS id, f.version AS version FROM Facture f " +
+           "WHERE f.dateFacture BETWEEN :dateDebut AND :dateFin AND f.id > :apresId ORDER BY f.id")
+    List<VersionFacture> findVersionsByDateFactureBetween(@Param("dateDebut") LocalDate dateDebut,
+                                                          @Param("dateFin") LocalDate dateFin,
+                                                          @Param("apresId") Long apresId, Pageable page);
+
+    /**
+     * Charge un lot de factures avec leurs lignes et leur client en une seule requête
+     * @param ids les ID des factures
+     * @return les factures, par ID croissant
+     */
+    @Query("SELECT DISTINCT f FROM Facture f LEFT JOIN FETCH f.lignes LEFT JOIN FETCH f.client WHERE f.id IN :ids ORDER BY f.id")
+    List<Facture> findAllWithLignesAndClientByIdIn(@Param("ids") List<Long> ids);
+
+    /**
+     * Supprime logiquement une facture (masquée immédiatement, purgée plus tard)
+     * @param id l'ID de la facture
+     * @param dateSuppression la date de suppression
+     * @return le nombre de factures marquées (0 si la facture n'existe pas ou est déjà supprimée)
+     */
+    @Modifying
+    @Query("UPDATE Facture f SET f.dateSuppression = :dateSuppression WHERE f.id = :id AND f.dateSuppression IS NULL")
+    int marquerSupprimee(@Param("id") Long id, @Param("dateSuppression") LocalDateTime dateSuppression);
+
+    /**
+     * Supprime logiquement toutes les factures d'un client en une seule requête
+     * @param clientId l'ID du client
+     * @param dateSuppression la date de suppression
+     * @return le nombre de factures marquées
+     */
+    @Modifying
+    @Query("UPDATE Facture f SET f.dateSuppression = :dateSuppression WHERE f.client.id = :clientId AND f.dateSuppression IS NULL")
+    int marquerSupprimeesParClient(@Param("clientId") Long clientId, @Param("dateSuppression") LocalDateTime dateSuppression);
+
+    /**
+     * Purge un lot de lignes appartenant à des factures supprimées logiquement
+     * @param limite le nombre maximal de lignes supprimées
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query(value = "DELETE FROM lignes_facture WHERE id IN (SELECT l.id FROM lignes_facture l " +
+                   "JOIN factures f ON f.id = l.facture_id WHERE f.date_suppression IS NOT NULL LIMIT :limite)",
+           nativeQuery = true)
+    int purgerLignesSupprimees(@Param("limite") int limite);
+
+    /**
+     * Purge un lot de factures supprimées logiquement dont les lignes ont déjà été purgées
+     * @param limite le nombre maximal de factures supprimées
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query(value = "DELETE FROM factures WHERE id IN (SELECT f.id FROM factures f WHERE f.date_suppression IS NOT NULL " +
+                   "AND NOT EXISTS (SELECT 1 FROM lignes_facture l WHERE l.facture_id = f.id) LIMIT :limite)",
+           nativeQuery = true)
+    int purgerSupprimees(@Param("limite") int limite);
+}
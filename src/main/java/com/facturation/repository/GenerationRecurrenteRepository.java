@@ -0,0 +1,21 @@
+package com.facturation.repository;
+
+import com.facturation.model.GenerationRecurrente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository pour les exécutions de génération de factures récurrentes
+ */
+@Repository
+public interface GenerationRecurrenteRepository extends JpaRepository<GenerationRecurrente, Long> {
+
+    /**
+     * Trouve la génération d'une période
+     * @param periode la période au format AAAA-MM
+     * @return la génération trouvée ou empty si la période n'a jamais été générée
+     */
+    Optional<GenerationRecurrente> findByPeriode(String periode);
+}
@@ -0,0 +1,47 @@
+package com.facturation.repository;
+
+import com.facturation.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository pour les réponses mémorisées par clé d'idempotence
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Supprime les réponses mémorisées avant une date donnée
+     * @param limite la date limite de conservation
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.dateCreation < :limite")
+    int deleteByDateCreationBefore(@Param("limite") LocalDateTime limite);
+
+    /**
+     * Complète une réservation encore en cours avec la réponse de la requête propriétaire
+     * @return 0 si la réservation a été reprise entre-temps par une autre requête
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statut = :statut, r.contentType = :contentType, r.corps = :corps "
+            + "WHERE r.cle = :cle AND r.dateCreation = :dateReservation AND r.statut IS NULL")
+    int terminer(@Param("cle") String cle, @Param("dateReservation") LocalDateTime dateReservation,
+                 @Param("statut") Integer statut, @Param("contentType") String contentType, @Param("corps") byte[] corps);
+
+    /**
+     * Supprime une réservation à condition qu'elle n'ait pas été remplacée entre-temps
+     * @return le nombre de lignes supprimées
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.cle = :cle AND r.dateCreation = :dateReservation")
+    int supprimerReservation(@Param("cle") String cle, @Param("dateReservation") LocalDateTime dateReservation);
+}
@@ -0,0 +1,218 @@
+package com.facturation.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Journal local des changements, en ajout seul, projeté en mémoire
+ * Le fichier est découpé en régions de taille fixe projetées à la demande ; chaque enregistrement
+ * [offset (8 octets) | longueur (4 octets) | données] tient dans une seule région, la fin inutilisée
+ * d'une région étant marquée par un bourrage
+ * L'offset d'un enregistrement est sa position dans le fichier : croissant, stable et adressable sans index
+ * Un seul écrivain (le relais) ; les lecteurs lisent sans verrou jusqu'à la fin publiée
+ */
+public final class JournalChangements implements Closeable {
+
+    /**
+     * Enregistrement lu dans le journal
+     * @param offset la position de l'enregistrement
+     * @param suivant la position à partir de laquelle lire les enregistrements suivants
+     * @param donnees le contenu de l'enregistrement
+     */
+    public record Enregistrement(long offset, long suivant, byte[] donnees) {
+    }
+
+    private static final int TAILLE_ENTETE = 12;
+    // Longueur marquant la fin inutilisée d'une région : l'enregistrement suivant commence à la région suivante
+    private static final int BOURRAGE = -1;
+
+    private final FileChannel canal;
+    private final FileLock verrou;
+    private final int tailleRegion;
+    private final List<MappedByteBuffer> regions = new CopyOnWriteArrayList<>();
+    // Fin publiée : écrite après les données, lue avant elles (les lecteurs ne lisent jamais au-delà)
+    private volatile long fin;
+    private int premiereRegionNonSynchronisee;
+
+    /**
+     * Ouvre ou crée un journal et retrouve sa fin
+     * @param chemin le fichier du journal
+     * @param tailleRegion la taille des régions projetées (à ne pas modifier pour un journal existant)
+     * @throws IllegalStateException si le journal est déjà ouvert par un autre processus
+     */
+    public JournalChangements(Path chemin, int tailleRegion) throws IOException {
+        Path parent = chemin.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.verrou = canal.tryLock();
+        } catch (OverlappingFileLockException e) {
+            canal.close();
+            throw new IllegalStateException("Journal des changements déjà ouvert : " + chemin, e);
+        }
+        if (verrou == null) {
+            canal.close();
+            throw new IllegalStateException("Journal des changements déjà ouvert par un autre processus : " + chemin);
+        }
+        this.tailleRegion = tailleRegion;
+        this.fin = retrouverFin();
+        this.premiereRegionNonSynchronisee = (int) (fin / tailleRegion);
+    }
+
+    /**
+     * Ajoute un enregistrement à la fin du journal (non synchronisé sur disque, voir forcer)
+     * @param donnees le contenu de l'enregistrement
+     * @return l'offset de l'enregistrement
+     * @throws IllegalArgumentException si l'enregistrement dépasse la taille d'une région
+     */
+    public synchronized long ajouter(byte[] donnees) throws IOException {
+        if (TAILLE_ENTETE + donnees.length > tailleRegion) {
+            throw new IllegalArgumentException("Changement trop volumineux pour le journal : " + donnees.length + " octets");
+        }
+        long position = fin;
+        int dansRegion = (int) (position % tailleRegion);
+        if (dansRegion + TAILLE_ENTETE + donnees.length > tailleRegion) {
+            if (tailleRegion - dansRegion >= TAILLE_ENTETE) {
+                MappedByteBuffer region = region(position);
+                region.putLong(dansRegion, position);
+                region.putInt(dansRegion + 8, BOURRAGE);
+            }
+            position = debutRegionSuivante(position);
+            dansRegion = 0;
+        }
+        MappedByteBuffer region = region(position);
+        region.putLong(dansRegion, position);
+        region.put(dansRegion + TAILLE_ENTETE, donnees);
+        // Longueur écrite en dernier : un enregistrement interrompu par un arrêt brutal est ignoré à la réouverture
+        region.putInt(dansRegion + 8, donnees.length);
+        fin = position + TAILLE_ENTETE + donnees.length;
+        return position;
+    }
+
+    /**
+     * Synchronise sur disque les régions modifiées depuis le dernier appel
+     */
+    public synchronized void forcer() {
+        for (int i = premiereRegionNonSynchronisee; i < regions.size(); i++) {
+            regions.get(i).force();
+        }
+        premiereRegionNonSynchronisee = (int) (fin / tailleRegion);
+    }
+
+    /**
+     * Lit des enregistrements à partir d'un offset
+     * @param depuis l'offset du premier enregistrement (ou la position suivante d'un enregistrement lu)
+     * @param maximum le nombre maximal d'enregistrements
+     * @return les enregistrements lus, vide si le journal ne contient rien après l'offset
+     * @throws IllegalArgumentException si l'offset n'est pas le début d'un enregistrement
+     */
+    public List<Enregistrement> lire(long depuis, int maximum) {
+        long limite = verifier(depuis);
+        List<Enregistrement> enregistrements = new ArrayList<>(Math.min(maximum, 256));
+        long position = depuis;
+        while (position < limite && enregistrements.size() < maximum) {
+            int dansRegion = (int) (position % tailleRegion);
+            if (tailleRegion - dansRegion < TAILLE_ENTETE) {
+                position = debutRegionSuivante(position);
+                continue;
+            }
+            MappedByteBuffer region = regions.get((int) (position / tailleRegion));
+            int longueur = region.getInt(dansRegion + 8);
+            if (longueur == BOURRAGE) {
+                position = debutRegionSuivante(position);
+                continue;
+            }
+            byte[] donnees = new byte[longueur];
+            region.get(dansRegion + TAILLE_ENTETE, donnees);
+            long offset = position;
+            position += TAILLE_ENTETE + longueur;
+            enregistrements.add(new Enregistrement(offset, position, donnees));
+        }
+        return enregistrements;
+    }
+
+    /**
+     * Vérifie qu'un offset désigne le début d'un enregistrement ou la fin du journal
+     * @param offset l'offset à vérifier
+     * @return la fin publiée du journal
+     * @throws IllegalArgumentException si l'offset est invalide
+     */
+    public long verifier(long offset) {
+        long limite = fin;
+        if (offset < 0 || offset > limite) {
+            throw new IllegalArgumentException("Offset hors du journal des changements : " + offset + " (fin : " + limite + ")");
+        }
+        int dansRegion = (int) (offset % tailleRegion);
+        if (offset < limite && tailleRegion - dansRegion >= TAILLE_ENTETE
+                && regions.get((int) (offset / tailleRegion)).getLong(dansRegion) != offset) {
+            throw new IllegalArgumentException("Offset invalide : " + offset + " n'est pas le début d'un changement");
+        }
+        return limite;
+    }
+
+    /**
+     * @return la position de fin du journal (offset du prochain enregistrement)
+     */
+    public long getFin() {
+        return fin;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        forcer();
+        verrou.release();
+        canal.close();
+    }
+
+    // Parcourt les enregistrements depuis le début jusqu'au premier en-tête vide ou incohérent
+    private long retrouverFin() throws IOException {
+        long position = 0;
+        long taille = canal.size();
+        while (position < taille) {
+            int dansRegion = (int) (position % tailleRegion);
+            if (tailleRegion - dansRegion < TAILLE_ENTETE) {
+                position = debutRegionSuivante(position);
+                continue;
+            }
+            MappedByteBuffer region = region(position);
+            long offset = region.getLong(dansRegion);
+            int longueur = region.getInt(dansRegion + 8);
+            if (offset != position) {
+                break;
+            }
+            if (longueur == BOURRAGE) {
+                position = debutRegionSuivante(position);
+            } else if (longueur > 0 && dansRegion + TAILLE_ENTETE + longueur <= tailleRegion) {
+                position += TAILLE_ENTETE + longueur;
+            } else {
+                break;
+            }
+        }
+        return position;
+    }
+
+    // Projette les régions jusqu'à celle qui contient la position (le fichier est agrandi si nécessaire)
+    private synchronized MappedByteBuffer region(long position) throws IOException {
+        int index = (int) (position / tailleRegion);
+        while (regions.size() <= index) {
+            regions.add(canal.map(FileChannel.MapMode.READ_WRITE, (long) regions.size() * tailleRegion, tailleRegion));
+        }
+        return regions.get(index);
+    }
+
+    private long debutRegionSuivante(long position) {
+        return (position / tailleRegion + 1) * tailleRegion;
+    }
+}
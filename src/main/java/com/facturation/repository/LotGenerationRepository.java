@@ -0,0 +1,23 @@
+package com.facturation.repository;
+
+import com.facturation.model.LotGeneration;
+import com.facturation.model.StatutGeneration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository pour les lots d'une génération de factures récurrentes
+ */
+@Repository
+public interface LotGenerationRepository extends JpaRepository<LotGeneration, Long> {
+
+    /**
+     * Trouve les lots d'une génération qui ne sont pas dans l'état donné
+     * @param generationId l'ID de la génération
+     * @param statut l'état à exclure
+     * @return la liste des lots restant à traiter
+     */
+    List<LotGeneration> findByGenerationIdAndStatutNotOrderByPremierClientId(Long generationId, StatutGeneration statut);
+}
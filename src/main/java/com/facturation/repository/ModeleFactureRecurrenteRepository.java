@@ -0,0 +1,68 @@
+package com.facturation.repository;
+
+import com.facturation.model.ModeleFactureRecurrente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository pour les modèles de factures récurrentes
+ */
+@Repository
+public interface ModeleFactureRecurrenteRepository extends JpaRepository<ModeleFactureRecurrente, Long> {
+
+    /**
+     * Trouve tous les modèles d'un client
+     * @param clientId l'ID du client
+     * @return la liste des modèles du client
+     */
+    @Query("SELECT m FROM ModeleFactureRecurrente m WHERE m.client.id = :clientId")
+    List<ModeleFactureRecurrente> findByClientId(@Param("clientId") Long clientId);
+
+    /**
+     * Liste les IDs des clients ayant au moins un modèle actif, triés
+     * @return les IDs des clients à facturer
+     */
+    @Query("SELECT DISTINCT c.id FROM ModeleFactureRecurrente m JOIN m.client c " +
+           "WHERE m.actif = true AND c.dateSuppression IS NULL ORDER BY c.id")
+    List<Long> findClientIdsActifs();
+
+    /**
+     * Trouve les modèles actifs d'une tranche de clients avec leurs lignes
+     * @param premierClientId le premier ID client de la tranche (inclus)
+     * @param dernierClientId le dernier ID client de la tranche (inclus)
+     * @return les modèles actifs de la tranche
+     */
+    @Query("SELECT DISTINCT m FROM ModeleFactureRecurrente m JOIN m.client c LEFT JOIN FETCH m.lignes " +
+           "WHERE m.actif = true AND c.dateSuppression IS NULL AND c.id BETWEEN :premierClientId AND :dernierClientId")
+    List<ModeleFactureRecurrente> findActifsByClientIdBetween(@Param("premierClientId") Long premierClientId,
+                                                              @Param("dernierClientId") Long dernierClientId);
+
+    /**
+     * Purge les lignes d'un lot de modèles appartenant à des clients supprimés logiquement
+     * @param limite le nombre maximal de modèles traités
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query(value = "DELETE FROM lignes_modele WHERE modele_id IN (SELECT m.id FROM modeles_facture_recurrente m " +
+                   "JOIN clients c ON c.id = m.client_id WHERE c.date_suppression IS NOT NULL " +
+                   "AND EXISTS (SELECT 1 FROM lignes_modele lm WHERE lm.modele_id = m.id) LIMIT :limite)",
+           nativeQuery = true)
+    int purgerLignesClientsSupprimes(@Param("limite") int limite);
+
+    /**
+     * Purge un lot de modèles appartenant à des clients supprimés logiquement
+     * @param limite le nombre maximal de modèles supprimés
+     * @return le nombre de lignes supprimées
+     */
+    @Modifying
+    @Query(value = "DELETE FROM modeles_facture_recurrente WHERE id IN (SELECT m.id FROM modeles_facture_recurrente m " +
+                   "JOIN clients c ON c.id = m.client_id WHERE c.date_suppression IS NOT NULL " +
+                   "AND NOT EXISTS (SELECT 1 FROM lignes_modele lm WHERE lm.modele_id = m.id) LIMIT :limite)",
+           nativeQuery = true)
+    int purgerClientsSupprimes(@Param("limite") int limite);
+}
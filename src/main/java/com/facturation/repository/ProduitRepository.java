@@ -0,0 +1,19 @@
+package com.facturation.repository;
+
+import com.facturation.model.Produit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository pour les opérations de base de données sur le catalogue produits
+ */
+@Repository
+public interface ProduitRepository extends JpaRepository<Produit, Long> {
+
+    /**
+     * Vérifie si un produit existe avec le code donné
+     * @param code le code à vérifier
+     * @return true si un produit existe avec ce code, false sinon
+     */
+    boolean existsByCode(String code);
+}
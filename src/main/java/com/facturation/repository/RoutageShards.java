@@ -0,0 +1,303 @@
+package com.facturation.repository;
+
+import com.facturation.model.Partitionnement;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Routage des accès aux données entre les shards (bases contenant chacune une partie des clients,
+ * avec leurs factures, lignes, modèles récurrents et changements)
+ * Les ID des entités partitionnées sont entrelacés entre les shards : le shard d'un client, d'une facture
+ * ou d'un modèle se déduit de son ID, sans annuaire. Un nouveau client est placé selon le hachage de son SIRET
+ * Le shard courant est porté par le thread et lu par la DataSource de routage à l'ouverture de la transaction ;
+ * les opérations sur plusieurs shards s'exécutent en parallèle sur un pool dédié, chaque shard dans sa
+ * propre transaction (répartition / regroupement)
+ * Avec un seul shard (configuration par défaut), tout s'exécute directement sur le thread appelant
+ */
+@Slf4j
+@Component
+public class RoutageShards {
+
+    private static final ThreadLocal<Integer> SHARD_COURANT = new ThreadLocal<>();
+
+    private final int nombreShards;
+    private final long premierIdConfigure;
+    private volatile long premierId;
+    private final ExecutorService pool;
+
+    public RoutageShards(@Value("${facturation.sharding.urls:}") List<String> urls,
+                         @Value("${facturation.sharding.premier-id:1}") long premierId,
+                         @Value("${facturation.sharding.pool-size:16}") int taillePool) {
+        this.nombreShards = 1 + (int) urls.stream().filter(url -> !url.isBlank()).count();
+        this.premierIdConfigure = premierId;
+        this.premierId = premierId;
+        this.pool = nombreShards > 1 ? Executors.newFixedThreadPool(taillePool) : null;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return le shard sélectionné sur le thread courant, ou null pour le shard principal
+     */
+    public static Integer shardCourant() {
+        return SHARD_COURANT.get();
+    }
+
+    public int getNombreShards() {
+        return nombreShards;
+    }
+
+    /**
+     * Premier ID entrelacé : les ID inférieurs (données antérieures au partitionnement) sont sur le shard principal
+     */
+    public long getPremierId() {
+        return premierId;
+    }
+
+    /**
+     * Fixe le premier ID entrelacé à partir de celui enregistré sur la base principale, ou l'enregistre
+     * au premier démarrage avec plusieurs shards : au-delà des plus grands ID existants de la base principale,
+     * dont les données restent ainsi routées vers elle, et au moins égal à celui configuré
+     * Appelé à l'initialisation des shards, une fois leur schéma appliqué (voir ShardingConfig)
+     * @param jdbcTemplate l'accès JDBC par la DataSource de routage
+     * @param tables les tables partitionnées
+     * @throws IllegalStateException si le nombre de shards a changé depuis l'enregistrement
+     */
+    public void initialiserPremierId(JdbcTemplate jdbcTemplate, List<String> tables) {
+        List<Partitionnement> enregistre = executer(0, () -> jdbcTemplate.query(
+                "SELECT premier_id, nombre_shards FROM partitionnement WHERE id = 1",
+                (ligne, i) -> new Partitionnement(1, ligne.getLong(1), ligne.getInt(2))));
+        if (!enregistre.isEmpty()) {
+            Partitionnement partitionnement = enregistre.get(0);
+            if (partitionnement.getNombreShards() != nombreShards) {
+                throw new IllegalStateException("Partitionnement initialisé sur " + partitionnement.getNombreShards()
+                        + " shards et démarré sur " + nombreShards + " : les ID existants seraient routés vers d'autres shards");
+            }
+            premierId = partitionnement.getPremierId();
+            return;
+        }
+
+        long derive = deriverPremierId(jdbcTemplate, tables);
+        try {
+            executer(0, () -> jdbcTemplate.update(
+                    "INSERT INTO partitionnement (id, premier_id, nombre_shards) VALUES (1, ?, ?)", derive, nombreShards));
+        } catch (DuplicateKeyException e) {
+            // Enregistré au même moment par une autre instance
+            initialiserPremierId(jdbcTemplate, tables);
+            return;
+        }
+        log.info("Partitionnement sur {} shards enregistré, premier ID entrelacé : {}", nombreShards, derive);
+        premierId = derive;
+    }
+
+    private long deriverPremierId(JdbcTemplate jdbcTemplate, List<String> tables) {
+        for (int shard = 1; shard < nombreShards; shard++) {
+            Long clients = executer(shard, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM clients", Long.class));
+            if (clients > 0) {
+                // Shards déjà alimentés avant l'enregistrement du partitionnement : leurs ID suivent le premier ID configuré
+                return premierIdConfigure;
+            }
+        }
+        long max = 0;
+        for (String table : tables) {
+            max = Math.max(max, executer(0, () ->
+                    jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class)));
+        }
+        return Math.max(premierIdConfigure, max + 1);
+    }
+
+    /**
+     * Shard d'une entité partitionnée
+     * @param id l'ID d'un client, d'une facture, d'une ligne, d'un modèle récurrent ou d'un changement
+     * @return le numéro du shard (le shard principal pour un ID absent, rejeté ensuite par le service)
+     */
+    public int shardDe(Long id) {
+        return id == null || id < premierId ? 0 : (int) ((id - premierId) % nombreShards);
+    }
+
+    /**
+     * Shard d'un nouveau client : deux clients de même SIRET sont placés sur le même shard,
+     * dont la contrainte d'unicité s'applique donc aussi
+     * @param siret le SIRET du client
+     * @return le numéro du shard
+     */
+    public int shardNouveauClient(String siret) {
+        return Math.floorMod(siret.hashCode(), nombreShards);
+    }
+
+    /**
+     * Sélectionne le shard de la requête HTTP courante, avant toute transaction de la requête
+     * (voir RoutageShardsInterceptor, qui le libère à la fin de la requête)
+     * @param shard le numéro du shard
+     */
+    public void routerRequete(int shard) {
+        if (nombreShards > 1) {
+            SHARD_COURANT.set(shard);
+        }
+    }
+
+    /**
+     * Libère le shard de la requête HTTP courante
+     */
+    public void libererRequete() {
+        SHARD_COURANT.remove();
+    }
+
+    /**
+     * Exécute une action sur un shard
+     * Si le thread appelant a déjà une transaction ou un contexte de persistance (lié à une connexion),
+     * l'action s'exécute sur un thread du pool pour obtenir une connexion au shard demandé
+     * @param shard le numéro du shard
+     * @param action l'action, qui ouvre sa propre transaction
+     * @return le résultat de l'action
+     */
+    public <T> T executer(int shard, Supplier<T> action) {
+        if (nombreShards == 1) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.getResourceMap().isEmpty()) {
+            return attendre(pool.submit(() -> surShard(shard, action)));
+        }
+        return surShard(shard, action);
+    }
+
+    /**
+     * Exécute une action sur chaque shard, en parallèle
+     * @param action l'action, appelée avec le numéro du shard, qui ouvre sa propre transaction
+     * @return les résultats, dans l'ordre des shards
+     */
+    public <T> List<T> surChaqueShard(IntFunction<T> action) {
+        if (nombreShards == 1) {
+            return List.of(action.apply(0));
+        }
+        List<Future<T>> resultats = new ArrayList<>(nombreShards);
+        for (int shard = 0; shard < nombreShards; shard++) {
+            int numero = shard;
+            resultats.add(pool.submit(() -> surShard(numero, () -> action.apply(numero))));
+        }
+        List<T> valeurs = new ArrayList<>(nombreShards);
+        for (Future<T> resultat : resultats) {
+            valeurs.add(attendre(resultat));
+        }
+        return valeurs;
+    }
+
+    /**
+     * Interroge tous les shards et fusionne leurs résultats triés
+     * Pour une pagination par clé, chaque shard renvoie sa page après la même clé : les premiers
+     * éléments de la fusion forment la page globale, la dernière clé retenue sert de curseur suivant
+     * @param requete la requête, appelée avec le numéro du shard, dont le résultat est trié selon l'ordre
+     * @param ordre l'ordre des résultats
+     * @param limite le nombre maximal d'éléments retenus
+     * @return les éléments fusionnés, triés
+     */
+    public <T> List<T> fusionner(IntFunction<List<T>> requete, Comparator<? super T> ordre, int limite) {
+        List<List<T>> parShard = surChaqueShard(requete);
+        if (parShard.size() == 1) {
+            List<T> resultats = parShard.get(0);
+            return resultats.size() <= limite ? resultats : resultats.subList(0, limite);
+        }
+        // Fusion des listes triées : tête de chaque liste dans un tas, indexée par [shard, position]
+        PriorityQueue<int[]> tetes = new PriorityQueue<>((a, b) ->
+                ordre.compare(parShard.get(a[0]).get(a[1]), parShard.get(b[0]).get(b[1])));
+        for (int shard = 0; shard < parShard.size(); shard++) {
+            if (!parShard.get(shard).isEmpty()) {
+                tetes.add(new int[]{shard, 0});
+            }
+        }
+        List<T> fusion = new ArrayList<>();
+        while (!tetes.isEmpty() && fusion.size() < limite) {
+            int[] tete = tetes.poll();
+            List<T> liste = parShard.get(tete[0]);
+            fusion.add(liste.get(tete[1]));
+            if (tete[1] + 1 < liste.size()) {
+                tetes.add(new int[]{tete[0], tete[1] + 1});
+            }
+        }
+        return fusion;
+    }
+
+    /**
+     * Charge des entités partitionnées par leurs ID, chaque shard ne recevant que les siens
+     * @param ids les ID
+     * @param requete la requête de chargement d'une partie des ID, exécutée sur leur shard
+     * @param ordre l'ordre du résultat
+     * @return les entités chargées, triées
+     */
+    public <T> List<T> chargerParIds(List<Long> ids, Function<List<Long>, List<T>> requete, Comparator<? super T> ordre) {
+        if (nombreShards == 1) {
+            return requete.apply(ids);
+        }
+        Map<Integer, List<Long>> idsParShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsParShard.computeIfAbsent(shardDe(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<Future<List<T>>> resultats = new ArrayList<>(idsParShard.size());
+        idsParShard.forEach((shard, idsShard) ->
+                resultats.add(pool.submit(() -> surShard(shard, () -> requete.apply(idsShard)))));
+        List<T> entites = new ArrayList<>(ids.size());
+        for (Future<List<T>> resultat : resultats) {
+            entites.addAll(attendre(resultat));
+        }
+        entites.sort(ordre);
+        return entites;
+    }
+
+    private static <T> T surShard(int shard, Supplier<T> action) {
+        Integer precedent = SHARD_COURANT.get();
+        SHARD_COURANT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (precedent != null) {
+                SHARD_COURANT.set(precedent);
+            } else {
+                SHARD_COURANT.remove();
+            }
+        }
+    }
+
+    /**
+     * Attend le résultat d'une tâche soumise à un pool, en relançant l'exception qu'elle a levée
+     * @param resultat le résultat de la tâche
+     * @return la valeur calculée par la tâche
+     */
+    public static <T> T attendre(Future<T> resultat) {
+        try {
+            return resultat.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tâche parallèle interrompue", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.facturation.repository;
+
+import com.facturation.model.TauxTva;
+import com.facturation.model.TauxTvaPeriode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository pour les périodes de taux de TVA
+ */
+@Repository
+public interface TauxTvaPeriodeRepository extends JpaRepository<TauxTvaPeriode, Long> {
+
+    /**
+     * Trouve toutes les périodes triées par catégorie et date d'effet
+     * @return la liste des périodes
+     */
+    List<TauxTvaPeriode> findAllByOrderByCategorieAscDateEffetAsc();
+
+    /**
+     * Vérifie si une période existe déjà pour une catégorie et une date d'effet
+     * @param categorie la catégorie de TVA
+     * @param dateEffet la date d'effet
+     * @return true si la période existe, false sinon
+     */
+    boolean existsByCategorieAndDateEffet(TauxTva categorie, LocalDate dateEffet);
+}
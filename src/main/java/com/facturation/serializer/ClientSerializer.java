@@ -0,0 +1,42 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Client;
+import com.facturation.model.Facture;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Sérialiseur JSON dédié aux clients
+ * Les factures du client sont écrites avec le sérialiseur dédié des factures
+ */
+public class ClientSerializer extends StdSerializer<Client> {
+
+    public ClientSerializer() {
+        super(Client.class);
+    }
+
+    @Override
+    public void serialize(Client client, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(client);
+        LigneFactureSerializer.ecrireLong(gen, "id", client.getId());
+        gen.writeStringField("nom", client.getNom());
+        gen.writeStringField("email", client.getEmail());
+        gen.writeStringField("siret", client.getSiret());
+        provider.defaultSerializeField("dateCreation", client.getDateCreation(), gen);
+        if (client.getFactures() != null) {
+            gen.writeArrayFieldStart("factures");
+            for (Facture facture : client.getFactures()) {
+                gen.writeStartObject(facture);
+                FactureSerializer.ecrireChamps(facture, gen, provider);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        } else {
+            gen.writeNullField("factures");
+        }
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,20 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Client;
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Module Jackson regroupant les sérialiseurs dédiés des factures, lignes et clients
+ * Les tampons d'écriture restent ceux recyclés par Jackson (BufferRecycler) : aucune chaîne intermédiaire n'est produite
+ */
+public class FacturationJsonModule extends SimpleModule {
+
+    public FacturationJsonModule() {
+        super("FacturationJsonModule");
+        addSerializer(Facture.class, new FactureSerializer());
+        addSerializer(LigneFacture.class, new LigneFactureSerializer());
+        addSerializer(Client.class, new ClientSerializer());
+    }
+}
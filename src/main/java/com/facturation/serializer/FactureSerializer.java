@@ -0,0 +1,54 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Sérialiseur JSON dédié aux factures
+ * Écrit les champs directement dans le JsonGenerator et calcule les montants de chaque ligne
+ * une seule fois, en cumulant les totaux pendant l'écriture des lignes (un seul parcours)
+ * Produit exactement le même JSON que la sérialisation par introspection
+ */
+public class FactureSerializer extends StdSerializer<Facture> {
+
+    public FactureSerializer() {
+        super(Facture.class);
+    }
+
+    @Override
+    public void serialize(Facture facture, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(facture);
+        ecrireChamps(facture, gen, provider);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Écrit les champs d'une facture dans l'objet JSON courant
+     */
+    static void ecrireChamps(Facture facture, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        LigneFactureSerializer.ecrireLong(gen, "id", facture.getId());
+        provider.defaultSerializeField("dateFacture", facture.getDateFacture(), gen);
+
+        BigDecimal totalHt = BigDecimal.ZERO;
+        BigDecimal totalTva = BigDecimal.ZERO;
+        gen.writeArrayFieldStart("lignes");
+        for (LigneFacture ligne : facture.getLignes()) {
+            BigDecimal montantHt = ligne.getMontantHt();
+            BigDecimal montantTva = ligne.calculerMontantTva(montantHt);
+            LigneFactureSerializer.ecrire(ligne, montantHt, montantTva, gen);
+            totalHt = totalHt.add(montantHt);
+            totalTva = totalTva.add(montantTva);
+        }
+        gen.writeEndArray();
+
+        gen.writeNumberField("totalHt", totalHt);
+        gen.writeNumberField("totalTva", totalTva);
+        gen.writeNumberField("totalTtc", totalHt.add(totalTva));
+    }
+}
@@ -0,0 +1,404 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Client;
+import com.facturation.model.Facture;
+import com.facturation.model.FormatFactureXml;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.TauxTva;
+import com.facturation.model.Vendeur;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Écriture des factures au format XML de facture électronique (EN 16931), en UBL 2.1 ou en CII (syntaxe de Factur-X)
+ * Les éléments sont écrits au fil de l'eau avec StAX, sans construire d'arbre DOM ;
+ * la ventilation de la TVA par catégorie est calculée en un seul parcours des lignes (voir VentilationTva)
+ * Sans état mutable : une même instance est partagée entre les threads de rendu
+ */
+public final class FactureXmlWriter {
+
+    private static final String UBL = "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2";
+    private static final String CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+    private static final String CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+    private static final String RSM = "urn:un:unece:uncefact:data:standard:CrossIndustryInvoice:100";
+    private static final String RAM = "urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:100";
+    private static final String UDT = "urn:un:unece:uncefact:data:standard:UnqualifiedDataType:100";
+
+    private static final String PROFIL_EN16931 = "urn:cen.eu:en16931:2017";
+    private static final String TYPE_FACTURE = "380";
+    private static final String DEVISE = "EUR";
+    private static final String UNITE = "C62";
+    // Schéma d'identification SIRENE (ISO 6523)
+    private static final String SCHEMA_SIRET = "0002";
+    // Les clients sont identifiés par un SIRET obligatoire : entreprises immatriculées en France
+    private static final String PAYS_ACHETEUR = "FR";
+    private static final DateTimeFormatter FORMAT_102 = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final XMLOutputFactory FABRIQUE = XMLOutputFactory.newFactory();
+
+    private final Vendeur vendeur;
+
+    public FactureXmlWriter(Vendeur vendeur) {
+        this.vendeur = vendeur;
+    }
+
+    /**
+     * Écrit une facture au format demandé
+     * La facture doit être chargée avec ses lignes et son client
+     * @param facture la facture
+     * @param format le format XML
+     * @param sortie le flux de sortie (non fermé)
+     */
+    public void ecrire(Facture facture, FormatFactureXml format, OutputStream sortie) {
+        try {
+            XMLStreamWriter xml = FABRIQUE.createXMLStreamWriter(sortie, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            VentilationTva ventilation = new VentilationTva(facture);
+            if (format == FormatFactureXml.UBL) {
+                ecrireUbl(facture, ventilation, xml);
+            } else {
+                ecrireCii(facture, ventilation, xml);
+            }
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            throw new IllegalStateException("Écriture XML de la facture " + facture.getId() + " impossible", e);
+        }
+    }
+
+    // Date d'échéance (BR-CO-25 : obligatoire, avec ou à défaut des conditions de paiement, si un montant est dû)
+    private LocalDate echeance(Facture facture) {
+        return facture.getDateFacture().plusDays(vendeur.delaiPaiementJours());
+    }
+
+    private String conditionsPaiement() {
+        return "Paiement à " + vendeur.delaiPaiementJours() + " jours";
+    }
+
+    // UBL 2.1
+
+    private void ecrireUbl(Facture facture, VentilationTva ventilation, XMLStreamWriter xml) throws XMLStreamException {
+        xml.setDefaultNamespace(UBL);
+        xml.setPrefix("cac", CAC);
+        xml.setPrefix("cbc", CBC);
+        xml.writeStartElement(UBL, "Invoice");
+        xml.writeDefaultNamespace(UBL);
+        xml.writeNamespace("cac", CAC);
+        xml.writeNamespace("cbc", CBC);
+
+        cbc(xml, "CustomizationID", PROFIL_EN16931);
+        cbc(xml, "ID", String.valueOf(facture.getId()));
+        cbc(xml, "IssueDate", facture.getDateFacture().toString());
+        cbc(xml, "DueDate", echeance(facture).toString());
+        cbc(xml, "InvoiceTypeCode", TYPE_FACTURE);
+        cbc(xml, "DocumentCurrencyCode", DEVISE);
+
+        xml.writeStartElement(CAC, "AccountingSupplierParty");
+        xml.writeStartElement(CAC, "Party");
+        ublNom(xml, vendeur.nom());
+        ublAdresse(xml, vendeur.adresse(), vendeur.codePostal(), vendeur.ville(), vendeur.pays());
+        if (vendeur.numeroTva() != null && !vendeur.numeroTva().isBlank()) {
+            xml.writeStartElement(CAC, "PartyTaxScheme");
+            cbc(xml, "CompanyID", vendeur.numeroTva());
+            ublSchemaTva(xml);
+            xml.writeEndElement();
+        }
+        ublEntiteLegale(xml, vendeur.nom(), vendeur.siret());
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        Client client = facture.getClient();
+        xml.writeStartElement(CAC, "AccountingCustomerParty");
+        xml.writeStartElement(CAC, "Party");
+        ublNom(xml, client.getNom());
+        ublAdresse(xml, null, null, null, PAYS_ACHETEUR);
+        ublEntiteLegale(xml, client.getNom(), client.getSiret());
+        xml.writeStartElement(CAC, "Contact");
+        cbc(xml, "ElectronicMail", client.getEmail());
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        xml.writeStartElement(CAC, "PaymentTerms");
+        cbc(xml, "Note", conditionsPaiement());
+        xml.writeEndElement();
+
+        xml.writeStartElement(CAC, "TaxTotal");
+        ublMontant(xml, "TaxAmount", ventilation.getTotalTva());
+        for (VentilationTva.Categorie categorie : ventilation.getCategories()) {
+            xml.writeStartElement(CAC, "TaxSubtotal");
+            ublMontant(xml, "TaxableAmount", categorie.base());
+            ublMontant(xml, "TaxAmount", categorie.montant());
+            ublCategorie(xml, "TaxCategory", categorie.categorie(), categorie.taux());
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+
+        xml.writeStartElement(CAC, "LegalMonetaryTotal");
+        ublMontant(xml, "LineExtensionAmount", ventilation.getTotalHt());
+        ublMontant(xml, "TaxExclusiveAmount", ventilation.getTotalHt());
+        ublMontant(xml, "TaxInclusiveAmount", ventilation.getTotalTtc());
+        ublMontant(xml, "PayableAmount", ventilation.getTotalTtc());
+        xml.writeEndElement();
+
+        List<LigneFacture> lignes = facture.getLignes();
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneFacture ligne = lignes.get(i);
+            xml.writeStartElement(CAC, "InvoiceLine");
+            cbc(xml, "ID", String.valueOf(i + 1));
+            xml.writeStartElement(CBC, "InvoicedQuantity");
+            xml.writeAttribute("unitCode", UNITE);
+            xml.writeCharacters(String.valueOf(ligne.getQuantite()));
+            xml.writeEndElement();
+            ublMontant(xml, "LineExtensionAmount", ventilation.montantHtLigne(i));
+            xml.writeStartElement(CAC, "Item");
+            cbc(xml, "Name", ligne.getDescription());
+            ublCategorie(xml, "ClassifiedTaxCategory", ligne.getTauxTva(), ventilation.taux(ligne.getTauxTva()));
+            xml.writeEndElement();
+            xml.writeStartElement(CAC, "Price");
+            ublMontant(xml, "PriceAmount", ligne.getPrixUnitaireHt());
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement();
+    }
+
+    private static void ublNom(XMLStreamWriter xml, String nom) throws XMLStreamException {
+        xml.writeStartElement(CAC, "PartyName");
+        cbc(xml, "Name", nom);
+        xml.writeEndElement();
+    }
+
+    private static void ublAdresse(XMLStreamWriter xml, String adresse, String codePostal, String ville,
+                                   String pays) throws XMLStreamException {
+        xml.writeStartElement(CAC, "PostalAddress");
+        cbcSiRenseigne(xml, "StreetName", adresse);
+        cbcSiRenseigne(xml, "CityName", ville);
+        cbcSiRenseigne(xml, "PostalZone", codePostal);
+        xml.writeStartElement(CAC, "Country");
+        cbc(xml, "IdentificationCode", pays);
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void ublEntiteLegale(XMLStreamWriter xml, String nom, String siret) throws XMLStreamException {
+        xml.writeStartElement(CAC, "PartyLegalEntity");
+        cbc(xml, "RegistrationName", nom);
+        if (siret != null && !siret.isBlank()) {
+            xml.writeStartElement(CBC, "CompanyID");
+            xml.writeAttribute("schemeID", SCHEMA_SIRET);
+            xml.writeCharacters(siret);
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+    }
+
+    private static void ublCategorie(XMLStreamWriter xml, String element, TauxTva categorie,
+                                     BigDecimal taux) throws XMLStreamException {
+        xml.writeStartElement(CAC, element);
+        cbc(xml, "ID", VentilationTva.codeCategorie(categorie));
+        cbc(xml, "Percent", taux.toPlainString());
+        ublSchemaTva(xml);
+        xml.writeEndElement();
+    }
+
+    private static void ublSchemaTva(XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement(CAC, "TaxScheme");
+        cbc(xml, "ID", "VAT");
+        xml.writeEndElement();
+    }
+
+    private static void ublMontant(XMLStreamWriter xml, String element, BigDecimal montant) throws XMLStreamException {
+        xml.writeStartElement(CBC, element);
+        xml.writeAttribute("currencyID", DEVISE);
+        xml.writeCharacters(montant.toPlainString());
+        xml.writeEndElement();
+    }
+
+    private static void cbc(XMLStreamWriter xml, String element, String valeur) throws XMLStreamException {
+        xml.writeStartElement(CBC, element);
+        xml.writeCharacters(valeur != null ? valeur : "");
+        xml.writeEndElement();
+    }
+
+    private static void cbcSiRenseigne(XMLStreamWriter xml, String element, String valeur) throws XMLStreamException {
+        if (valeur != null && !valeur.isBlank()) {
+            cbc(xml, element, valeur);
+        }
+    }
+
+    // CII (Cross Industry Invoice D16B)
+
+    private void ecrireCii(Facture facture, VentilationTva ventilation, XMLStreamWriter xml) throws XMLStreamException {
+        xml.setPrefix("rsm", RSM);
+        xml.setPrefix("ram", RAM);
+        xml.setPrefix("udt", UDT);
+        xml.writeStartElement(RSM, "CrossIndustryInvoice");
+        xml.writeNamespace("rsm", RSM);
+        xml.writeNamespace("ram", RAM);
+        xml.writeNamespace("udt", UDT);
+
+        xml.writeStartElement(RSM, "ExchangedDocumentContext");
+        xml.writeStartElement(RAM, "GuidelineSpecifiedDocumentContextParameter");
+        ram(xml, "ID", PROFIL_EN16931);
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        xml.writeStartElement(RSM, "ExchangedDocument");
+        ram(xml, "ID", String.valueOf(facture.getId()));
+        ram(xml, "TypeCode", TYPE_FACTURE);
+        ciiDate(xml, "IssueDateTime", facture.getDateFacture());
+        xml.writeEndElement();
+
+        xml.writeStartElement(RSM, "SupplyChainTradeTransaction");
+        List<LigneFacture> lignes = facture.getLignes();
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneFacture ligne = lignes.get(i);
+            xml.writeStartElement(RAM, "IncludedSupplyChainTradeLineItem");
+            xml.writeStartElement(RAM, "AssociatedDocumentLineDocument");
+            ram(xml, "LineID", String.valueOf(i + 1));
+            xml.writeEndElement();
+            xml.writeStartElement(RAM, "SpecifiedTradeProduct");
+            ram(xml, "Name", ligne.getDescription());
+            xml.writeEndElement();
+            xml.writeStartElement(RAM, "SpecifiedLineTradeAgreement");
+            xml.writeStartElement(RAM, "NetPriceProductTradePrice");
+            ram(xml, "ChargeAmount", ligne.getPrixUnitaireHt().toPlainString());
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeStartElement(RAM, "SpecifiedLineTradeDelivery");
+            xml.writeStartElement(RAM, "BilledQuantity");
+            xml.writeAttribute("unitCode", UNITE);
+            xml.writeCharacters(String.valueOf(ligne.getQuantite()));
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeStartElement(RAM, "SpecifiedLineTradeSettlement");
+            xml.writeStartElement(RAM, "ApplicableTradeTax");
+            ram(xml, "TypeCode", "VAT");
+            ram(xml, "CategoryCode", VentilationTva.codeCategorie(ligne.getTauxTva()));
+            ram(xml, "RateApplicablePercent", ventilation.taux(ligne.getTauxTva()).toPlainString());
+            xml.writeEndElement();
+            xml.writeStartElement(RAM, "SpecifiedTradeSettlementLineMonetarySummation");
+            ram(xml, "LineTotalAmount", ventilation.montantHtLigne(i).toPlainString());
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+
+        Client client = facture.getClient();
+        xml.writeStartElement(RAM, "ApplicableHeaderTradeAgreement");
+        xml.writeStartElement(RAM, "SellerTradeParty");
+        ram(xml, "Name", vendeur.nom());
+        ciiOrganisation(xml, vendeur.siret());
+        ciiAdresse(xml, vendeur.adresse(), vendeur.codePostal(), vendeur.ville(), vendeur.pays());
+        if (vendeur.numeroTva() != null && !vendeur.numeroTva().isBlank()) {
+            xml.writeStartElement(RAM, "SpecifiedTaxRegistration");
+            xml.writeStartElement(RAM, "ID");
+            xml.writeAttribute("schemeID", "VA");
+            xml.writeCharacters(vendeur.numeroTva());
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+        xml.writeStartElement(RAM, "BuyerTradeParty");
+        ram(xml, "Name", client.getNom());
+        ciiOrganisation(xml, client.getSiret());
+        ciiAdresse(xml, null, null, null, PAYS_ACHETEUR);
+        xml.writeStartElement(RAM, "URIUniversalCommunication");
+        xml.writeStartElement(RAM, "URIID");
+        xml.writeAttribute("schemeID", "EM");
+        xml.writeCharacters(client.getEmail());
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        xml.writeEmptyElement(RAM, "ApplicableHeaderTradeDelivery");
+
+        xml.writeStartElement(RAM, "ApplicableHeaderTradeSettlement");
+        ram(xml, "InvoiceCurrencyCode", DEVISE);
+        for (VentilationTva.Categorie categorie : ventilation.getCategories()) {
+            xml.writeStartElement(RAM, "ApplicableTradeTax");
+            ram(xml, "CalculatedAmount", categorie.montant().toPlainString());
+            ram(xml, "TypeCode", "VAT");
+            ram(xml, "BasisAmount", categorie.base().toPlainString());
+            ram(xml, "CategoryCode", VentilationTva.codeCategorie(categorie.categorie()));
+            ram(xml, "RateApplicablePercent", categorie.taux().toPlainString());
+            xml.writeEndElement();
+        }
+        xml.writeStartElement(RAM, "SpecifiedTradePaymentTerms");
+        ram(xml, "Description", conditionsPaiement());
+        ciiDate(xml, "DueDateDateTime", echeance(facture));
+        xml.writeEndElement();
+        xml.writeStartElement(RAM, "SpecifiedTradeSettlementHeaderMonetarySummation");
+        ram(xml, "LineTotalAmount", ventilation.getTotalHt().toPlainString());
+        ram(xml, "TaxBasisTotalAmount", ventilation.getTotalHt().toPlainString());
+        xml.writeStartElement(RAM, "TaxTotalAmount");
+        xml.writeAttribute("currencyID", DEVISE);
+        xml.writeCharacters(ventilation.getTotalTva().toPlainString());
+        xml.writeEndElement();
+        ram(xml, "GrandTotalAmount", ventilation.getTotalTtc().toPlainString());
+        ram(xml, "DuePayableAmount", ventilation.getTotalTtc().toPlainString());
+        xml.writeEndElement();
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void ciiOrganisation(XMLStreamWriter xml, String siret) throws XMLStreamException {
+        if (siret != null && !siret.isBlank()) {
+            xml.writeStartElement(RAM, "SpecifiedLegalOrganization");
+            xml.writeStartElement(RAM, "ID");
+            xml.writeAttribute("schemeID", SCHEMA_SIRET);
+            xml.writeCharacters(siret);
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+    }
+
+    private static void ciiAdresse(XMLStreamWriter xml, String adresse, String codePostal, String ville,
+                                   String pays) throws XMLStreamException {
+        xml.writeStartElement(RAM, "PostalTradeAddress");
+        ramSiRenseigne(xml, "PostcodeCode", codePostal);
+        ramSiRenseigne(xml, "LineOne", adresse);
+        ramSiRenseigne(xml, "CityName", ville);
+        ram(xml, "CountryID", pays);
+        xml.writeEndElement();
+    }
+
+    private static void ciiDate(XMLStreamWriter xml, String element, LocalDate date) throws XMLStreamException {
+        xml.writeStartElement(RAM, element);
+        xml.writeStartElement(UDT, "DateTimeString");
+        xml.writeAttribute("format", "102");
+        xml.writeCharacters(date.format(FORMAT_102));
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void ramSiRenseigne(XMLStreamWriter xml, String element, String valeur) throws XMLStreamException {
+        if (valeur != null && !valeur.isBlank()) {
+            ram(xml, element, valeur);
+        }
+    }
+
+    private static void ram(XMLStreamWriter xml, String element, String valeur) throws XMLStreamException {
+        xml.writeStartElement(RAM, element);
+        xml.writeCharacters(valeur != null ? valeur : "");
+        xml.writeEndElement();
+    }
+}
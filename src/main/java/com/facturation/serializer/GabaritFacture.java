@@ -0,0 +1,250 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.Vendeur;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gabarit HTML de facture compilé
+ * La source est analysée une seule fois : le gabarit compilé est une suite de segments (texte littéral,
+ * champ résolu vers son accesseur, section répétée pour chaque ligne ou catégorie de TVA),
+ * rendue ensuite sans réanalyse ni réflexion
+ * Syntaxe : {{champ}} (valeur échappée en HTML), {{#lignes}}...{{/lignes}}, {{#tva}}...{{/tva}}
+ * Sans état mutable : une même instance est partagée entre les threads de rendu
+ */
+public final class GabaritFacture {
+
+    private static final Pattern BALISE = Pattern.compile("\\{\\{([#/]?)(\\w+)}}");
+    private static final DateTimeFormatter FORMAT_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // Espace fine insécable, séparateur des milliers
+    private static final char SEPARATEUR_MILLIERS = '\u202F';
+
+    /**
+     * Position courante du rendu d'une facture dans les sections
+     */
+    private static final class Contexte {
+        private final Facture facture;
+        private final VentilationTva ventilation;
+        private final Vendeur vendeur;
+        private int indexLigne;
+        private LigneFacture ligne;
+        private VentilationTva.Categorie categorie;
+
+        private Contexte(Facture facture, Vendeur vendeur) {
+            this.facture = facture;
+            this.ventilation = new VentilationTva(facture);
+            this.vendeur = vendeur;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Segment {
+        void ecrire(Contexte contexte, StringBuilder sortie);
+    }
+
+    private static final Map<String, Function<Contexte, String>> CHAMPS_FACTURE = Map.ofEntries(
+            Map.entry("numero", c -> String.valueOf(c.facture.getId())),
+            Map.entry("date", c -> FORMAT_DATE.format(c.facture.getDateFacture())),
+            Map.entry("vendeurNom", c -> c.vendeur.nom()),
+            Map.entry("vendeurSiret", c -> c.vendeur.siret()),
+            Map.entry("vendeurTva", c -> c.vendeur.numeroTva()),
+            Map.entry("clientNom", c -> c.facture.getClient().getNom()),
+            Map.entry("clientSiret", c -> c.facture.getClient().getSiret()),
+            Map.entry("clientEmail", c -> c.facture.getClient().getEmail()),
+            Map.entry("totalHt", c -> montant(c.ventilation.getTotalHt())),
+            Map.entry("totalTva", c -> montant(c.ventilation.getTotalTva())),
+            Map.entry("totalTtc", c -> montant(c.ventilation.getTotalTtc())));
+
+    private static final Map<String, Function<Contexte, String>> CHAMPS_LIGNE = Map.of(
+            "description", c -> c.ligne.getDescription(),
+            "quantite", c -> String.valueOf(c.ligne.getQuantite()),
+            "prixUnitaireHt", c -> montant(c.ligne.getPrixUnitaireHt()),
+            "taux", c -> pourcentage(c.ventilation.taux(c.ligne.getTauxTva())),
+            "montantHt", c -> montant(c.ventilation.montantHtLigne(c.indexLigne)));
+
+    private static final Map<String, Function<Contexte, String>> CHAMPS_TVA = Map.of(
+            "taux", c -> pourcentage(c.categorie.taux()),
+            "base", c -> montant(c.categorie.base()),
+            "montant", c -> montant(c.categorie.montant()));
+
+    private static final Map<String, Map<String, Function<Contexte, String>>> SECTIONS = Map.of(
+            "lignes", CHAMPS_LIGNE,
+            "tva", CHAMPS_TVA);
+
+    private final Segment[] segments;
+    private final int longueurSource;
+
+    private GabaritFacture(Segment[] segments, int longueurSource) {
+        this.segments = segments;
+        this.longueurSource = longueurSource;
+    }
+
+    /**
+     * Compile un gabarit
+     * @param source le texte du gabarit
+     * @return le gabarit compilé
+     * @throws IllegalArgumentException si un champ ou une section est inconnu, ou une section mal fermée
+     */
+    public static GabaritFacture compiler(String source) {
+        Deque<Bloc> pile = new ArrayDeque<>();
+        pile.push(new Bloc(null, CHAMPS_FACTURE));
+        Matcher balise = BALISE.matcher(source);
+        int position = 0;
+        while (balise.find()) {
+            Bloc courant = pile.peek();
+            courant.litteral(source.substring(position, balise.start()));
+            position = balise.end();
+            String nom = balise.group(2);
+            switch (balise.group(1)) {
+                case "#" -> {
+                    if (pile.size() > 1 || !SECTIONS.containsKey(nom)) {
+                        throw new IllegalArgumentException("Section inconnue ou imbriquée dans le gabarit : " + nom);
+                    }
+                    pile.push(new Bloc(nom, SECTIONS.get(nom)));
+                }
+                case "/" -> {
+                    if (!nom.equals(courant.section)) {
+                        throw new IllegalArgumentException("Fermeture de section inattendue dans le gabarit : " + nom);
+                    }
+                    pile.pop();
+                    pile.peek().segments.add(courant.compilerSection());
+                }
+                default -> courant.segments.add(courant.champ(nom));
+            }
+        }
+        if (pile.size() > 1) {
+            throw new IllegalArgumentException("Section non fermée dans le gabarit : " + pile.peek().section);
+        }
+        pile.peek().litteral(source.substring(position));
+        return new GabaritFacture(pile.peek().segments.toArray(Segment[]::new), source.length());
+    }
+
+    /**
+     * Rend une facture
+     * La facture doit être chargée avec ses lignes et son client
+     * @param facture la facture
+     * @param vendeur le vendeur
+     * @return le document HTML encodé en UTF-8
+     */
+    public byte[] rendre(Facture facture, Vendeur vendeur) {
+        Contexte contexte = new Contexte(facture, vendeur);
+        StringBuilder sortie = new StringBuilder(longueurSource + 256 * facture.getLignes().size());
+        for (Segment segment : segments) {
+            segment.ecrire(contexte, sortie);
+        }
+        return sortie.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Segments en cours de compilation d'un niveau du gabarit (document ou section)
+     */
+    private static final class Bloc {
+        private final String section;
+        private final Map<String, Function<Contexte, String>> champs;
+        private final List<Segment> segments = new ArrayList<>();
+
+        private Bloc(String section, Map<String, Function<Contexte, String>> champs) {
+            this.section = section;
+            this.champs = champs;
+        }
+
+        private void litteral(String texte) {
+            if (!texte.isEmpty()) {
+                segments.add((contexte, sortie) -> sortie.append(texte));
+            }
+        }
+
+        private Segment champ(String nom) {
+            // Dans une section, les champs de la facture restent accessibles
+            Function<Contexte, String> acces = champs.getOrDefault(nom, CHAMPS_FACTURE.get(nom));
+            if (acces == null) {
+                throw new IllegalArgumentException("Champ inconnu dans le gabarit : " + nom);
+            }
+            return (contexte, sortie) -> echapper(acces.apply(contexte), sortie);
+        }
+
+        private Segment compilerSection() {
+            Segment[] corps = segments.toArray(Segment[]::new);
+            if (section.equals("lignes")) {
+                return (contexte, sortie) -> {
+                    List<LigneFacture> lignes = contexte.facture.getLignes();
+                    for (int i = 0; i < lignes.size(); i++) {
+                        contexte.indexLigne = i;
+                        contexte.ligne = lignes.get(i);
+                        ecrire(corps, contexte, sortie);
+                    }
+                    contexte.ligne = null;
+                };
+            }
+            return (contexte, sortie) -> {
+                for (VentilationTva.Categorie categorie : contexte.ventilation.getCategories()) {
+                    contexte.categorie = categorie;
+                    ecrire(corps, contexte, sortie);
+                }
+                contexte.categorie = null;
+            };
+        }
+    }
+
+    private static void ecrire(Segment[] corps, Contexte contexte, StringBuilder sortie) {
+        for (Segment segment : corps) {
+            segment.ecrire(contexte, sortie);
+        }
+    }
+
+    private static void echapper(String valeur, StringBuilder sortie) {
+        if (valeur == null) {
+            return;
+        }
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            switch (c) {
+                case '&' -> sortie.append("&amp;");
+                case '<' -> sortie.append("&lt;");
+                case '>' -> sortie.append("&gt;");
+                case '"' -> sortie.append("&quot;");
+                case '\'' -> sortie.append("&#39;");
+                default -> sortie.append(c);
+            }
+        }
+    }
+
+    /**
+     * Montant en euros au format français, par exemple 1 234,50 €
+     */
+    static String montant(BigDecimal valeur) {
+        String chiffres = valeur.setScale(2, RoundingMode.HALF_UP).abs().toPlainString();
+        int virgule = chiffres.length() - 3;
+        StringBuilder texte = new StringBuilder(chiffres.length() + 8);
+        if (valeur.signum() < 0) {
+            texte.append('-');
+        }
+        for (int i = 0; i < virgule; i++) {
+            if (i > 0 && (virgule - i) % 3 == 0) {
+                texte.append(SEPARATEUR_MILLIERS);
+            }
+            texte.append(chiffres.charAt(i));
+        }
+        return texte.append(',').append(chiffres, virgule + 1, chiffres.length()).append(" €").toString();
+    }
+
+    /**
+     * Taux au format français, par exemple 5,5 %
+     */
+    static String pourcentage(BigDecimal taux) {
+        return taux.stripTrailingZeros().toPlainString().replace('.', ',') + " %";
+    }
+}
@@ -0,0 +1,63 @@
+package com.facturation.serializer;
+
+import com.facturation.model.LigneFacture;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Sérialiseur JSON dédié aux lignes de facture
+ * Calcule le montant HT et la TVA une seule fois par ligne au lieu d'une fois par getter
+ */
+public class LigneFactureSerializer extends StdSerializer<LigneFacture> {
+
+    public LigneFactureSerializer() {
+        super(LigneFacture.class);
+    }
+
+    @Override
+    public void serialize(LigneFacture ligne, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        BigDecimal montantHt = ligne.getMontantHt();
+        ecrire(ligne, montantHt, ligne.calculerMontantTva(montantHt), gen);
+    }
+
+    /**
+     * Écrit une ligne dont les montants ont déjà été calculés
+     * L'ordre des champs est celui déclaré par @JsonPropertyOrder sur LigneFacture
+     */
+    static void ecrire(LigneFacture ligne, BigDecimal montantHt, BigDecimal montantTva, JsonGenerator gen)
+            throws IOException {
+        gen.writeStartObject(ligne);
+        ecrireLong(gen, "id", ligne.getId());
+        gen.writeStringField("description", ligne.getDescription());
+        if (ligne.getQuantite() != null) {
+            gen.writeNumberField("quantite", ligne.getQuantite());
+        } else {
+            gen.writeNullField("quantite");
+        }
+        gen.writeNumberField("prixUnitaireHt", ligne.getPrixUnitaireHt());
+        gen.writeStringField("tauxTva", ligne.getTauxTva() != null ? ligne.getTauxTva().name() : null);
+        if (ligne.getProduitId() != null) {
+            gen.writeNumberField("produitId", ligne.getProduitId());
+        }
+        gen.writeNumberField("montantHt", montantHt);
+        gen.writeNumberField("montantTva", montantTva);
+        String produitCode = ligne.getProduitCode();
+        if (produitCode != null) {
+            gen.writeStringField("produitCode", produitCode);
+        }
+        gen.writeNumberField("montantTtc", montantHt.add(montantTva));
+        gen.writeEndObject();
+    }
+
+    static void ecrireLong(JsonGenerator gen, String nom, Long valeur) throws IOException {
+        if (valeur != null) {
+            gen.writeNumberField(nom, valeur);
+        } else {
+            gen.writeNullField(nom);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.facturation.serializer;
+
+import com.facturation.model.BaremeTva;
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.TauxTva;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ventilation de la TVA d'une facture par catégorie, arrondie au centime comme l'exige la norme EN 16931 :
+ * montant HT arrondi par ligne, TVA arrondie par catégorie, totaux égaux à la somme des valeurs arrondies
+ * Calculée en un seul parcours des lignes, qui conserve les montants HT arrondis de chaque ligne
+ */
+final class VentilationTva {
+
+    /**
+     * Montants d'une catégorie de TVA
+     * @param categorie la catégorie
+     * @param taux le taux en pourcentage à la date de la facture
+     * @param base la base HT
+     * @param montant la TVA de la catégorie
+     */
+    record Categorie(TauxTva categorie, BigDecimal taux, BigDecimal base, BigDecimal montant) {
+    }
+
+    private final BigDecimal[] montantsHtLignes;
+    private final List<Categorie> categories;
+    private final BigDecimal totalHt;
+    private final BigDecimal totalTva;
+
+    VentilationTva(Facture facture) {
+        TauxTva[] valeurs = TauxTva.values();
+        BigDecimal[] bases = new BigDecimal[valeurs.length];
+        BigDecimal[] tva = new BigDecimal[valeurs.length];
+        List<LigneFacture> lignes = facture.getLignes();
+        montantsHtLignes = new BigDecimal[lignes.size()];
+
+        BigDecimal ht = BigDecimal.ZERO;
+        for (int i = 0; i < lignes.size(); i++) {
+            LigneFacture ligne = lignes.get(i);
+            BigDecimal montantHt = ligne.getMontantHt();
+            montantsHtLignes[i] = montant(montantHt);
+            ht = ht.add(montantsHtLignes[i]);
+            int c = ligne.getTauxTva().ordinal();
+            bases[c] = bases[c] == null ? montantsHtLignes[i] : bases[c].add(montantsHtLignes[i]);
+            BigDecimal montantTva = ligne.calculerMontantTva(montantHt);
+            tva[c] = tva[c] == null ? montantTva : tva[c].add(montantTva);
+        }
+
+        categories = new ArrayList<>();
+        BigDecimal totalTvaArrondi = BigDecimal.ZERO;
+        for (TauxTva categorie : valeurs) {
+            int c = categorie.ordinal();
+            if (bases[c] != null) {
+                BigDecimal montantTva = montant(tva[c]);
+                totalTvaArrondi = totalTvaArrondi.add(montantTva);
+                categories.add(new Categorie(categorie,
+                        BaremeTva.courant().tauxPourcentage(categorie, facture.getDateFacture()), bases[c], montantTva));
+            }
+        }
+        totalHt = montant(ht);
+        totalTva = montant(totalTvaArrondi);
+    }
+
+    /**
+     * @param index le rang de la ligne dans la facture
+     * @return le montant HT arrondi de la ligne
+     */
+    BigDecimal montantHtLigne(int index) {
+        return montantsHtLignes[index];
+    }
+
+    /**
+     * @param categorie une catégorie présente dans la facture
+     * @return le taux en pourcentage de la catégorie à la date de la facture
+     */
+    BigDecimal taux(TauxTva categorie) {
+        for (Categorie c : categories) {
+            if (c.categorie() == categorie) {
+                return c.taux();
+            }
+        }
+        throw new IllegalArgumentException("Catégorie de TVA absente de la facture : " + categorie);
+    }
+
+    List<Categorie> getCategories() {
+        return categories;
+    }
+
+    BigDecimal getTotalHt() {
+        return totalHt;
+    }
+
+    BigDecimal getTotalTva() {
+        return totalTva;
+    }
+
+    BigDecimal getTotalTtc() {
+        return totalHt.add(totalTva);
+    }
+
+    /**
+     * Code de catégorie de TVA (UNCL 5305) : taux zéro ou taux normal/réduit
+     */
+    static String codeCategorie(TauxTva categorie) {
+        return categorie == TauxTva.ZERO ? "Z" : "S";
+    }
+
+    static BigDecimal montant(BigDecimal valeur) {
+        return valeur.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,285 @@
+package com.facturation.service;
+
+import com.facturation.model.*;
+import com.facturation.repository.RoutageShards;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Service d'analyse des lignes de facture
+ * Sert les agrégats (chiffre d'affaires par client, par période, par taux de TVA...) depuis un instantané
+ * en colonnes primitives construit au démarrage, tenu à jour après chaque écriture validée sur les factures
+ * et reconstruit périodiquement (changements de barème TVA, écritures d'autres instances)
+ */
+@Slf4j
+@Service
+@DependsOn("baremeTvaService")
+public class AnalytiqueService {
+
+    /**
+     * Un groupe d'agrégats ; les dimensions non demandées sont absentes
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Groupe(Long clientId, LocalDate periode, TauxTva tauxTva,
+                         BigDecimal montantHt, BigDecimal montantTva, BigDecimal montantTtc, long nombreLignes) {
+    }
+
+    /**
+     * Résultat d'une requête analytique
+     */
+    public record Resultat(List<Groupe> groupes, long lignesParcourues, long dureeMicros) {
+    }
+
+    /**
+     * État de l'instantané
+     */
+    public record Statistiques(long lignes, long lignesSupprimees, long octets, LocalDateTime dateConstruction,
+                               long dureeConstructionMs) {
+    }
+
+    /**
+     * Montants d'une ligne calculés avant la validation, tant que la ligne et son produit sont chargés
+     */
+    private record MontantsLigne(TauxTva tauxTva, long htCentimes, long tvaCentimes) {
+    }
+
+    // Les valeurs non surchargées sont lues sur le produit dans le catalogue, qui reste sur le shard principal
+    private static final String SELECT_LIGNES =
+            "SELECT l.facture_id, f.client_id, f.date_facture, l.quantite, l.prix_unitaire_ht, l.taux_tva, l.produit_id " +
+            "FROM lignes_facture l JOIN factures f ON f.id = l.facture_id " +
+            "WHERE f.date_suppression IS NULL";
+
+    private static final Comparator<Groupe> ORDRE_GROUPES = Comparator
+            .comparing(Groupe::clientId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Groupe::periode, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Groupe::tauxTva, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogueProduitsService catalogueProduitsService;
+    private final RoutageShards routageShards;
+    private final ForkJoinPool pool;
+
+    private volatile ColonnesLignes colonnes = new ColonnesLignes();
+    private volatile LocalDateTime dateConstruction;
+    private volatile long dureeConstructionMs;
+    // Modifications reçues pendant une reconstruction, rejouées sur le nouvel instantané (null hors reconstruction)
+    private List<Consumer<ColonnesLignes>> enAttente;
+
+    public AnalytiqueService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             CatalogueProduitsService catalogueProduitsService,
+                             RoutageShards routageShards,
+                             @Value("${facturation.analytique.fetch-size:10000}") int tailleLecture,
+                             @Value("${facturation.analytique.parallelism:0}") int parallelisme) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(tailleLecture);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.catalogueProduitsService = catalogueProduitsService;
+        this.routageShards = routageShards;
+        this.pool = new ForkJoinPool(parallelisme > 0 ? parallelisme : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void arreter() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Construit l'instantané au démarrage puis le reconstruit périodiquement
+     * Les écritures validées pendant la lecture sont rejouées avant la publication du nouvel instantané
+     * Les shards sont lus l'un après l'autre, dans le même instantané
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${facturation.analytique.rebuild-interval-ms:3600000}",
+               initialDelayString = "${facturation.analytique.rebuild-interval-ms:3600000}")
+    public void reconstruire() {
+        synchronized (this) {
+            if (enAttente != null) {
+                return;
+            }
+            enAttente = new ArrayList<>();
+        }
+        long debut = System.nanoTime();
+        ColonnesLignes nouvelles = new ColonnesLignes();
+        boolean construit = false;
+        try {
+            BaremeTva bareme = BaremeTva.courant();
+            for (int shard = 0; shard < routageShards.getNombreShards(); shard++) {
+                routageShards.executer(shard, () -> transactionTemplate.execute(status -> {
+                    jdbcTemplate.query(SELECT_LIGNES, rs -> {
+                        LocalDate date = rs.getDate("date_facture").toLocalDate();
+                        BigDecimal prixUnitaireHt = rs.getBigDecimal("prix_unitaire_ht");
+                        String taux = rs.getString("taux_tva");
+                        if (prixUnitaireHt == null || taux == null) {
+                            Produit produit = catalogueProduitsService.getProduit(rs.getLong("produit_id"));
+                            prixUnitaireHt = prixUnitaireHt != null ? prixUnitaireHt : produit.getPrixUnitaireHt();
+                            taux = taux != null ? taux : produit.getTauxTva().name();
+                        }
+                        TauxTva tauxTva = TauxTva.valueOf(taux);
+                        long ht = montantHtCentimes(prixUnitaireHt, rs.getInt("quantite"));
+                        nouvelles.ajouter(rs.getLong("facture_id"), Math.toIntExact(rs.getLong("client_id")),
+                                (int) date.toEpochDay(), tauxTva, ht, montantTvaCentimes(ht, bareme.tauxDecimal(tauxTva, date)));
+                    });
+                    return null;
+                }));
+            }
+            construit = true;
+        } finally {
+            synchronized (this) {
+                if (construit) {
+                    enAttente.forEach(modification -> modification.accept(nouvelles));
+                    colonnes = nouvelles;
+                }
+                enAttente = null;
+            }
+        }
+        dureeConstructionMs = Duration.ofNanos(System.nanoTime() - debut).toMillis();
+        dateConstruction = LocalDateTime.now();
+        log.info("Instantané analytique construit : {} lignes, {} Mo en {} ms",
+                nouvelles.getNombreLignes(), nouvelles.getOctets() >> 20, dureeConstructionMs);
+    }
+
+    /**
+     * Reporte dans l'instantané l'état courant d'une facture, après validation de la transaction
+     * Les montants sont calculés immédiatement, tant que les lignes et leur produit sont chargés
+     * @param facture la facture créée ou modifiée
+     */
+    public void factureModifiee(Facture facture) {
+        long factureId = facture.getId();
+        int clientId = Math.toIntExact(facture.getClient().getId());
+        int jour = (int) facture.getDateFacture().toEpochDay();
+        List<MontantsLigne> lignes = new ArrayList<>(facture.getLignes().size());
+        for (LigneFacture ligne : facture.getLignes()) {
+            lignes.add(montants(facture, ligne));
+        }
+        apresValidation(c -> {
+            c.supprimerFacture(factureId);
+            for (MontantsLigne ligne : lignes) {
+                c.ajouter(factureId, clientId, jour, ligne.tauxTva(), ligne.htCentimes(), ligne.tvaCentimes());
+            }
+        });
+    }
+
+    /**
+     * Ajoute à l'instantané la ligne ajoutée à une facture, après validation de la transaction
+     * Les autres lignes de la facture sont inchangées : elles restent en place au lieu d'être retirées puis
+     * ajoutées de nouveau, ce qui laisserait autant de lignes mortes dans l'instantané à chaque ajout
+     * @param facture la facture modifiée
+     * @param ligne la ligne ajoutée
+     */
+    public void ligneAjoutee(Facture facture, LigneFacture ligne) {
+        long factureId = facture.getId();
+        int clientId = Math.toIntExact(facture.getClient().getId());
+        int jour = (int) facture.getDateFacture().toEpochDay();
+        MontantsLigne montants = montants(facture, ligne);
+        apresValidation(c -> c.ajouter(factureId, clientId, jour, montants.tauxTva(), montants.htCentimes(),
+                montants.tvaCentimes()));
+    }
+
+    /**
+     * Retire une facture de l'instantané après validation de la transaction
+     * @param factureId l'ID de la facture supprimée
+     */
+    public void factureSupprimee(Long factureId) {
+        apresValidation(c -> c.supprimerFacture(factureId));
+    }
+
+    /**
+     * Retire toutes les lignes d'un client de l'instantané après validation de la transaction
+     * @param clientId l'ID du client supprimé
+     */
+    public void clientSupprime(Long clientId) {
+        int id = Math.toIntExact(clientId);
+        apresValidation(c -> c.supprimerClient(id));
+    }
+
+    /**
+     * Calcule les montants par groupe sur l'instantané
+     * @param dimensions les dimensions de regroupement (au plus une temporelle)
+     * @param du la première date incluse (null pour aucune borne)
+     * @param au la dernière date incluse (null pour aucune borne)
+     * @param clientId le client à retenir (null pour tous)
+     * @param tauxTva la catégorie de TVA à retenir (null pour toutes)
+     * @return les groupes triés et la durée du calcul
+     */
+    public Resultat agreger(Set<DimensionAnalytique> dimensions, LocalDate du, LocalDate au,
+                            Long clientId, TauxTva tauxTva) {
+        long debut = System.nanoTime();
+        ColonnesLignes.Agregats agregats = colonnes.agreger(dimensions, du, au,
+                clientId != null ? Math.toIntExact(clientId) : null, tauxTva, pool);
+        List<Groupe> groupes = new ArrayList<>(agregats.getNombreGroupes());
+        agregats.parcourir((client, periode, taux, ht, tva, lignes) -> groupes.add(new Groupe(client, periode, taux,
+                BigDecimal.valueOf(ht, 2), BigDecimal.valueOf(tva, 2), BigDecimal.valueOf(ht + tva, 2), lignes)));
+        groupes.sort(ORDRE_GROUPES);
+        return new Resultat(groupes, agregats.getLignesParcourues(), (System.nanoTime() - debut) / 1000);
+    }
+
+    /**
+     * @return l'état de l'instantané courant
+     */
+    public Statistiques getStatistiques() {
+        ColonnesLignes c = colonnes;
+        return new Statistiques(c.getNombreLignes(), c.getLignesSupprimees(), c.getOctets(),
+                dateConstruction, dureeConstructionMs);
+    }
+
+    private void apresValidation(Consumer<ColonnesLignes> modification) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appliquer(modification);
+                }
+            });
+        } else {
+            appliquer(modification);
+        }
+    }
+
+    // Un seul écrivain : les modifications sont sérialisées, les lectures ne sont jamais bloquées
+    private synchronized void appliquer(Consumer<ColonnesLignes> modification) {
+        modification.accept(colonnes);
+        if (enAttente != null) {
+            enAttente.add(modification);
+        }
+    }
+
+    private static MontantsLigne montants(Facture facture, LigneFacture ligne) {
+        long ht = montantHtCentimes(ligne.getPrixUnitaireHt(), ligne.getQuantite());
+        long tva = montantTvaCentimes(ht, BaremeTva.courant().tauxDecimal(ligne.getTauxTva(), facture.getDateFacture()));
+        return new MontantsLigne(ligne.getTauxTva(), ht, tva);
+    }
+
+    private static long montantHtCentimes(BigDecimal prixUnitaireHt, int quantite) {
+        return prixUnitaireHt.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact() * quantite;
+    }
+
+    private static long montantTvaCentimes(long htCentimes, BigDecimal tauxDecimal) {
+        return BigDecimal.valueOf(htCentimes).multiply(tauxDecimal).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
@@ -0,0 +1,72 @@
+package com.facturation.service;
+
+import com.facturation.repository.RoutageShards;
+import jakarta.persistence.EntityManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archive ZIP écrite en flux par lots d'ID croissants, pour le rendu et l'export des factures d'une période
+ * Les documents de chaque lot sont rendus en parallèle puis écrits dans l'ordre, et le contexte de persistance
+ * est vidé entre deux lots (mémoire bornée par la taille d'un lot, quel que soit le nombre de factures)
+ */
+final class ArchiveParLots {
+
+    /**
+     * Document d'un lot et son contenu en cours de rendu
+     * Un contenu nul (facture supprimée entre la lecture de la page et son chargement) n'est pas écrit
+     */
+    record Entree(String nom, Future<byte[]> contenu) {
+    }
+
+    private ArchiveParLots() {
+    }
+
+    /**
+     * Écrit l'archive, page par page, jusqu'à une page incomplète
+     * @param sortie le flux de sortie de l'archive
+     * @param tailleLot le nombre d'éléments d'une page
+     * @param entityManager le contexte de persistance de la requête, vidé après chaque lot
+     * @param page la page des éléments d'ID supérieur au curseur
+     * @param id l'ID d'un élément, curseur de la page suivante
+     * @param preparer les documents d'une page, dans l'ordre d'écriture, dont le rendu est soumis au pool
+     * @return le nombre de documents écrits
+     */
+    static <T> long ecrire(OutputStream sortie, int tailleLot, EntityManager entityManager,
+                           Function<Long, List<T>> page, Function<T, Long> id, Function<List<T>, List<Entree>> preparer) {
+        long nombre = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(sortie)) {
+            Long apresId = 0L;
+            List<T> elements;
+            do {
+                elements = page.apply(apresId);
+                if (elements.isEmpty()) {
+                    break;
+                }
+                for (Entree entree : preparer.apply(elements)) {
+                    byte[] contenu = entree.contenu() != null ? RoutageShards.attendre(entree.contenu()) : null;
+                    if (contenu == null) {
+                        continue;
+                    }
+                    zip.putNextEntry(new ZipEntry(entree.nom()));
+                    zip.write(contenu);
+                    zip.closeEntry();
+                    nombre++;
+                }
+                apresId = id.apply(elements.get(elements.size() - 1));
+                // Les factures du lot ne sont plus référencées : libère le contexte de persistance de la requête
+                entityManager.clear();
+            } while (elements.size() == tailleLot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return nombre;
+    }
+}
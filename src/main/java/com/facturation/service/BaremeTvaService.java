@@ -0,0 +1,111 @@
+package com.facturation.service;
+
+import com.facturation.exception.ConflitException;
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.BaremeTva;
+import com.facturation.model.TauxTva;
+import com.facturation.model.TauxTvaPeriode;
+import com.facturation.repository.TauxTvaPeriodeRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Service pour la gestion des taux de TVA datés
+ * Charge les périodes en base dans le barème immuable utilisé par le calcul des lignes
+ * et le remplace atomiquement après chaque modification
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class BaremeTvaService {
+
+    private final TauxTvaPeriodeRepository tauxTvaPeriodeRepository;
+    private final RenduFactureService renduFactureService;
+
+    /**
+     * Reconstruit le barème depuis la base au démarrage puis périodiquement
+     * (prise en compte des modifications faites par d'autres instances)
+     * Les documents rendus en cache impriment les taux : ils sont invalidés si le barème a changé
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${facturation.tva.refresh-interval-ms:60000}",
+               initialDelayString = "${facturation.tva.refresh-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public void rafraichir() {
+        BaremeTva precedent = BaremeTva.courant();
+        BaremeTva bareme = BaremeTva.construire(tauxTvaPeriodeRepository.findAll());
+        BaremeTva.publier(bareme);
+        if (!bareme.equals(precedent)) {
+            renduFactureService.invalider();
+        }
+    }
+
+    /**
+     * Récupère toutes les périodes de TVA
+     * @return la liste des périodes triées par catégorie et date d'effet
+     */
+    @Transactional(readOnly = true)
+    public List<TauxTvaPeriode> getAllPeriodes() {
+        return tauxTvaPeriodeRepository.findAllByOrderByCategorieAscDateEffetAsc();
+    }
+
+    /**
+     * Résout le taux en pourcentage d'une catégorie à une date
+     * @param categorie la catégorie de TVA
+     * @param date la date de facture
+     * @return le taux applicable
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getTaux(TauxTva categorie, LocalDate date) {
+        return BaremeTva.courant().tauxPourcentage(categorie, date);
+    }
+
+    /**
+     * Ajoute une période de TVA, y compris rétroactive
+     * @param periode la catégorie, le taux et la date d'effet
+     * @return la période créée
+     * @throws ConflitException si une période existe déjà pour cette catégorie et cette date
+     */
+    public TauxTvaPeriode createPeriode(TauxTvaPeriode periode) {
+        if (tauxTvaPeriodeRepository.existsByCategorieAndDateEffet(periode.getCategorie(), periode.getDateEffet())) {
+            throw ConflitException.PERIODE_TVA;
+        }
+        periode.setId(null);
+        TauxTvaPeriode createdPeriode = tauxTvaPeriodeRepository.save(periode);
+        reconstruireApresCommit();
+        return createdPeriode;
+    }
+
+    /**
+     * Supprime une période de TVA
+     * @param id l'ID de la période à supprimer
+     * @throws RessourceNonTrouveeException si la période n'existe pas
+     */
+    public void deletePeriode(Long id) {
+        if (!tauxTvaPeriodeRepository.existsById(id)) {
+            throw RessourceNonTrouveeException.periodeTva(id);
+        }
+        tauxTvaPeriodeRepository.deleteById(id);
+        reconstruireApresCommit();
+    }
+
+    // Invalidation explicite : rafraichir() appelé pendant afterCommit ne peut plus enregistrer la sienne
+    private void reconstruireApresCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rafraichir();
+            }
+        });
+        renduFactureService.invalider();
+    }
+}
@@ -0,0 +1,177 @@
+package com.facturation.service;
+
+import com.facturation.exception.ConflitException;
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.Produit;
+import com.facturation.model.TauxTva;
+import com.facturation.repository.ProduitRepository;
+import com.facturation.repository.RoutageShards;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service pour le catalogue produits
+ * Sert le catalogue depuis un instantané en mémoire immuable, remplacé en bloc (copie sur écriture)
+ * à chaque création ou rafraîchissement : les lectures ne prennent aucun verrou
+ */
+@Slf4j
+@Service
+@Transactional
+public class CatalogueProduitsService {
+
+    private static final String SELECT_PRODUITS =
+            "SELECT id, code, description, prix_unitaire_ht, taux_tva, actif FROM produits";
+
+    private static final RowMapper<Produit> PRODUIT_MAPPER = (rs, rowNum) -> new Produit(
+            rs.getLong("id"),
+            rs.getString("code"),
+            rs.getString("description"),
+            rs.getBigDecimal("prix_unitaire_ht"),
+            TauxTva.valueOf(rs.getString("taux_tva")),
+            rs.getBoolean("actif"));
+
+    /**
+     * Instantané immuable du catalogue, indexé par ID et par code
+     */
+    private record Instantane(Map<Long, Produit> parId, Map<String, Produit> parCode) {
+
+        static Instantane de(Collection<Produit> produits) {
+            Map<Long, Produit> parId = new HashMap<>(produits.size() * 2);
+            Map<String, Produit> parCode = new HashMap<>(produits.size() * 2);
+            for (Produit produit : produits) {
+                parId.put(produit.getId(), produit);
+                parCode.put(produit.getCode(), produit);
+            }
+            return new Instantane(Map.copyOf(parId), Map.copyOf(parCode));
+        }
+    }
+
+    private final ProduitRepository produitRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RoutageShards routageShards;
+    private volatile Instantane instantane = Instantane.de(List.of());
+
+    public CatalogueProduitsService(ProduitRepository produitRepository, JdbcTemplate jdbcTemplate,
+                                    RoutageShards routageShards) {
+        this.produitRepository = produitRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.routageShards = routageShards;
+    }
+
+    /**
+     * Charge le catalogue au démarrage puis le rafraîchit périodiquement
+     * (prise en compte des produits créés par d'autres instances)
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${facturation.catalogue.refresh-interval-ms:60000}",
+               initialDelayString = "${facturation.catalogue.refresh-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public void rafraichir() {
+        instantane = Instantane.de(jdbcTemplate.query(SELECT_PRODUITS, PRODUIT_MAPPER));
+        log.debug("Catalogue produits chargé: {} produits", instantane.parId().size());
+    }
+
+    /**
+     * Récupère tous les produits du catalogue
+     * @return la liste des produits
+     */
+    @Transactional(readOnly = true)
+    public List<Produit> getAllProduits() {
+        return List.copyOf(instantane.parId().values());
+    }
+
+    /**
+     * Récupère un produit par son code
+     * @param code le code du produit
+     * @return le produit trouvé ou empty si non trouvé
+     */
+    @Transactional(readOnly = true)
+    public Optional<Produit> getProduitByCode(String code) {
+        return Optional.ofNullable(instantane.parCode().get(code));
+    }
+
+    /**
+     * Récupère un produit par son ID, en le chargeant depuis la base s'il est absent de l'instantané
+     * Utilisé au chargement des lignes de facture : n'utilise pas la session JPA, et lit le catalogue
+     * sur le shard principal quel que soit le shard de la facture
+     * @param id l'ID du produit
+     * @return le produit, ou null s'il n'existe pas
+     */
+    public Produit getProduit(Long id) {
+        Produit produit = instantane.parId().get(id);
+        if (produit == null) {
+            produit = routageShards.executer(0, () -> jdbcTemplate.query(SELECT_PRODUITS + " WHERE id = ?", PRODUIT_MAPPER, id))
+                    .stream().findFirst().orElse(null);
+            if (produit != null) {
+                publier(produit);
+            }
+        }
+        return produit;
+    }
+
+    /**
+     * Crée un nouveau produit dans le catalogue
+     * @param produit les données du produit à créer
+     * @return le produit créé
+     * @throws ConflitException si le code existe déjà
+     */
+    public Produit createProduit(Produit produit) {
+        if (produitRepository.existsByCode(produit.getCode())) {
+            throw ConflitException.CODE_PRODUIT;
+        }
+        produit.setId(null);
+        produit.setActif(true);
+        Produit createdProduit = produitRepository.save(produit);
+        publierApresCommit(createdProduit);
+        return createdProduit;
+    }
+
+    /**
+     * Active ou retire un produit du catalogue
+     * Un produit retiré reste résolu pour les lignes existantes mais ne peut plus être facturé
+     * @param code le code du produit
+     * @param actif le nouvel état du produit
+     * @return le produit mis à jour
+     * @throws RessourceNonTrouveeException si le produit n'existe pas
+     */
+    public Produit setActif(String code, boolean actif) {
+        Produit produit = getProduitByCode(code)
+                .flatMap(p -> produitRepository.findById(p.getId()))
+                .orElseThrow(() -> RessourceNonTrouveeException.produit(code));
+        produit.setActif(actif);
+        Produit updatedProduit = produitRepository.save(produit);
+        publierApresCommit(updatedProduit);
+        return updatedProduit;
+    }
+
+    private void publierApresCommit(Produit produit) {
+        // Copie détachée : les instances de l'instantané sont partagées entre threads et ne doivent pas être modifiées
+        Produit copie = new Produit(produit.getId(), produit.getCode(), produit.getDescription(),
+                produit.getPrixUnitaireHt(), produit.getTauxTva(), produit.isActif());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publier(copie);
+            }
+        });
+    }
+
+    private synchronized void publier(Produit produit) {
+        Map<Long, Produit> parId = new HashMap<>(instantane.parId());
+        parId.put(produit.getId(), produit);
+        instantane = Instantane.de(parId.values());
+    }
+}
@@ -0,0 +1,90 @@
+package com.facturation.service;
+
+import com.facturation.model.Changement;
+import com.facturation.model.Client;
+import com.facturation.model.Facture;
+import com.facturation.model.TypeChangement;
+import com.facturation.repository.ChangementRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Enregistrement des changements de clients et de factures dans la table d'outbox
+ * Appelé dans la transaction de la modification : le changement est validé ou annulé avec elle,
+ * puis copié dans le journal des changements par RelaisChangementsService
+ */
+@Service
+@RequiredArgsConstructor
+public class ChangementsService {
+
+    /**
+     * Client tel que publié dans le flux (sans ses factures, publiées séparément)
+     */
+    private record ClientPublie(Long id, String nom, String email, String siret, LocalDateTime dateCreation) {
+    }
+
+    private final ChangementRepository changementRepository;
+    private final RelaisChangementsService relaisChangementsService;
+    private final ObjectMapper objectMapper;
+
+    public void clientCree(Client client) {
+        enregistrer(TypeChangement.CLIENT_CREE, client.getId(), null, publie(client));
+    }
+
+    public void clientModifie(Client client) {
+        enregistrer(TypeChangement.CLIENT_MODIFIE, client.getId(), null, publie(client));
+    }
+
+    /**
+     * Les factures du client, supprimées avec lui, ne font pas l'objet de changements distincts
+     */
+    public void clientSupprime(Long clientId) {
+        enregistrer(TypeChangement.CLIENT_SUPPRIME, clientId, null, null);
+    }
+
+    public void factureCreee(Facture facture) {
+        enregistrer(TypeChangement.FACTURE_CREEE, facture.getClient().getId(), facture.getId(), facture);
+    }
+
+    public void ligneAjoutee(Facture facture) {
+        enregistrer(TypeChangement.LIGNE_AJOUTEE, facture.getClient().getId(), facture.getId(), facture);
+    }
+
+    public void factureModifiee(Facture facture) {
+        enregistrer(TypeChangement.FACTURE_MODIFIEE, facture.getClient().getId(), facture.getId(), facture);
+    }
+
+    public void factureSupprimee(Long factureId) {
+        enregistrer(TypeChangement.FACTURE_SUPPRIMEE, null, factureId, null);
+    }
+
+    private void enregistrer(TypeChangement type, Long clientId, Long factureId, Object donnees) {
+        String json;
+        try {
+            json = donnees != null ? objectMapper.writeValueAsString(donnees) : null;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Changement non sérialisable : " + type, e);
+        }
+        changementRepository.save(new Changement(null, type, clientId, factureId, LocalDateTime.now(), json));
+        // Relais immédiat après validation plutôt qu'au prochain passage périodique
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relaisChangementsService.signaler();
+                }
+            });
+        }
+    }
+
+    private static ClientPublie publie(Client client) {
+        return new ClientPublie(client.getId(), client.getNom(), client.getEmail(), client.getSiret(),
+                client.getDateCreation());
+    }
+}
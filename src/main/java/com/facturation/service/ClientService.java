@@ -1,17 +1,26 @@
 package com.facturation.service;
 
+import com.facturation.exception.ConflitException;
+import com.facturation.exception.RessourceNonTrouveeException;
 import com.facturation.model.Client;
 import com.facturation.repository.ClientRepository;
+import com.facturation.repository.FactureRepository;
+import com.facturation.repository.RoutageShards;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Service pour la gestion des clients
  * Contient la logique métier pour les opérations sur les clients
+ * Un client est lu et modifié sur son shard (sélectionné par la requête) ; la liste des clients
+ * et l'unicité de l'email et du SIRET sont vérifiées sur tous les shards
  */
 @Service
 @Transactional
@@ -19,13 +28,19 @@ import java.util.Optional;
 public class ClientService {
 
     private final ClientRepository clientRepository;
+    private final FactureRepository factureRepository;
+    private final AnalytiqueService analytiqueService;
+    private final RenduFactureService renduFactureService;
+    private final ChangementsService changementsService;
+    private final RoutageShards routageShards;
 
     /**
-     * Récupère tous les clients
-     * @return la liste de tous les clients
+     * Récupère tous les clients, avec leurs factures
+     * @return la liste de tous les clients, par ID croissant
      */
     public List<Client> getAllClients() {
-        return clientRepository.findAll();
+        return routageShards.fusionner(shard -> clientRepository.findAllWithFactures(),
+                Comparator.comparing(Client::getId), Integer.MAX_VALUE);
     }
 
     /**
@@ -41,17 +56,17 @@ public class ClientService {
      * Crée un nouveau client
      * @param client les données du client à créer
      * @return le client créé
-     * @throws IllegalArgumentException si l'email ou le SIRET existe déjà
+     * @throws ConflitException si l'email ou le SIRET existe déjà
      */
     public Client createClient(Client client) {
         // Vérifier si l'email existe déjà
-        if (clientRepository.existsByEmail(client.getEmail())) {
-            throw new IllegalArgumentException("Un client avec cet email existe déjà");
+        if (routageShards.surChaqueShard(shard -> clientRepository.existsByEmail(client.getEmail())).contains(true)) {
+            throw ConflitException.EMAIL_CLIENT;
         }
 
         // Vérifier si le SIRET existe déjà
-        if (clientRepository.existsBySiret(client.getSiret())) {
-            throw new IllegalArgumentException("Un client avec ce SIRET existe déjà");
+        if (routageShards.surChaqueShard(shard -> clientRepository.existsBySiret(client.getSiret())).contains(true)) {
+            throw ConflitException.SIRET_CLIENT;
         }
 
         // S'assurer que la date de création est définie
@@ -60,7 +75,9 @@ public class ClientService {
         }
 
         // Sauvegarder le client
-        return clientRepository.save(client);
+        Client createdClient = clientRepository.save(client);
+        changementsService.clientCree(createdClient);
+        return createdClient;
     }
 
     /**
@@ -68,23 +85,22 @@ public class ClientService {
      * @param id l'ID du client à mettre à jour
      * @param client les nouvelles données du client
      * @return le client mis à jour
-     * @throws IllegalArgumentException si le client n'existe pas ou si l'email/SIRET existe déjà
+     * @throws RessourceNonTrouveeException si le client n'existe pas
+     * @throws ConflitException si l'email ou le SIRET existe déjà
      */
     public Client updateClient(Long id, Client client) {
         // Récupérer le client existant
         Client existingClient = clientRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Client non trouvé avec l'ID: " + id));
+                .orElseThrow(() -> RessourceNonTrouveeException.client(id));
 
         // Vérifier si l'email existe déjà (sauf pour ce client)
-        Optional<Client> clientWithEmail = clientRepository.findByEmail(client.getEmail());
-        if (clientWithEmail.isPresent() && !clientWithEmail.get().getId().equals(id)) {
-            throw new IllegalArgumentException("Un client avec cet email existe déjà");
+        if (utiliseParUnAutreClient(clientRepository::findByEmail, client.getEmail(), id)) {
+            throw ConflitException.EMAIL_CLIENT;
         }
 
         // Vérifier si le SIRET existe déjà (sauf pour ce client)
-        Optional<Client> clientWithSiret = clientRepository.findBySiret(client.getSiret());
-        if (clientWithSiret.isPresent() && !clientWithSiret.get().getId().equals(id)) {
-            throw new IllegalArgumentException("Un client avec ce SIRET existe déjà");
+        if (utiliseParUnAutreClient(clientRepository::findBySiret, client.getSiret(), id)) {
+            throw ConflitException.SIRET_CLIENT;
         }
 
         // Mettre à jour les informations du client
@@ -93,19 +109,34 @@ public class ClientService {
         existingClient.setSiret(client.getSiret());
 
         // Sauvegarder les modifications
-        return clientRepository.save(existingClient);
+        Client updatedClient = clientRepository.save(existingClient);
+        renduFactureService.clientModifie(id);
+        changementsService.clientModifie(updatedClient);
+        return updatedClient;
     }
 
     /**
-     * Supprime un client
+     * Supprime un client et toutes ses factures
+     * La suppression est logique : deux UPDATE ensemblistes masquent immédiatement les lignes,
+     * sans charger les factures en mémoire ; PurgeSuppressionsService les efface ensuite par lots
      * @param id l'ID du client à supprimer
-     * @throws IllegalArgumentException si le client n'existe pas
+     * @throws RessourceNonTrouveeException si le client n'existe pas
      */
     public void deleteClient(Long id) {
-        // Vérifier que le client existe
-        if (!clientRepository.existsById(id)) {
-            throw new IllegalArgumentException("Client non trouvé avec l'ID: " + id);
+        LocalDateTime maintenant = LocalDateTime.now();
+        if (clientRepository.marquerSupprime(id, maintenant) == 0) {
+            throw RessourceNonTrouveeException.client(id);
         }
-        clientRepository.deleteById(id);
+        factureRepository.marquerSupprimeesParClient(id, maintenant);
+        analytiqueService.clientSupprime(id);
+        changementsService.clientSupprime(id);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Vérifie sur tous les shards qu'une valeur unique (email ou SIRET) n'est pas utilisée par un autre client
+     */
+    private boolean utiliseParUnAutreClient(Function<String, Optional<Client>> recherche, String valeur, Long id) {
+        return routageShards.surChaqueShard(shard -> recherche.apply(valeur)).stream()
+                .anyMatch(existant -> existant.isPresent() && !existant.get().getId().equals(id));
+    }
+}
@@ -0,0 +1,120 @@
+package com.facturation.service;
+
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.Facture;
+import com.facturation.model.FormatFactureXml;
+import com.facturation.model.Vendeur;
+import com.facturation.repository.FactureRepository;
+import com.facturation.repository.RoutageShards;
+import com.facturation.serializer.FactureXmlWriter;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Export des factures au format XML de facture électronique (UBL ou CII)
+ * L'export d'une période est écrit en flux dans une archive ZIP, par lots d'ID croissants rendus en parallèle
+ * (voir ArchiveParLots)
+ */
+@Slf4j
+@Service
+public class ExportFactureService {
+
+    private final FactureRepository factureRepository;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+    private final FactureXmlWriter writer;
+    private final ExecutorService pool;
+    private final int tailleLot;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExportFactureService(FactureRepository factureRepository,
+                                RoutageShards routageShards,
+                                PlatformTransactionManager transactionManager,
+                                Vendeur vendeur,
+                                @Value("${facturation.export.pool-size:4}") int taillePool,
+                                @Value("${facturation.export.lot-size:200}") int tailleLot) {
+        this.factureRepository = factureRepository;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.writer = new FactureXmlWriter(vendeur);
+        this.pool = Executors.newFixedThreadPool(taillePool);
+        this.tailleLot = tailleLot;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Exporte une facture
+     * @param id l'ID de la facture
+     * @param format le format XML
+     * @return le document XML encodé en UTF-8
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
+     */
+    public byte[] exporterFacture(Long id, FormatFactureXml format) {
+        Facture facture = transactionTemplate.execute(status -> factureRepository.findByIdWithLignesAndClient(id));
+        if (facture == null) {
+            throw RessourceNonTrouveeException.facture(id);
+        }
+        return rendre(facture, format);
+    }
+
+    /**
+     * Exporte les factures d'une période dans une archive ZIP écrite en flux (un document par facture)
+     * @param dateDebut la date de début
+     * @param dateFin la date de fin
+     * @param format le format XML
+     * @param sortie le flux de sortie de l'archive
+     * @return le nombre de factures exportées
+     */
+    public long exporterPeriode(LocalDate dateDebut, LocalDate dateFin, FormatFactureXml format, OutputStream sortie) {
+        long debut = System.nanoTime();
+        long nombre = ArchiveParLots.ecrire(sortie, tailleLot, entityManager,
+                // Page d'ID fusionnée entre les shards, puis chargement de chaque facture sur son shard
+                apresId -> routageShards.fusionner(shard -> factureRepository.findIdsByDateFactureBetween(
+                        dateDebut, dateFin, apresId, PageRequest.ofSize(tailleLot)), Comparator.naturalOrder(), tailleLot),
+                Function.identity(),
+                ids -> routageShards.chargerParIds(ids,
+                                idsShard -> transactionTemplate.execute(status -> factureRepository.findAllWithLignesAndClientByIdIn(idsShard)),
+                                Comparator.comparing(Facture::getId)).stream()
+                        .map(facture -> new ArchiveParLots.Entree(nomDocument(facture, format),
+                                pool.submit(() -> rendre(facture, format))))
+                        .toList());
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+        log.info("Export {} de {} factures du {} au {} en {} ms", format, nombre, dateDebut, dateFin, dureeMs);
+        return nombre;
+    }
+
+    /**
+     * Nom du document d'une facture dans l'archive
+     */
+    private static String nomDocument(Facture facture, FormatFactureXml format) {
+        return "facture-" + facture.getId() + "-" + format.getSuffixe() + ".xml";
+    }
+
+    private byte[] rendre(Facture facture, FormatFactureXml format) {
+        ByteArrayOutputStream document = new ByteArrayOutputStream(4096);
+        writer.ecrire(facture, format, document);
+        return document.toByteArray();
+    }
+}
@@ -1,19 +1,29 @@
 package com.facturation.service;
 
+import com.facturation.exception.DonneesInvalidesException;
+import com.facturation.exception.RessourceNonTrouveeException;
 import com.facturation.model.*;
 import com.facturation.repository.ClientRepository;
 import com.facturation.repository.FactureRepository;
+import com.facturation.repository.RoutageShards;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Service pour la gestion des factures
  * Contient la logique métier pour les opérations sur les factures
+ * Une facture est lue et modifiée sur le shard de son client (sélectionné par la requête)
  */
 @Service
 @Transactional
@@ -22,13 +32,21 @@ public class FactureService {
 
     private final FactureRepository factureRepository;
     private final ClientRepository clientRepository;
+    private final CatalogueProduitsService catalogueProduitsService;
+    private final AnalytiqueService analytiqueService;
+    private final ChangementsService changementsService;
+    private final RoutageShards routageShards;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
      * Récupère toutes les factures
-     * @return la liste de toutes les factures
+     * @return la liste de toutes les factures, par ID croissant
      */
     public List<Facture> getAllFactures() {
-        return factureRepository.findAll();
+        return routageShards.fusionner(shard -> factureRepository.findAll(Sort.by("id")),
+                Comparator.comparing(Facture::getId), Integer.MAX_VALUE);
     }
 
     /**
@@ -55,19 +73,21 @@ public class FactureService {
      * @param clientId l'ID du client
      * @param dateFacture la date de la facture
      * @return la facture créée
-     * @throws IllegalArgumentException si le client n'existe pas
+     * @throws DonneesInvalidesException si le client n'existe pas
      */
     public Facture createFacture(Long clientId, LocalDate dateFacture) {
         // Vérifier que le client existe
         Client client = clientRepository.findById(clientId)
-                .orElseThrow(() -> new IllegalArgumentException("Client non trouvé avec l'ID: " + clientId));
+                .orElseThrow(() -> DonneesInvalidesException.clientInconnu(clientId));
 
         // Créer la nouvelle facture
         Facture facture = new Facture(client);
         facture.setDateFacture(dateFacture);
 
         // Sauvegarder la facture
-        return factureRepository.save(facture);
+        Facture creee = factureRepository.save(facture);
+        changementsService.factureCreee(creee);
+        return creee;
     }
 
     /**
@@ -78,22 +98,73 @@ public class FactureService {
      * @param prixUnitaireHt le prix unitaire HT
      * @param tauxTva le taux de TVA
      * @return la facture mise à jour
-     * @throws IllegalArgumentException si la facture n'existe pas
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
      */
     public Facture ajouterLigneFacture(Long factureId, String description, Integer quantite, 
                                      java.math.BigDecimal prixUnitaireHt, TauxTva tauxTva) {
         // Récupérer la facture existante
         Facture facture = factureRepository.findByIdWithLignesAndClient(factureId);
         if (facture == null) {
-            throw new IllegalArgumentException("Facture non trouvée avec l'ID: " + factureId);
+            throw RessourceNonTrouveeException.facture(factureId);
         }
 
         // Créer et ajouter la nouvelle ligne
         LigneFacture ligne = new LigneFacture(description, quantite, prixUnitaireHt, tauxTva);
         facture.ajouterLigne(ligne);
+        incrementerVersion(facture);
 
-        // Sauvegarder les modifications
-        return factureRepository.save(facture);
+        // Sauvegarder les modifications ; seule la nouvelle ligne est reportée dans l'instantané analytique
+        Facture modifiee = factureRepository.save(facture);
+        analytiqueService.ligneAjoutee(modifiee, ligne);
+        changementsService.ligneAjoutee(modifiee);
+        return modifiee;
+    }
+
+    /**
+     * Ajoute à une facture existante une ligne référençant un produit du catalogue
+     * Les valeurs du produit sont déjà validées : seules la référence et les valeurs surchargées sont stockées
+     * @param factureId l'ID de la facture
+     * @param codeProduit le code du produit
+     * @param quantite la quantité
+     * @param description la description surchargée (null pour celle du produit)
+     * @param prixUnitaireHt le prix unitaire HT surchargé (null pour celui du produit)
+     * @param tauxTva le taux de TVA surchargé (null pour celui du produit)
+     * @return la facture mise à jour
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
+     * @throws DonneesInvalidesException si le produit n'existe pas ou est retiré
+     */
+    public Facture ajouterLigneProduit(Long factureId, String codeProduit, Integer quantite, String description,
+                                       java.math.BigDecimal prixUnitaireHt, TauxTva tauxTva) {
+        // Résoudre le produit depuis le catalogue en mémoire
+        Produit produit = catalogueProduitsService.getProduitByCode(codeProduit)
+                .filter(Produit::isActif)
+                .orElseThrow(() -> DonneesInvalidesException.produitInconnu(codeProduit));
+
+        // Récupérer la facture existante
+        Facture facture = factureRepository.findByIdWithLignesAndClient(factureId);
+        if (facture == null) {
+            throw RessourceNonTrouveeException.facture(factureId);
+        }
+
+        // Créer la ligne en ne conservant que les valeurs qui diffèrent du produit
+        LigneFacture ligne = LigneFacture.depuisProduit(produit, quantite);
+        if (description != null && !description.equals(produit.getDescription())) {
+            ligne.setDescription(description);
+        }
+        if (prixUnitaireHt != null && prixUnitaireHt.compareTo(produit.getPrixUnitaireHt()) != 0) {
+            ligne.setPrixUnitaireHt(prixUnitaireHt);
+        }
+        if (tauxTva != null && tauxTva != produit.getTauxTva()) {
+            ligne.setTauxTva(tauxTva);
+        }
+        facture.ajouterLigne(ligne);
+        incrementerVersion(facture);
+
+        // Sauvegarder les modifications ; seule la nouvelle ligne est reportée dans l'instantané analytique
+        Facture modifiee = factureRepository.save(facture);
+        analytiqueService.ligneAjoutee(modifiee, ligne);
+        changementsService.ligneAjoutee(modifiee);
+        return modifiee;
     }
 
     /**
@@ -102,36 +173,63 @@ public class FactureService {
      * @param clientId l'ID du nouveau client
      * @param dateFacture la nouvelle date de facture
      * @return la facture mise à jour
-     * @throws IllegalArgumentException si la facture ou le client n'existe pas
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
+     * @throws DonneesInvalidesException si le client n'existe pas ou n'est pas sur le shard de la facture
      */
     public Facture updateFacture(Long id, Long clientId, LocalDate dateFacture) {
         // Récupérer la facture existante
         Facture existingFacture = factureRepository.findByIdWithLignesAndClient(id);
         if (existingFacture == null) {
-            throw new IllegalArgumentException("Facture non trouvée avec l'ID: " + id);
+            throw RessourceNonTrouveeException.facture(id);
+        }
+
+        // Une facture reste sur le shard de son client d'origine
+        if (routageShards.shardDe(clientId) != routageShards.shardDe(id)) {
+            throw DonneesInvalidesException.clientAutreShard(clientId, id);
         }
 
         // Vérifier que le client existe
         Client client = clientRepository.findById(clientId)
-                .orElseThrow(() -> new IllegalArgumentException("Client non trouvé avec l'ID: " + clientId));
+                .orElseThrow(() -> DonneesInvalidesException.clientInconnu(clientId));
 
         // Mettre à jour les informations de base
         existingFacture.setDateFacture(dateFacture);
         existingFacture.setClient(client);
 
         // Sauvegarder les modifications
-        return factureRepository.save(existingFacture);
+        Facture modifiee = enregistrer(existingFacture);
+        changementsService.factureModifiee(modifiee);
+        return modifiee;
     }
 
     /**
      * Supprime une facture
+     * La suppression est logique ; les lignes sont effacées plus tard par PurgeSuppressionsService
      * @param id l'ID de la facture à supprimer
-     * @throws IllegalArgumentException si la facture n'existe pas
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
      */
     public void deleteFacture(Long id) {
-        if (!factureRepository.existsById(id)) {
-            throw new IllegalArgumentException("Facture non trouvée avec l'ID: " + id);
+        if (factureRepository.marquerSupprimee(id, LocalDateTime.now()) == 0) {
+            throw RessourceNonTrouveeException.facture(id);
         }
-        factureRepository.deleteById(id);
+        analytiqueService.factureSupprimee(id);
+        changementsService.factureSupprimee(id);
+    }
+
+    /**
+     * Incrémente la version d'une facture dont seules les lignes changent
+     * (l'ajout d'une ligne ne modifie pas la table des factures, Hibernate n'incrémente donc pas la version)
+     */
+    private void incrementerVersion(Facture facture) {
+        entityManager.lock(facture, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
+    /**
+     * Sauvegarde une facture modifiée et reporte ses lignes dans l'instantané analytique
+     */
+    private Facture enregistrer(Facture facture) {
+        Facture sauvegardee = factureRepository.save(facture);
+        analytiqueService.factureModifiee(sauvegardee);
+        return sauvegardee;
     }
 } 
\ No newline at end of file
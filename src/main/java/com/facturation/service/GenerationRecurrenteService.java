@@ -0,0 +1,226 @@
+package com.facturation.service;
+
+import com.facturation.exception.ConflitException;
+import com.facturation.model.*;
+import com.facturation.repository.GenerationRecurrenteRepository;
+import com.facturation.repository.LotGenerationRepository;
+import com.facturation.repository.ModeleFactureRecurrenteRepository;
+import com.facturation.repository.RoutageShards;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moteur de génération des factures récurrentes
+ * Découpe les clients en lots, traite les lots en parallèle (un lot = une transaction)
+ * et reprend une génération interrompue à partir des lots non terminés
+ * Chaque shard porte sa propre génération et ses lots, pour qu'un lot soit marqué terminé dans la transaction
+ * qui crée ses factures ; les lots de tous les shards partagent le même pool
+ */
+@Slf4j
+@Service
+public class GenerationRecurrenteService {
+
+    /**
+     * Rapport d'exécution d'une génération
+     */
+    public record RapportGeneration(String periode, StatutGeneration statut, int lotsTraites, int lotsEnEchec,
+                                    long nombreFactures, long nombreLignes, long dureeMs, double facturesParSeconde) {
+    }
+
+    private final ModeleFactureRecurrenteRepository modeleRepository;
+    private final GenerationRecurrenteRepository generationRepository;
+    private final LotGenerationRepository lotRepository;
+    private final AnalytiqueService analytiqueService;
+    private final ChangementsService changementsService;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int taillePool;
+    private final int tailleLot;
+    private final int tailleFlush;
+    private final AtomicBoolean generationEnCours = new AtomicBoolean(false);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public GenerationRecurrenteService(ModeleFactureRecurrenteRepository modeleRepository,
+                                       GenerationRecurrenteRepository generationRepository,
+                                       LotGenerationRepository lotRepository,
+                                       AnalytiqueService analytiqueService,
+                                       ChangementsService changementsService,
+                                       RoutageShards routageShards,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${facturation.recurrence.pool-size:4}") int taillePool,
+                                       @Value("${facturation.recurrence.lot-size:500}") int tailleLot,
+                                       @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int tailleFlush) {
+        this.modeleRepository = modeleRepository;
+        this.generationRepository = generationRepository;
+        this.lotRepository = lotRepository;
+        this.analytiqueService = analytiqueService;
+        this.changementsService = changementsService;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.taillePool = taillePool;
+        this.tailleLot = tailleLot;
+        this.tailleFlush = tailleFlush;
+    }
+
+    /**
+     * Génère les factures récurrentes d'une période, ou reprend une génération interrompue
+     * @param periode la période à facturer
+     * @param dateFacture la date des factures générées (premier jour de la période si null)
+     * @return le rapport d'exécution
+     * @throws ConflitException si une génération est déjà en cours
+     */
+    public RapportGeneration genererPeriode(YearMonth periode, LocalDate dateFacture) {
+        if (!generationEnCours.compareAndSet(false, true)) {
+            throw ConflitException.GENERATION_EN_COURS;
+        }
+        try {
+            long debut = System.nanoTime();
+            LocalDate date = dateFacture != null ? dateFacture : periode.atDay(1);
+            List<GenerationRecurrente> generations = routageShards.surChaqueShard(
+                    shard -> transactionTemplate.execute(status -> preparer(periode.toString(), date)));
+
+            ExecutorService pool = Executors.newFixedThreadPool(taillePool);
+            int nombreLots = 0;
+            long nombreFactures = 0;
+            long nombreLignes = 0;
+            int lotsEnEchec = 0;
+            try {
+                List<Future<long[]>> resultats = new ArrayList<>();
+                for (int shard = 0; shard < generations.size(); shard++) {
+                    int numero = shard;
+                    GenerationRecurrente generation = generations.get(shard);
+                    List<LotGeneration> lots = routageShards.executer(shard, () ->
+                            lotRepository.findByGenerationIdAndStatutNotOrderByPremierClientId(
+                                    generation.getId(), StatutGeneration.TERMINEE));
+                    for (LotGeneration lot : lots) {
+                        resultats.add(pool.submit(() -> routageShards.executer(numero, () -> transactionTemplate.execute(
+                                status -> traiterLot(lot.getId(), generation.getDateFacture())))));
+                    }
+                    nombreLots += lots.size();
+                }
+                for (Future<long[]> resultat : resultats) {
+                    try {
+                        long[] compteurs = resultat.get();
+                        nombreFactures += compteurs[0];
+                        nombreLignes += compteurs[1];
+                    } catch (ExecutionException e) {
+                        // Le lot reste EN_ATTENTE et sera repris à la prochaine exécution
+                        lotsEnEchec++;
+                        log.error("Échec d'un lot de la génération {}", periode, e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Génération récurrente interrompue", e);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            StatutGeneration statut = lotsEnEchec == 0 ? StatutGeneration.TERMINEE : StatutGeneration.EN_COURS;
+            if (statut == StatutGeneration.TERMINEE) {
+                for (int shard = 0; shard < generations.size(); shard++) {
+                    Long generationId = generations.get(shard).getId();
+                    routageShards.executer(shard, () -> transactionTemplate.execute(status -> {
+                        terminer(generationId);
+                        return null;
+                    }));
+                }
+            }
+
+            long dureeMs = Duration.ofNanos(System.nanoTime() - debut).toMillis();
+            double facturesParSeconde = dureeMs > 0 ? nombreFactures * 1000.0 / dureeMs : nombreFactures;
+            RapportGeneration rapport = new RapportGeneration(periode.toString(), statut,
+                    nombreLots - lotsEnEchec, lotsEnEchec, nombreFactures, nombreLignes, dureeMs, facturesParSeconde);
+            log.info("Génération récurrente {} : {} factures, {} lignes en {} ms ({} factures/s, {} lots en échec)",
+                    rapport.periode(), nombreFactures, nombreLignes, dureeMs,
+                    String.format("%.1f", facturesParSeconde), lotsEnEchec);
+            return rapport;
+        } finally {
+            generationEnCours.set(false);
+        }
+    }
+
+    /**
+     * Récupère la génération d'une période ou la crée avec son découpage en lots
+     * Le découpage est figé à la création pour que les reprises traitent exactement les mêmes tranches
+     */
+    private GenerationRecurrente preparer(String periode, LocalDate dateFacture) {
+        return generationRepository.findByPeriode(periode).orElseGet(() -> {
+            GenerationRecurrente generation = generationRepository.save(new GenerationRecurrente(periode, dateFacture));
+
+            List<Long> clientIds = modeleRepository.findClientIdsActifs();
+            List<LotGeneration> lots = new ArrayList<>();
+            for (int i = 0; i < clientIds.size(); i += tailleLot) {
+                int fin = Math.min(i + tailleLot, clientIds.size()) - 1;
+                lots.add(new LotGeneration(generation, clientIds.get(i), clientIds.get(fin)));
+            }
+            lotRepository.saveAll(lots);
+            return generation;
+        });
+    }
+
+    /**
+     * Génère les factures d'un lot et marque le lot terminé dans la même transaction
+     * @return le nombre de factures et de lignes générées
+     */
+    private long[] traiterLot(Long lotId, LocalDate dateFacture) {
+        // Verrouillé jusqu'à la validation : une autre instance qui reprend la même génération attend puis voit
+        // le lot TERMINEE, au lieu de générer ses factures une seconde fois
+        LotGeneration lot = entityManager.find(LotGeneration.class, lotId, LockModeType.PESSIMISTIC_WRITE);
+        if (lot.getStatut() == StatutGeneration.TERMINEE) {
+            return new long[]{0, 0};
+        }
+
+        List<ModeleFactureRecurrente> modeles = modeleRepository.findActifsByClientIdBetween(
+                lot.getPremierClientId(), lot.getDernierClientId());
+        int nombreFactures = 0;
+        long nombreLignes = 0;
+        for (ModeleFactureRecurrente modele : modeles) {
+            Facture facture = modele.genererFacture(dateFacture);
+            entityManager.persist(facture);
+            analytiqueService.factureModifiee(facture);
+            changementsService.factureCreee(facture);
+            nombreFactures++;
+            nombreLignes += facture.getLignes().size();
+            if (nombreFactures % tailleFlush == 0) {
+                // Factures écrites : détachées pour que le contexte de persistance reste borné par tailleFlush
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+
+        // Le lot a pu être détaché par clear : relu pour que son passage à TERMINEE soit écrit avec ses factures
+        LotGeneration termine = entityManager.find(LotGeneration.class, lotId);
+        termine.setStatut(StatutGeneration.TERMINEE);
+        termine.setNombreFactures(nombreFactures);
+        return new long[]{nombreFactures, nombreLignes};
+    }
+
+    private void terminer(Long generationId) {
+        GenerationRecurrente generation = entityManager.find(GenerationRecurrente.class, generationId);
+        generation.setStatut(StatutGeneration.TERMINEE);
+        generation.setDateFin(LocalDateTime.now());
+    }
+}
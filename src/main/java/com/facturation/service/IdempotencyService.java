@@ -0,0 +1,182 @@
+package com.facturation.service;
+
+import com.facturation.model.IdempotencyRecord;
+import com.facturation.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Service pour la gestion des clés d'idempotence
+ * La clé est réservée par une ligne en base avant l'exécution de la requête, ce qui déduplique
+ * les requêtes entre instances ; les réponses terminées sont gardées dans un cache LRU borné
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_TENTATIVES_RESERVATION = 3;
+
+    /**
+     * Réponse HTTP mémorisée pour une clé d'idempotence
+     */
+    public record ReponseMemorisee(int statut, String contentType, byte[] corps) {
+    }
+
+    /**
+     * État d'une clé d'idempotence vu par une requête
+     */
+    public enum Statut {
+        // La requête courante est propriétaire de la clé et doit s'exécuter
+        RESERVEE,
+        // Une autre requête, sur cette instance ou une autre, est propriétaire de la clé
+        EN_COURS,
+        // La réponse d'origine est mémorisée
+        TERMINEE
+    }
+
+    /**
+     * Résultat d'une réservation
+     * @param empreinte l'empreinte du corps de la requête propriétaire de la clé
+     * @param reponse la réponse mémorisée (TERMINEE)
+     * @param dateReservation la date identifiant la réservation obtenue (RESERVEE)
+     */
+    public record Reservation(Statut statut, String empreinte, ReponseMemorisee reponse, LocalDateTime dateReservation) {
+    }
+
+    private record Memorisee(ReponseMemorisee reponse, String empreinte, LocalDateTime dateCreation) {
+    }
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Duration dureeConservation;
+    private final Duration dureeMaxEnCours;
+    private final Map<String, Memorisee> cache;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              @Value("${facturation.idempotency.cache-size:10000}") int tailleCache,
+                              @Value("${facturation.idempotency.ttl-hours:24}") long dureeConservationHeures,
+                              @Value("${facturation.idempotency.pending-timeout-ms:120000}") long dureeMaxEnCoursMs) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.dureeConservation = Duration.ofHours(dureeConservationHeures);
+        this.dureeMaxEnCours = Duration.ofMillis(dureeMaxEnCoursMs);
+        // LinkedHashMap en ordre d'accès : l'entrée la moins récemment utilisée est évincée en premier
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Memorisee> eldest) {
+                return size() > tailleCache;
+            }
+        });
+    }
+
+    /**
+     * Réserve une clé pour la requête courante, ou retourne l'état de la requête qui la détient
+     * L'insertion de la réservation échoue si la clé existe déjà : une seule requête,
+     * toutes instances confondues, en devient propriétaire
+     * @param cle la clé d'idempotence
+     * @param empreinte l'empreinte du corps de la requête courante
+     * @return l'état de la clé pour la requête courante
+     */
+    public Reservation reserver(String cle, String empreinte) {
+        Memorisee memorisee = cache.get(cle);
+        if (memorisee != null && !expiree(memorisee.dateCreation(), dureeConservation)) {
+            return new Reservation(Statut.TERMINEE, memorisee.empreinte(), memorisee.reponse(), null);
+        }
+        if (memorisee != null) {
+            cache.remove(cle);
+        }
+
+        for (int tentative = 0; tentative < MAX_TENTATIVES_RESERVATION; tentative++) {
+            Optional<IdempotencyRecord> existante = idempotencyRecordRepository.findById(cle);
+            if (existante.isPresent()) {
+                Reservation reservation = etat(existante.get());
+                if (reservation != null) {
+                    return reservation;
+                }
+                // Réponse expirée ou requête d'origine interrompue sans libérer la clé : la réservation est reprise
+                idempotencyRecordRepository.supprimerReservation(cle, existante.get().getDateCreation());
+            }
+
+            // Précision milliseconde : la date doit se relire à l'identique quelle que soit la base
+            LocalDateTime dateReservation = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            try {
+                idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.reservation(cle, empreinte, dateReservation));
+                return new Reservation(Statut.RESERVEE, empreinte, null, dateReservation);
+            } catch (DataIntegrityViolationException e) {
+                // Réservée entre-temps par une autre requête : on relit son état
+                log.debug("Clé d'idempotence réservée concurremment: {}", cle);
+            }
+        }
+        return new Reservation(Statut.EN_COURS, null, null, null);
+    }
+
+    /**
+     * Mémorise la réponse de la requête propriétaire
+     * @param cle la clé d'idempotence
+     * @param dateReservation la date de la réservation obtenue
+     * @param empreinte l'empreinte du corps de la requête
+     * @param reponse la réponse à mémoriser
+     */
+    public void terminer(String cle, LocalDateTime dateReservation, String empreinte, ReponseMemorisee reponse) {
+        int memorisees = idempotencyRecordRepository.terminer(
+                cle, dateReservation, reponse.statut(), reponse.contentType(), reponse.corps());
+        if (memorisees == 0) {
+            // La réservation a dépassé la durée maximale et a été reprise : la réponse de la reprise prévaut
+            log.warn("Réservation de la clé d'idempotence reprise avant la fin de la requête: {}", cle);
+            return;
+        }
+        cache.put(cle, new Memorisee(reponse, empreinte, dateReservation));
+    }
+
+    /**
+     * Libère une clé sans mémoriser de réponse, pour qu'une nouvelle tentative s'exécute
+     * @param cle la clé d'idempotence
+     * @param dateReservation la date de la réservation obtenue
+     */
+    public void abandonner(String cle, LocalDateTime dateReservation) {
+        idempotencyRecordRepository.supprimerReservation(cle, dateReservation);
+    }
+
+    /**
+     * Supprime périodiquement les réponses mémorisées expirées
+     */
+    @Scheduled(fixedDelayString = "${facturation.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgerExpirees() {
+        int supprimees = idempotencyRecordRepository.deleteByDateCreationBefore(LocalDateTime.now().minus(dureeConservation));
+        if (supprimees > 0) {
+            log.debug("{} clés d'idempotence expirées supprimées", supprimees);
+        }
+    }
+
+    /**
+     * État d'une clé existante en base, ou null si elle peut être reprise
+     */
+    private Reservation etat(IdempotencyRecord record) {
+        if (record.getStatut() == null) {
+            return expiree(record.getDateCreation(), dureeMaxEnCours)
+                    ? null
+                    : new Reservation(Statut.EN_COURS, record.getEmpreinte(), null, null);
+        }
+        if (expiree(record.getDateCreation(), dureeConservation)) {
+            return null;
+        }
+        ReponseMemorisee reponse = new ReponseMemorisee(record.getStatut(), record.getContentType(), record.getCorps());
+        cache.put(record.getCle(), new Memorisee(reponse, record.getEmpreinte(), record.getDateCreation()));
+        return new Reservation(Statut.TERMINEE, record.getEmpreinte(), reponse, null);
+    }
+
+    private static boolean expiree(LocalDateTime dateCreation, Duration duree) {
+        return !dateCreation.isAfter(LocalDateTime.now().minus(duree));
+    }
+}
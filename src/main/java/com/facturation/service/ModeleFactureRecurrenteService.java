@@ -0,0 +1,80 @@
+package com.facturation.service;
+
+import com.facturation.exception.DonneesInvalidesException;
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.Client;
+import com.facturation.model.LigneModele;
+import com.facturation.model.ModeleFactureRecurrente;
+import com.facturation.repository.ClientRepository;
+import com.facturation.repository.ModeleFactureRecurrenteRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Service pour la gestion des modèles de factures récurrentes
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class ModeleFactureRecurrenteService {
+
+    private final ModeleFactureRecurrenteRepository modeleRepository;
+    private final ClientRepository clientRepository;
+
+    /**
+     * Récupère les modèles récurrents d'un client
+     * @param clientId l'ID du client
+     * @return la liste des modèles du client
+     */
+    public List<ModeleFactureRecurrente> getModelesByClientId(Long clientId) {
+        return modeleRepository.findByClientId(clientId);
+    }
+
+    /**
+     * Crée un modèle de facture récurrente pour un client
+     * @param clientId l'ID du client
+     * @param lignes les lignes du modèle
+     * @return le modèle créé
+     * @throws DonneesInvalidesException si le client n'existe pas ou si le modèle n'a aucune ligne
+     */
+    public ModeleFactureRecurrente createModele(Long clientId, List<LigneModele> lignes) {
+        if (lignes == null || lignes.isEmpty()) {
+            throw DonneesInvalidesException.MODELE_SANS_LIGNE;
+        }
+
+        // Vérifier que le client existe
+        Client client = clientRepository.findById(clientId)
+                .orElseThrow(() -> DonneesInvalidesException.clientInconnu(clientId));
+
+        return modeleRepository.save(new ModeleFactureRecurrente(client, lignes));
+    }
+
+    /**
+     * Active ou désactive un modèle récurrent
+     * @param id l'ID du modèle
+     * @param actif true pour activer le modèle, false pour le suspendre
+     * @return le modèle mis à jour
+     * @throws RessourceNonTrouveeException si le modèle n'existe pas
+     */
+    public ModeleFactureRecurrente setActif(Long id, boolean actif) {
+        ModeleFactureRecurrente modele = modeleRepository.findById(id)
+                .orElseThrow(() -> RessourceNonTrouveeException.modeleRecurrent(id));
+        modele.setActif(actif);
+        return modeleRepository.save(modele);
+    }
+
+    /**
+     * Supprime un modèle récurrent
+     * @param id l'ID du modèle à supprimer
+     * @throws RessourceNonTrouveeException si le modèle n'existe pas
+     */
+    public void deleteModele(Long id) {
+        if (!modeleRepository.existsById(id)) {
+            throw RessourceNonTrouveeException.modeleRecurrent(id);
+        }
+        modeleRepository.deleteById(id);
+    }
+}
@@ -0,0 +1,133 @@
+package com.facturation.service;
+
+import com.facturation.repository.ClientRepository;
+import com.facturation.repository.FactureRepository;
+import com.facturation.repository.ModeleFactureRecurrenteRepository;
+import com.facturation.repository.RoutageShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Purge en arrière-plan des clients et factures supprimés logiquement
+ * Les lignes sont effacées par DELETE ensemblistes en lots bornés (un lot = une transaction courte),
+ * dans l'ordre des clés étrangères, avec une pause entre deux lots pour ne pas monopoliser la base
+ * Les shards sont purgés l'un après l'autre
+ */
+@Slf4j
+@Service
+public class PurgeSuppressionsService {
+
+    /**
+     * Nombre de lignes purgées par table lors d'un passage
+     */
+    public record RapportPurge(long lignesFacture, long factures, long lignesModele, long modeles, long clients) {
+    }
+
+    private final FactureRepository factureRepository;
+    private final ClientRepository clientRepository;
+    private final ModeleFactureRecurrenteRepository modeleRepository;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int tailleLot;
+    private final long pauseMs;
+    private final AtomicBoolean purgeEnCours = new AtomicBoolean(false);
+
+    public PurgeSuppressionsService(FactureRepository factureRepository,
+                                    ClientRepository clientRepository,
+                                    ModeleFactureRecurrenteRepository modeleRepository,
+                                    RoutageShards routageShards,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${facturation.purge.batch-size:1000}") int tailleLot,
+                                    @Value("${facturation.purge.pause-ms:50}") long pauseMs) {
+        this.factureRepository = factureRepository;
+        this.clientRepository = clientRepository;
+        this.modeleRepository = modeleRepository;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.tailleLot = tailleLot;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Déclenche périodiquement la purge
+     */
+    @Scheduled(fixedDelayString = "${facturation.purge.interval-ms:300000}",
+               initialDelayString = "${facturation.purge.interval-ms:300000}")
+    public void purgerPeriodiquement() {
+        RapportPurge rapport = purger();
+        if (rapport != null && rapport.clients() + rapport.factures() > 0) {
+            log.info("Purge des suppressions : {}", rapport);
+        }
+    }
+
+    /**
+     * Efface définitivement les lignes supprimées logiquement
+     * Les factures sont purgées avant les clients, qui ne sont effacés qu'une fois
+     * leurs factures et modèles récurrents disparus
+     * @return le rapport de purge, ou null si une purge est déjà en cours
+     */
+    public RapportPurge purger() {
+        if (!purgeEnCours.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            RapportPurge total = new RapportPurge(0, 0, 0, 0, 0);
+            for (int shard = 0; shard < routageShards.getNombreShards(); shard++) {
+                RapportPurge rapport = routageShards.executer(shard, this::purgerShard);
+                total = new RapportPurge(total.lignesFacture() + rapport.lignesFacture(),
+                        total.factures() + rapport.factures(), total.lignesModele() + rapport.lignesModele(),
+                        total.modeles() + rapport.modeles(), total.clients() + rapport.clients());
+            }
+            return total;
+        } finally {
+            purgeEnCours.set(false);
+        }
+    }
+
+    /**
+     * Purge le shard courant
+     */
+    private RapportPurge purgerShard() {
+        long lignesFacture = purgerParLots(factureRepository::purgerLignesSupprimees);
+        long factures = purgerParLots(factureRepository::purgerSupprimees);
+        long lignesModele = purgerParLots(modeleRepository::purgerLignesClientsSupprimes);
+        long modeles = purgerParLots(modeleRepository::purgerClientsSupprimes);
+        long clients = purgerParLots(clientRepository::purgerSupprimes);
+        return new RapportPurge(lignesFacture, factures, lignesModele, modeles, clients);
+    }
+
+    /**
+     * Exécute une requête de purge par lots jusqu'à ce qu'un lot ne supprime plus rien
+     */
+    private long purgerParLots(IntUnaryOperator requete) {
+        long total = 0;
+        int supprimees;
+        do {
+            supprimees = transactionTemplate.execute(status -> requete.applyAsInt(tailleLot));
+            total += supprimees;
+        } while (supprimees > 0 && pause());
+        return total;
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.facturation.service;
+
+import com.facturation.exception.ConflitException;
+import com.facturation.model.BailRelais;
+import com.facturation.model.Changement;
+import com.facturation.model.TypeChangement;
+import com.facturation.repository.BailRelaisRepository;
+import com.facturation.repository.ChangementRepository;
+import com.facturation.repository.JournalChangements;
+import com.facturation.repository.JournalChangements.Enregistrement;
+import com.facturation.repository.RoutageShards;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relais de la table d'outbox vers le journal local des changements, et diffusion du journal
+ * Un thread dédié copie périodiquement (et dès qu'une transaction enregistre un changement) les plus anciens
+ * changements de l'outbox dans le journal, le synchronise sur disque, puis efface les changements relayés
+ * La livraison est « au moins une fois » : un arrêt entre l'écriture du journal et l'effacement de l'outbox
+ * relaie de nouveau les mêmes changements, que les consommateurs dédoublonnent par leur ID
+ * Les abonnés SSE reçoivent les enregistrements du journal à partir de leur offset, sans requête en base
+ * Une seule instance relaie, celle qui détient le bail du relais (voir BailRelais), et les autres instances
+ * refusent de servir le flux plutôt que d'en servir une partie
+ * Le journal d'une instance ne contient que les changements relayés pendant qu'elle détenait le bail : après
+ * une reprise du bail (bascule, redéploiement sur un autre hôte), les changements relayés par le détenteur
+ * précédent ne sont plus que dans son journal. Les offsets publiés portent donc la génération du bail (bits de
+ * poids fort) : un offset d'une génération précédente est refusé (409) et le consommateur reprend depuis 0
+ */
+@Slf4j
+@Service
+public class RelaisChangementsService {
+
+    // Bits de poids faible des offsets publiés : position dans le journal (jusqu'à 1 Tio)
+    private static final int BITS_POSITION = 40;
+    private static final long MASQUE_POSITION = (1L << BITS_POSITION) - 1;
+
+    /**
+     * Changement lu dans le journal
+     * @param offset l'offset du changement dans le journal
+     * @param changement le changement au format JSON
+     */
+    public record ChangementPublie(long offset, @JsonRawValue String changement) {
+    }
+
+    /**
+     * Page de changements lue dans le journal
+     * @param changements les changements, dans l'ordre du journal
+     * @param suivant l'offset à passer pour lire la page suivante
+     */
+    public record PageChangements(List<ChangementPublie> changements, long suivant) {
+    }
+
+    /**
+     * Changement tel qu'écrit dans le journal
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record Evenement(Long id, TypeChangement type, LocalDateTime date, Long clientId, Long factureId,
+                             @JsonRawValue String donnees) {
+    }
+
+    /**
+     * Abonné au flux SSE et position de la diffusion dans le journal
+     */
+    private static final class Abonne {
+        private final SseEmitter emetteur;
+        private final long generation;
+        private final AtomicBoolean diffusionEnCours = new AtomicBoolean(false);
+        private volatile long position;
+
+        private Abonne(SseEmitter emetteur, long generation, long position) {
+            this.emetteur = emetteur;
+            this.generation = generation;
+            this.position = position;
+        }
+    }
+
+    private final ChangementRepository changementRepository;
+    private final BailRelaisRepository bailRelaisRepository;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final JournalChangements journal;
+    private final int tailleLot;
+    private final long intervalleMs;
+    private final long delaiSseMs;
+    private final String instance;
+    private final Duration dureeBail;
+    private volatile LocalDateTime expirationBail;
+    private volatile long generation;
+    private final ScheduledExecutorService relais = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService diffusion;
+    private final Set<Abonne> abonnes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean relaisDemande = new AtomicBoolean(false);
+
+    public RelaisChangementsService(ChangementRepository changementRepository,
+                                    BailRelaisRepository bailRelaisRepository,
+                                    RoutageShards routageShards,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    @Value("${facturation.changements.journal-path:data/journal-changements.log}") String cheminJournal,
+                                    @Value("${facturation.changements.region-size:67108864}") int tailleRegion,
+                                    @Value("${facturation.changements.batch-size:500}") int tailleLot,
+                                    @Value("${facturation.changements.relay-interval-ms:200}") long intervalleMs,
+                                    @Value("${facturation.changements.relay-lease-ms:30000}") long dureeBailMs,
+                                    @Value("${facturation.changements.sse-timeout-ms:1800000}") long delaiSseMs,
+                                    @Value("${facturation.changements.sse-pool-size:2}") int taillePoolSse) throws IOException {
+        this.changementRepository = changementRepository;
+        this.bailRelaisRepository = bailRelaisRepository;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.journal = new JournalChangements(Path.of(cheminJournal), tailleRegion);
+        // Identité stable d'un redémarrage à l'autre : l'instance reprend son bail sans attendre son expiration
+        this.instance = InetAddress.getLocalHost().getHostName() + ":" + Path.of(cheminJournal).toAbsolutePath();
+        this.dureeBail = Duration.ofMillis(dureeBailMs);
+        this.tailleLot = tailleLot;
+        this.intervalleMs = intervalleMs;
+        this.delaiSseMs = delaiSseMs;
+        this.diffusion = Executors.newFixedThreadPool(taillePoolSse);
+    }
+
+    @PostConstruct
+    public void demarrer() {
+        relais.scheduleWithFixedDelay(this::relayerPeriodiquement, 0, intervalleMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void arreter() throws IOException, InterruptedException {
+        relais.shutdown();
+        relais.awaitTermination(5, TimeUnit.SECONDS);
+        if (expirationBail != null) {
+            try {
+                bailRelaisRepository.liberer(BailRelais.ID, instance, LocalDateTime.now());
+            } catch (RuntimeException e) {
+                // Base indisponible : le bail expirera de lui-même
+                log.warn("Libération du bail du relais des changements impossible", e);
+            }
+        }
+        diffusion.shutdownNow();
+        abonnes.forEach(abonne -> abonne.emetteur.complete());
+        abonnes.clear();
+        journal.close();
+    }
+
+    /**
+     * Demande un relais immédiat (appelé après la validation d'une transaction qui a enregistré des changements)
+     * Les demandes reçues pendant un relais sont regroupées en un seul passage
+     */
+    public void signaler() {
+        if (relaisDemande.compareAndSet(false, true)) {
+            try {
+                relais.execute(this::relayerPeriodiquement);
+            } catch (RejectedExecutionException e) {
+                // Arrêt en cours : les changements restent dans l'outbox et seront relayés au redémarrage
+                relaisDemande.set(false);
+            }
+        }
+    }
+
+    /**
+     * Copie l'outbox de chaque shard dans le journal jusqu'à l'épuiser, si l'instance détient le bail du relais
+     * L'ordre des changements est garanti pour une même entité (un client et ses factures sont sur le même shard)
+     * @return le nombre de changements relayés
+     */
+    public synchronized long relayer() {
+        if (!detenirBail()) {
+            return 0;
+        }
+        long total = 0;
+        for (int shard = 0; shard < routageShards.getNombreShards(); shard++) {
+            int relayes;
+            do {
+                relayes = routageShards.executer(shard, () -> transactionTemplate.execute(status -> relayerLot()));
+                total += relayes;
+                if (relayes > 0) {
+                    abonnes.forEach(this::diffuser);
+                }
+            } while (relayes == tailleLot);
+        }
+        return total;
+    }
+
+    /**
+     * Lit des changements dans le journal
+     * @param depuis l'offset du premier changement (0 pour le début du journal)
+     * @param limite le nombre maximal de changements
+     * @return la page de changements et l'offset de la suivante
+     * @throws IllegalArgumentException si l'offset n'est pas celui d'un changement
+     * @throws ConflitException si une autre instance relaie les changements, ou si l'offset est celui d'un
+     * journal précédent
+     */
+    public PageChangements lire(long depuis, int limite) {
+        verifierRelais();
+        long generationLue = generation;
+        List<Enregistrement> enregistrements = journal.lire(position(depuis, generationLue), limite);
+        List<ChangementPublie> changements = new ArrayList<>(enregistrements.size());
+        long suivant = depuis == 0 ? offset(generationLue, 0) : depuis;
+        for (Enregistrement enregistrement : enregistrements) {
+            changements.add(new ChangementPublie(offset(generationLue, enregistrement.offset()),
+                    new String(enregistrement.donnees(), StandardCharsets.UTF_8)));
+            suivant = offset(generationLue, enregistrement.suivant());
+        }
+        return new PageChangements(changements, suivant);
+    }
+
+    /**
+     * Abonne un client au flux des changements à partir d'un offset
+     * Chaque événement SSE porte comme ID l'offset à partir duquel reprendre (en-tête Last-Event-ID)
+     * @param depuis l'offset du premier changement à envoyer
+     * @return l'émetteur SSE de l'abonné
+     * @throws IllegalArgumentException si l'offset n'est pas celui d'un changement
+     * @throws ConflitException si une autre instance relaie les changements, ou si l'offset est celui d'un
+     * journal précédent
+     */
+    public SseEmitter suivre(long depuis) {
+        verifierRelais();
+        long generationSuivie = generation;
+        long position = position(depuis, generationSuivie);
+        journal.verifier(position);
+        SseEmitter emetteur = new SseEmitter(delaiSseMs);
+        Abonne abonne = new Abonne(emetteur, generationSuivie, position);
+        emetteur.onCompletion(() -> abonnes.remove(abonne));
+        emetteur.onTimeout(() -> abonnes.remove(abonne));
+        emetteur.onError(erreur -> abonnes.remove(abonne));
+        abonnes.add(abonne);
+        diffuser(abonne);
+        return emetteur;
+    }
+
+    private void relayerPeriodiquement() {
+        relaisDemande.set(false);
+        try {
+            relayer();
+        } catch (RuntimeException e) {
+            // Nouvelle tentative au prochain passage : l'outbox n'a pas été effacée
+            log.error("Échec du relais des changements vers le journal", e);
+        }
+    }
+
+    /**
+     * Prend ou prolonge le bail du relais ; il n'est prolongé en base qu'une fois sa première moitié écoulée
+     * @return vrai si l'instance détient le bail
+     */
+    private boolean detenirBail() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        LocalDateTime expiration = expirationBail;
+        if (expiration != null && maintenant.isBefore(expiration.minus(dureeBail.dividedBy(2)))) {
+            return true;
+        }
+
+        LocalDateTime nouvelleExpiration = maintenant.plus(dureeBail);
+        boolean detenu = bailRelaisRepository.prolonger(BailRelais.ID, instance, nouvelleExpiration, maintenant) == 1;
+        if (!detenu && !bailRelaisRepository.existsById(BailRelais.ID)) {
+            try {
+                bailRelaisRepository.saveAndFlush(BailRelais.nouveau(instance, nouvelleExpiration));
+                detenu = true;
+            } catch (DataIntegrityViolationException e) {
+                // Bail créé au même moment par une autre instance
+                log.debug("Bail du relais des changements pris par une autre instance");
+            }
+        }
+
+        if (detenu && expiration == null) {
+            log.info("Relais des changements assuré par cette instance ({})", instance);
+        } else if (!detenu && expiration != null) {
+            log.warn("Bail du relais des changements repris par une autre instance : relais arrêté sur {}", instance);
+        }
+        if (detenu) {
+            // Génération lue à chaque prolongation : le bail a pu être repris puis récupéré entre deux passages
+            generation = bailRelaisRepository.findById(BailRelais.ID).map(BailRelais::getGeneration).orElse(1L);
+        }
+        expirationBail = detenu ? nouvelleExpiration : null;
+        return detenu;
+    }
+
+    private void verifierRelais() {
+        LocalDateTime expiration = expirationBail;
+        if (expiration == null || !LocalDateTime.now().isBefore(expiration)) {
+            throw ConflitException.RELAIS_AUTRE_INSTANCE;
+        }
+    }
+
+    // Offset publié : génération du bail dans les bits de poids fort, position dans le journal dans les autres
+    private static long offset(long generation, long position) {
+        return generation << BITS_POSITION | position;
+    }
+
+    private static long position(long offset, long generation) {
+        if (offset == 0) {
+            return 0;
+        }
+        if (offset >>> BITS_POSITION != generation) {
+            throw ConflitException.JOURNAL_PRECEDENT;
+        }
+        return offset & MASQUE_POSITION;
+    }
+
+    private int relayerLot() {
+        List<Changement> lot = changementRepository.findPlusAnciens(PageRequest.ofSize(tailleLot));
+        if (lot.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(lot.size());
+        try {
+            for (Changement changement : lot) {
+                journal.ajouter(objectMapper.writeValueAsBytes(new Evenement(changement.getId(), changement.getType(),
+                        changement.getDateChangement(), changement.getClientId(), changement.getFactureId(),
+                        changement.getDonnees())));
+                ids.add(changement.getId());
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Changement non sérialisable", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture du journal des changements impossible", e);
+        }
+        if (journal.getFin() > MASQUE_POSITION) {
+            throw new IllegalStateException("Journal des changements trop volumineux pour ses offsets publiés");
+        }
+        // Le journal est durable avant que l'outbox ne soit effacée
+        journal.forcer();
+        changementRepository.deleteAllByIdInBatch(ids);
+        return lot.size();
+    }
+
+    // Une seule diffusion en cours par abonné ; une diffusion demandée pendant la précédente est reprise à la fin
+    private void diffuser(Abonne abonne) {
+        if (!abonne.diffusionEnCours.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            diffusion.execute(() -> envoyer(abonne));
+        } catch (RejectedExecutionException e) {
+            abonne.diffusionEnCours.set(false);
+        }
+    }
+
+    private void envoyer(Abonne abonne) {
+        try {
+            List<Enregistrement> enregistrements;
+            do {
+                enregistrements = journal.lire(abonne.position, tailleLot);
+                for (Enregistrement enregistrement : enregistrements) {
+                    abonne.emetteur.send(SseEmitter.event()
+                            .id(Long.toString(offset(abonne.generation, enregistrement.suivant())))
+                            .name("changement")
+                            .data(new String(enregistrement.donnees(), StandardCharsets.UTF_8)));
+                    abonne.position = enregistrement.suivant();
+                }
+            } while (!enregistrements.isEmpty());
+        } catch (IOException | IllegalStateException e) {
+            // Client déconnecté ou émetteur déjà terminé
+            abonnes.remove(abonne);
+            return;
+        } finally {
+            abonne.diffusionEnCours.set(false);
+        }
+        if (abonne.position < journal.getFin() && abonnes.contains(abonne)) {
+            diffuser(abonne);
+        }
+    }
+}
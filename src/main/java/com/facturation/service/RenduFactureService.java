@@ -0,0 +1,242 @@
+package com.facturation.service;
+
+import com.facturation.exception.RessourceNonTrouveeException;
+import com.facturation.model.Facture;
+import com.facturation.model.Vendeur;
+import com.facturation.repository.FactureRepository;
+import com.facturation.repository.FactureRepository.VersionFacture;
+import com.facturation.repository.RoutageShards;
+import com.facturation.serializer.GabaritFacture;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendu des factures en documents HTML imprimables
+ * Le gabarit est compilé une seule fois au démarrage ; les documents rendus sont conservés dans un cache LRU borné,
+ * indexé par ID et version de facture (toute modification de la facture ou de ses lignes change la version)
+ * Le rendu d'une période est écrit en flux dans une archive ZIP : par lots d'ID croissants, les documents absents
+ * du cache sont chargés en une requête et rendus en parallèle sur tous les cœurs, puis écrits dans l'ordre
+ */
+@Slf4j
+@Service
+public class RenduFactureService {
+
+    /**
+     * Rapport d'un rendu par lot
+     */
+    public record RapportRendu(LocalDate du, LocalDate au, long documents, long depuisCache, long dureeMs,
+                               double documentsParSeconde) {
+    }
+
+    /**
+     * Statistiques cumulées du rendu depuis le démarrage
+     */
+    public record Statistiques(int documentsEnCache, long documentsRendus, long succesCache, long echecsCache,
+                               RapportRendu dernierLot) {
+    }
+
+    private record CleDocument(Long factureId, Long version) {
+    }
+
+    private record Document(Long clientId, byte[] contenu) {
+    }
+
+    private final FactureRepository factureRepository;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+    private final Vendeur vendeur;
+    private final GabaritFacture gabarit;
+    private final Map<CleDocument, Document> cache;
+    private final ExecutorService pool;
+    private final int tailleLot;
+    private final LongAdder documentsRendus = new LongAdder();
+    private final LongAdder succesCache = new LongAdder();
+    private final LongAdder echecsCache = new LongAdder();
+    private volatile RapportRendu dernierLot;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public RenduFactureService(FactureRepository factureRepository,
+                               RoutageShards routageShards,
+                               PlatformTransactionManager transactionManager,
+                               Vendeur vendeur,
+                               ResourceLoader resourceLoader,
+                               @Value("${facturation.rendu.gabarit:classpath:gabarits/facture.html}") String emplacementGabarit,
+                               @Value("${facturation.rendu.cache-size:10000}") int tailleCache,
+                               @Value("${facturation.rendu.pool-size:0}") int taillePool,
+                               @Value("${facturation.rendu.lot-size:200}") int tailleLot) {
+        this.factureRepository = factureRepository;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.vendeur = vendeur;
+        try (InputStream source = resourceLoader.getResource(emplacementGabarit).getInputStream()) {
+            this.gabarit = GabaritFacture.compiler(new String(source.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gabarit de facture illisible : " + emplacementGabarit, e);
+        }
+        // LinkedHashMap en ordre d'accès : le document le moins récemment consulté est évincé en premier
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CleDocument, Document> eldest) {
+                return size() > tailleCache;
+            }
+        });
+        this.pool = Executors.newFixedThreadPool(taillePool > 0 ? taillePool : Runtime.getRuntime().availableProcessors());
+        this.tailleLot = tailleLot;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Rend une facture, depuis le cache si sa version n'a pas changé
+     * @param id l'ID de la facture
+     * @return le document HTML encodé en UTF-8
+     * @throws RessourceNonTrouveeException si la facture n'existe pas
+     */
+    public byte[] rendreFacture(Long id) {
+        Long version = factureRepository.findVersionById(id).orElseThrow(() -> RessourceNonTrouveeException.facture(id));
+        Document document = cache.get(new CleDocument(id, version));
+        if (document != null) {
+            succesCache.increment();
+            return document.contenu();
+        }
+        echecsCache.increment();
+        Facture facture = transactionTemplate.execute(status -> factureRepository.findByIdWithLignesAndClient(id));
+        if (facture == null) {
+            throw RessourceNonTrouveeException.facture(id);
+        }
+        byte[] contenu = rendre(facture);
+        cache.put(new CleDocument(id, facture.getVersion()), new Document(facture.getClient().getId(), contenu));
+        return contenu;
+    }
+
+    /**
+     * Rend les factures d'une période dans une archive ZIP écrite en flux (un document par facture)
+     * Les documents en cache sont réutilisés ; les documents rendus ne sont pas ajoutés au cache,
+     * pour ne pas en évincer les documents consultés
+     * @param dateDebut la date de début
+     * @param dateFin la date de fin
+     * @param sortie le flux de sortie de l'archive
+     * @return le rapport du rendu, avec le débit en documents par seconde
+     */
+    public RapportRendu rendrePeriode(LocalDate dateDebut, LocalDate dateFin, OutputStream sortie) {
+        long debut = System.nanoTime();
+        LongAdder depuisCache = new LongAdder();
+        long nombre = ArchiveParLots.ecrire(sortie, tailleLot, entityManager,
+                apresId -> routageShards.fusionner(shard -> factureRepository.findVersionsByDateFactureBetween(
+                        dateDebut, dateFin, apresId, PageRequest.ofSize(tailleLot)),
+                        Comparator.comparing(VersionFacture::getId), tailleLot),
+                VersionFacture::getId,
+                page -> {
+                    Map<Long, Future<byte[]>> contenus = new HashMap<>();
+                    List<Long> aRendre = new ArrayList<>();
+                    for (VersionFacture facture : page) {
+                        Document document = cache.get(new CleDocument(facture.getId(), facture.getVersion()));
+                        if (document != null) {
+                            contenus.put(facture.getId(), CompletableFuture.completedFuture(document.contenu()));
+                        } else {
+                            aRendre.add(facture.getId());
+                        }
+                    }
+                    depuisCache.add(page.size() - aRendre.size());
+                    if (!aRendre.isEmpty()) {
+                        for (Facture facture : routageShards.chargerParIds(aRendre,
+                                ids -> transactionTemplate.execute(status -> factureRepository.findAllWithLignesAndClientByIdIn(ids)),
+                                Comparator.comparing(Facture::getId))) {
+                            contenus.put(facture.getId(), pool.submit(() -> rendre(facture)));
+                        }
+                    }
+                    return page.stream()
+                            .map(facture -> new ArchiveParLots.Entree("facture-" + facture.getId() + ".html",
+                                    contenus.get(facture.getId())))
+                            .toList();
+                });
+        long dureeMs = Math.max(1, (System.nanoTime() - debut) / 1_000_000);
+        RapportRendu rapport = new RapportRendu(dateDebut, dateFin, nombre, depuisCache.sum(), dureeMs, nombre * 1000.0 / dureeMs);
+        dernierLot = rapport;
+        log.info("Rendu de {} factures du {} au {} ({} depuis le cache) en {} ms : {} documents/s",
+                nombre, dateDebut, dateFin, depuisCache.sum(), dureeMs, String.format("%.0f", rapport.documentsParSeconde()));
+        return rapport;
+    }
+
+    /**
+     * Retourne les statistiques cumulées du rendu
+     * @return les statistiques du cache et du dernier rendu par lot
+     */
+    public Statistiques getStatistiques() {
+        return new Statistiques(cache.size(), documentsRendus.sum(), succesCache.sum(), echecsCache.sum(), dernierLot);
+    }
+
+    /**
+     * Retire du cache les documents d'un client modifié, après validation de la transaction courante
+     * (le nom, l'email et le SIRET du client sont imprimés sans changer la version des factures)
+     * @param clientId l'ID du client
+     */
+    public void clientModifie(Long clientId) {
+        apresCommit(() -> {
+            synchronized (cache) {
+                cache.values().removeIf(document -> document.clientId().equals(clientId));
+            }
+        });
+    }
+
+    /**
+     * Vide le cache après validation de la transaction courante (barème de TVA modifié)
+     */
+    public void invalider() {
+        apresCommit(cache::clear);
+    }
+
+    private byte[] rendre(Facture facture) {
+        byte[] contenu = gabarit.rendre(facture, vendeur);
+        documentsRendus.increment();
+        return contenu;
+    }
+
+    private static void apresCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
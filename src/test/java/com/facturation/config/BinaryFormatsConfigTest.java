@@ -0,0 +1,80 @@
+package com.facturation.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Vérifie la négociation des formats binaires : corps de requête et réponses CBOR ou Smile selon Content-Type
+ * et Accept, identiques à la réponse JSON servie par défaut
+ */
+@SpringBootTest
+class BinaryFormatsConfigTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void initialiser() {
+        // Contexte partagé avec les autres tests : une seule base H2 en mémoire
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    void clientCreeEtServiEnCbor() throws Exception {
+        verifierFormat(MediaType.APPLICATION_CBOR, new ObjectMapper(new CBORFactory()), "cbor@formats.test", "78000000000001");
+    }
+
+    @Test
+    void clientCreeEtServiEnSmile() throws Exception {
+        verifierFormat(SMILE, new ObjectMapper(new SmileFactory()), "smile@formats.test", "78000000000002");
+    }
+
+    private void verifierFormat(MediaType format, ObjectMapper binaire, String email, String siret) throws Exception {
+        byte[] corps = binaire.writeValueAsBytes(Map.of("nom", "Format binaire", "email", email, "siret", siret));
+
+        byte[] cree = mockMvc.perform(post("/api/clients").contentType(format).accept(format).content(corps))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(format))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode client = binaire.readTree(cree);
+        assertEquals(siret, client.get("siret").asText());
+        assertEquals(email, client.get("email").asText());
+
+        // Sans en-tête Accept, la même ressource est servie en JSON, avec la même configuration Jackson
+        String url = "/api/clients/" + client.get("id").asLong();
+        byte[] json = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] lu = mockMvc.perform(get(url).accept(format))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(format))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(objectMapper.readTree(json), binaire.readTree(lu));
+    }
+}
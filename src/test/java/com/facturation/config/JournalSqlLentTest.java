@@ -0,0 +1,114 @@
+package com.facturation.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie la journalisation des requêtes SQL lentes ou échantillonnées, avec leurs paramètres et la taille des lots
+ */
+class JournalSqlLentTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("facturation.slow-log.sql");
+    private final ListAppender<ILoggingEvent> evenements = new ListAppender<>();
+    private final DataSource base = new DriverManagerDataSource("jdbc:h2:mem:journal-sql;DB_CLOSE_DELAY=-1", "sa", "");
+
+    @BeforeEach
+    void initialiser() throws Exception {
+        evenements.start();
+        logger.addAppender(evenements);
+        try (Connection connexion = base.getConnection(); Statement statement = connexion.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS journal (id INT, libelle VARCHAR(200))");
+            statement.execute("DELETE FROM journal");
+        }
+    }
+
+    @AfterEach
+    void detacher() {
+        logger.detachAppender(evenements);
+    }
+
+    @Test
+    void parametresCaptures() throws Exception {
+        DataSource dataSource = new JournalSqlLent(0, 0).envelopper(base);
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement statement = connexion.prepareStatement("INSERT INTO journal (id, libelle) VALUES (?, ?)")) {
+            statement.setInt(1, 7);
+            statement.setString(2, "x".repeat(80));
+            statement.executeUpdate();
+            statement.clearParameters();
+            statement.setInt(1, 8);
+            statement.setNull(2, Types.VARCHAR);
+            statement.executeUpdate();
+        }
+
+        assertEquals(2, evenements.list.size());
+        String premiere = evenements.list.get(0).getFormattedMessage();
+        assertEquals(Level.WARN, evenements.list.get(0).getLevel());
+        assertTrue(premiere.startsWith("SQL lente "), premiere);
+        // Valeur textuelle tronquée, origine hors des services
+        assertTrue(premiere.endsWith("INSERT INTO journal (id, libelle) VALUES (?, ?) [7, '" + "x".repeat(64) + "…'] (-)"),
+                premiere);
+        assertTrue(evenements.list.get(1).getFormattedMessage().endsWith("[8, NULL] (-)"));
+    }
+
+    @Test
+    void tailleDesLotsComptee() throws Exception {
+        DataSource dataSource = new JournalSqlLent(0, 0).envelopper(base);
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement statement = connexion.prepareStatement("INSERT INTO journal (id, libelle) VALUES (?, ?)")) {
+            for (int i = 0; i < 3; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, "ligne");
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            statement.setInt(1, 3);
+            statement.setString(2, "ligne");
+            statement.addBatch();
+            statement.executeBatch();
+        }
+
+        assertEquals(2, evenements.list.size());
+        assertTrue(evenements.list.get(0).getFormattedMessage().contains(" ms (lot de 3) : INSERT"));
+        // Compteur remis à zéro après chaque exécution du lot
+        assertTrue(evenements.list.get(1).getFormattedMessage().contains(" ms (lot de 1) : INSERT"));
+    }
+
+    @Test
+    void requetesRapidesJournaliseesSeulementParEchantillon() throws Exception {
+        DataSource sansEchantillon = new JournalSqlLent(60_000, 0).envelopper(base);
+        try (Connection connexion = sansEchantillon.getConnection(); Statement statement = connexion.createStatement();
+             ResultSet resultat = statement.executeQuery("SELECT COUNT(*) FROM journal")) {
+            assertTrue(resultat.next());
+        }
+        assertTrue(evenements.list.isEmpty());
+
+        DataSource toutEchantillonne = new JournalSqlLent(60_000, 1).envelopper(base);
+        try (Connection connexion = toutEchantillonne.getConnection(); Statement statement = connexion.createStatement();
+             ResultSet resultat = statement.executeQuery("SELECT COUNT(*) FROM journal")) {
+            assertTrue(resultat.next());
+        }
+        assertEquals(1, evenements.list.size());
+        assertEquals(Level.INFO, evenements.list.get(0).getLevel());
+        String message = evenements.list.get(0).getFormattedMessage();
+        assertTrue(message.startsWith("SQL échantillonnée ") && message.endsWith(": SELECT COUNT(*) FROM journal [] (-)"),
+                message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.facturation.config;
+
+import com.facturation.model.Facture;
+import com.facturation.model.TauxTva;
+import com.facturation.service.FactureService;
+import com.facturation.service.RenduFactureService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie qu'une facture créée avant la colonne de version reste lisible et modifiable après la mise à niveau
+ */
+@SpringBootTest
+class MiseANiveauSchemaTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MiseANiveauSchema miseANiveauSchema;
+
+    @Autowired
+    private RenduFactureService renduFactureService;
+
+    @Autowired
+    private FactureService factureService;
+
+    @Test
+    void factureAnterieureALaVersionRenseigneeAuDemarrage() {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                "Ancien client", "ancien@version.test", "70000000000001", LocalDateTime.now());
+        Long clientId = jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, "70000000000001");
+        // Colonne telle qu'ajoutée par ddl-auto=update à une table existante : nullable, sans défaut
+        jdbcTemplate.execute("ALTER TABLE factures ALTER COLUMN version SET NULL");
+        jdbcTemplate.execute("ALTER TABLE factures ALTER COLUMN version DROP DEFAULT");
+        jdbcTemplate.update("INSERT INTO factures (date_facture, client_id, version) VALUES (?, ?, NULL)",
+                LocalDate.of(2023, 6, 1), clientId);
+        Long factureId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM factures WHERE client_id = ?", Long.class, clientId);
+
+        miseANiveauSchema.appliquer();
+
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT version FROM factures WHERE id = ?", Long.class, factureId));
+        assertEquals("NO", jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns "
+                + "WHERE table_name = 'FACTURES' AND column_name = 'VERSION'", String.class));
+        assertTrue(renduFactureService.rendreFacture(factureId).length > 0);
+        Facture modifiee = factureService.ajouterLigneFacture(factureId, "Ligne", 1, BigDecimal.TEN, TauxTva.VINGT);
+        assertEquals(1, modifiee.getLignes().size());
+        assertTrue(modifiee.getVersion() > 0);
+    }
+}
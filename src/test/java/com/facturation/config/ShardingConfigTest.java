@@ -0,0 +1,49 @@
+package com.facturation.config;
+
+import com.facturation.repository.RoutageShards;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie l'entrelacement des colonnes d'identité d'un shard : appliqué une seule fois,
+ * puis laissé en place aux démarrages suivants
+ */
+class ShardingConfigTest {
+
+    private static final List<String> TABLES = List.of(
+            "clients", "factures", "lignes_facture", "modeles_facture_recurrente", "outbox_changements");
+
+    @Test
+    void colonnesDejaEntrelaceesLaisseesEnPlace() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource("jdbc:h2:mem:entrelacement-shard1;DB_CLOSE_DELAY=-1"));
+        for (String table : TABLES) {
+            jdbcTemplate.execute("CREATE TABLE " + table + " (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "nom VARCHAR(32))");
+        }
+        RoutageShards routage = new RoutageShards(List.of("jdbc:shard1"), 101, 1);
+        try {
+            ShardingConfig config = new ShardingConfig(routage);
+
+            config.entrelacer(jdbcTemplate, 1, 2);
+            assertEquals(102, inserer(jdbcTemplate));
+            jdbcTemplate.update("DELETE FROM clients");
+
+            // Redémarrage : la colonne n'est pas reprise au MAX(id), qui ignore les ID déjà attribués
+            config.entrelacer(jdbcTemplate, 1, 2);
+            assertEquals(104, inserer(jdbcTemplate));
+        } finally {
+            routage.arreter();
+        }
+    }
+
+    private static long inserer(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO clients (nom) VALUES ('client')");
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM clients", Long.class);
+    }
+}
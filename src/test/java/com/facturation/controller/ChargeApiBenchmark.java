@@ -0,0 +1,434 @@
+package com.facturation.controller;
+
+import com.facturation.FacturationApplication;
+import com.facturation.model.TauxTva;
+import com.facturation.service.AnalytiqueService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge HTTP de l'API des clients et des factures, lancé manuellement (hors surefire)
+ * Démarre l'application sur H2 (profil charge), insère un jeu de données reproductible puis envoie un mélange
+ * de requêtes à débit constant, en boucle ouverte : chaque requête part à son heure prévue, que les précédentes
+ * aient répondu ou non. La latence est mesurée depuis cette heure prévue (correction de l'omission coordonnée) :
+ * un ralentissement du serveur pénalise aussi les requêtes qui auraient dû partir pendant celui-ci
+ * Le plan des requêtes ne dépend que des paramètres et de la graine : deux commits sont mesurés sur la même charge
+ * Paramètres (-Dcharge.xxx) : clients (1000), factures-par-client (10), lignes-par-facture (5), debit en requêtes/s
+ * (200), duree-s (30), echauffement-s (10, non mesuré), melange (MIXTE ou LECTURE), graine (42), timeout-s (10),
+ * rapport (fichier JSON écrit, target/charge/rapport-date.json par défaut), reference (rapport à comparer)
+ * Lancement : mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt puis
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) com.facturation.controller.ChargeApiBenchmark
+ */
+public class ChargeApiBenchmark {
+
+    private static final int TAILLE_LOT_INSERTION = 1000;
+    private static final String TOTAL = "TOTAL";
+
+    /**
+     * Requêtes envoyées ; les lectures et modifications visent à 80 % les 20 % premiers clients et factures
+     */
+    enum Operation {
+        LIRE_CLIENT, LIRE_FACTURE, FACTURES_CLIENT, CREER_CLIENT, MODIFIER_CLIENT, CREER_FACTURE, AJOUTER_LIGNE
+    }
+
+    /**
+     * Mélanges de requêtes, en poids relatifs par opération
+     */
+    enum Melange {
+        LECTURE(Map.of(Operation.LIRE_CLIENT, 40, Operation.LIRE_FACTURE, 40, Operation.FACTURES_CLIENT, 20)),
+        MIXTE(Map.of(Operation.LIRE_CLIENT, 25, Operation.LIRE_FACTURE, 30, Operation.FACTURES_CLIENT, 15,
+                Operation.CREER_CLIENT, 5, Operation.MODIFIER_CLIENT, 5, Operation.CREER_FACTURE, 10,
+                Operation.AJOUTER_LIGNE, 10));
+
+        // EnumMap : tirage dans l'ordre des opérations, identique d'une exécution à l'autre
+        private final Map<Operation, Integer> poids;
+        private final int total;
+
+        Melange(Map<Operation, Integer> poids) {
+            this.poids = new EnumMap<>(poids);
+            this.total = poids.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        Operation tirer(SplittableRandom random) {
+            int tirage = random.nextInt(total);
+            for (Map.Entry<Operation, Integer> entree : poids.entrySet()) {
+                tirage -= entree.getValue();
+                if (tirage < 0) {
+                    return entree.getKey();
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    record Parametres(int clients, int facturesParClient, int lignesParFacture, int debit, int dureeS,
+                      int echauffementS, Melange melange, int graine, int timeoutS, String rapport, String reference) {
+
+        static Parametres lire() {
+            return new Parametres(Integer.getInteger("charge.clients", 1000),
+                    Integer.getInteger("charge.factures-par-client", 10),
+                    Integer.getInteger("charge.lignes-par-facture", 5),
+                    Integer.getInteger("charge.debit", 200),
+                    Integer.getInteger("charge.duree-s", 30),
+                    Integer.getInteger("charge.echauffement-s", 10),
+                    Melange.valueOf(System.getProperty("charge.melange", "MIXTE")),
+                    Integer.getInteger("charge.graine", 42),
+                    Integer.getInteger("charge.timeout-s", 10),
+                    System.getProperty("charge.rapport"),
+                    System.getProperty("charge.reference"));
+        }
+
+        /**
+         * Paramètres qui déterminent la charge : deux rapports ne sont comparables que s'ils sont égaux
+         */
+        Map<String, Object> charge() {
+            Map<String, Object> charge = new LinkedHashMap<>();
+            charge.put("clients", clients);
+            charge.put("facturesParClient", facturesParClient);
+            charge.put("lignesParFacture", lignesParFacture);
+            charge.put("debit", debit);
+            charge.put("dureeS", dureeS);
+            charge.put("echauffementS", echauffementS);
+            charge.put("melange", melange.name());
+            charge.put("graine", graine);
+            return charge;
+        }
+    }
+
+    record JeuDeDonnees(long[] clientIds, long[] factureIds) {
+    }
+
+    record Requete(Operation operation, HttpRequest http) {
+    }
+
+    /**
+     * Mesures d'une opération (ou de l'ensemble) sur la période mesurée, latences en millisecondes
+     */
+    record Mesure(long requetes, long erreurs, double debitParSeconde, double p50Ms, double p90Ms, double p99Ms,
+                  double p999Ms, double maxMs) {
+    }
+
+    record Rapport(String date, Map<String, Object> charge, Map<String, Object> environnement,
+                   double retardEnvoiMaxMs, Map<String, Mesure> mesures) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Parametres parametres = Parametres.lire();
+        try (ConfigurableApplicationContext contexte = new SpringApplicationBuilder(FacturationApplication.class)
+                .profiles("charge")
+                .run(args)) {
+            int port = ((WebServerApplicationContext) contexte).getWebServer().getPort();
+            JeuDeDonnees donnees = inserer(contexte.getBean(JdbcTemplate.class), parametres);
+            // L'instantané analytique, construit au démarrage, reprend les données insérées
+            contexte.getBean(AnalytiqueService.class).reconstruire();
+
+            List<Requete> plan = planifier(parametres, donnees, "http://localhost:" + port);
+            Rapport rapport = executer(plan, parametres);
+            afficher(rapport);
+
+            ObjectMapper objectMapper = new ObjectMapper();
+            if (parametres.reference() != null) {
+                comparer(objectMapper.readValue(Path.of(parametres.reference()).toFile(), Rapport.class), rapport);
+            }
+            Path fichier = parametres.rapport() != null ? Path.of(parametres.rapport())
+                    : Path.of("target", "charge", "rapport-"
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+            ecrire(objectMapper, fichier, rapport);
+        }
+    }
+
+    /**
+     * Insère les clients, factures et lignes par lots JDBC (bien plus rapide que par l'API)
+     */
+    private static JeuDeDonnees inserer(JdbcTemplate jdbcTemplate, Parametres parametres) {
+        long debut = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(parametres.graine());
+        TauxTva[] taux = TauxTva.values();
+
+        Inserteur clients = new Inserteur(jdbcTemplate,
+                "INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < parametres.clients(); i++) {
+            clients.ajouter("Client " + i, email(i), siret(i), LocalDateTime.of(2023, 1, 1, 0, 0).plusMinutes(i));
+        }
+        clients.terminer();
+        long[] clientIds = ids(jdbcTemplate, "clients");
+
+        Inserteur factures = new Inserteur(jdbcTemplate,
+                "INSERT INTO factures (date_facture, client_id, version) VALUES (?, ?, 0)");
+        for (long clientId : clientIds) {
+            for (int i = 0; i < parametres.facturesParClient(); i++) {
+                factures.ajouter(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366)), clientId);
+            }
+        }
+        factures.terminer();
+        long[] factureIds = ids(jdbcTemplate, "factures");
+
+        Inserteur lignes = new Inserteur(jdbcTemplate, "INSERT INTO lignes_facture "
+                + "(facture_id, description, quantite, prix_unitaire_ht, taux_tva) VALUES (?, ?, ?, ?, ?)");
+        for (long factureId : factureIds) {
+            for (int i = 0; i < parametres.lignesParFacture(); i++) {
+                lignes.ajouter(factureId, "Prestation " + i, 1 + random.nextInt(10),
+                        BigDecimal.valueOf(100 + random.nextInt(100_000), 2), taux[random.nextInt(taux.length)].name());
+            }
+        }
+        lignes.terminer();
+
+        System.out.printf("Jeu de données : %d clients, %d factures, %d lignes insérés en %d ms%n",
+                clientIds.length, factureIds.length, (long) factureIds.length * parametres.lignesParFacture(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut));
+        return new JeuDeDonnees(clientIds, factureIds);
+    }
+
+    /**
+     * Construit toutes les requêtes avant la mesure : le générateur ne fait plus que les envoyer
+     */
+    private static List<Requete> planifier(Parametres parametres, JeuDeDonnees donnees, String base) {
+        SplittableRandom random = new SplittableRandom(parametres.graine()).split();
+        long[] clientIds = donnees.clientIds();
+        long[] factureIds = donnees.factureIds();
+        int nombre = parametres.debit() * (parametres.echauffementS() + parametres.dureeS());
+        int nouveauxClients = 0;
+        List<Requete> plan = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            Operation operation = parametres.melange().tirer(random);
+            HttpRequest.Builder requete = switch (operation) {
+                case LIRE_CLIENT -> HttpRequest.newBuilder(URI.create(
+                        base + "/api/clients/" + clientIds[choisir(random, clientIds.length)])).GET();
+                case LIRE_FACTURE -> HttpRequest.newBuilder(URI.create(
+                        base + "/api/factures/" + factureIds[choisir(random, factureIds.length)])).GET();
+                case FACTURES_CLIENT -> HttpRequest.newBuilder(URI.create(
+                        base + "/api/factures/client/" + clientIds[choisir(random, clientIds.length)])).GET();
+                case CREER_CLIENT -> {
+                    int indice = parametres.clients() + nouveauxClients++;
+                    yield json(base + "/api/clients", "POST", String.format(
+                            "{\"nom\":\"Client %d\",\"email\":\"%s\",\"siret\":\"%s\"}", indice, email(indice), siret(indice)));
+                }
+                case MODIFIER_CLIENT -> {
+                    int indice = choisir(random, clientIds.length);
+                    yield json(base + "/api/clients/" + clientIds[indice], "PUT", String.format(
+                            "{\"nom\":\"Client %d modifié\",\"email\":\"%s\",\"siret\":\"%s\"}", indice, email(indice), siret(indice)));
+                }
+                case CREER_FACTURE -> json(base + "/api/factures", "POST", String.format(
+                        "{\"clientId\":%d,\"dateFacture\":\"%s\"}", clientIds[choisir(random, clientIds.length)],
+                        LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366))));
+                case AJOUTER_LIGNE -> json(base + "/api/factures/" + factureIds[choisir(random, factureIds.length)]
+                        + "/lignes", "POST", String.format(
+                        "{\"description\":\"Ligne ajoutée\",\"quantite\":%d,\"prixUnitaireHt\":%s,\"tauxTva\":\"%s\"}",
+                        1 + random.nextInt(10), BigDecimal.valueOf(100 + random.nextInt(100_000), 2),
+                        TauxTva.values()[random.nextInt(TauxTva.values().length)].name()));
+            };
+            plan.add(new Requete(operation, requete
+                    .timeout(Duration.ofSeconds(parametres.timeoutS()))
+                    .header("Accept", "application/json")
+                    .build()));
+        }
+        return plan;
+    }
+
+    /**
+     * Envoie les requêtes à leur heure prévue et mesure chaque latence depuis cette heure
+     */
+    private static Rapport executer(List<Requete> plan, Parametres parametres) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(parametres.timeoutS()))
+                .build();
+        int nombre = plan.size();
+        long[] latences = new long[nombre];
+        long[] fins = new long[nombre];
+        boolean[] erreurs = new boolean[nombre];
+        CountDownLatch restantes = new CountDownLatch(nombre);
+        double intervalleNs = 1e9 / parametres.debit();
+
+        System.out.printf("Charge %s : %d requêtes/s pendant %d s (+ %d s d'échauffement)%n", parametres.melange(),
+                parametres.debit(), parametres.dureeS(), parametres.echauffementS());
+        long debut = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long retardMax = 0;
+        for (int i = 0; i < nombre; i++) {
+            long prevu = debut + Math.round(i * intervalleNs);
+            long attente;
+            while ((attente = prevu - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(attente);
+            }
+            retardMax = Math.max(retardMax, System.nanoTime() - prevu);
+            int indice = i;
+            client.sendAsync(plan.get(i).http(), HttpResponse.BodyHandlers.discarding()).whenComplete((reponse, erreur) -> {
+                fins[indice] = System.nanoTime();
+                latences[indice] = fins[indice] - prevu;
+                erreurs[indice] = erreur != null || reponse.statusCode() >= 400;
+                restantes.countDown();
+            });
+        }
+        if (!restantes.await(parametres.timeoutS() + 60L, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(restantes.getCount() + " requêtes sans réponse ni erreur");
+        }
+
+        // Seules les requêtes prévues après l'échauffement sont mesurées
+        int premiere = parametres.debit() * parametres.echauffementS();
+        long debutMesure = debut + Math.round(premiere * intervalleNs);
+        long finMesure = debutMesure;
+        Map<Operation, List<Integer>> parOperation = new EnumMap<>(Operation.class);
+        for (int i = premiere; i < nombre; i++) {
+            parOperation.computeIfAbsent(plan.get(i).operation(), operation -> new ArrayList<>()).add(i);
+            finMesure = Math.max(finMesure, fins[i]);
+        }
+        double dureeS = Math.max(1, finMesure - debutMesure) / 1e9;
+        Map<String, Mesure> mesures = new LinkedHashMap<>();
+        List<Integer> toutes = new ArrayList<>();
+        parOperation.values().forEach(toutes::addAll);
+        mesures.put(TOTAL, mesurer(toutes, latences, erreurs, dureeS));
+        parOperation.forEach((operation, indices) -> mesures.put(operation.name(), mesurer(indices, latences, erreurs, dureeS)));
+
+        Map<String, Object> environnement = new LinkedHashMap<>();
+        environnement.put("processeurs", Runtime.getRuntime().availableProcessors());
+        environnement.put("java", System.getProperty("java.version"));
+        return new Rapport(LocalDateTime.now().toString(), parametres.charge(), environnement,
+                arrondir(retardMax / 1e6), mesures);
+    }
+
+    private static Mesure mesurer(List<Integer> indices, long[] latences, boolean[] erreurs, double dureeS) {
+        long[] triees = new long[indices.size()];
+        long nombreErreurs = 0;
+        for (int i = 0; i < triees.length; i++) {
+            triees[i] = latences[indices.get(i)];
+            nombreErreurs += erreurs[indices.get(i)] ? 1 : 0;
+        }
+        Arrays.sort(triees);
+        return new Mesure(triees.length, nombreErreurs, arrondir((triees.length - nombreErreurs) / dureeS),
+                centile(triees, 0.50), centile(triees, 0.90), centile(triees, 0.99), centile(triees, 0.999),
+                centile(triees, 1.0));
+    }
+
+    /**
+     * Centile d'une série triée (plus petite valeur dont la part des valeurs inférieures ou égales atteint q), en ms
+     */
+    private static double centile(long[] triees, double q) {
+        if (triees.length == 0) {
+            return 0;
+        }
+        int rang = (int) Math.ceil(q * triees.length) - 1;
+        return arrondir(triees[Math.max(0, rang)] / 1e6);
+    }
+
+    private static void afficher(Rapport rapport) {
+        System.out.printf("%n%-16s %9s %8s %10s %10s %10s %10s %10s %10s%n",
+                "Opération", "requêtes", "erreurs", "débit/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        rapport.mesures().forEach((operation, m) -> System.out.printf("%-16s %9d %8d %10.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                operation, m.requetes(), m.erreurs(), m.debitParSeconde(), m.p50Ms(), m.p90Ms(), m.p99Ms(), m.p999Ms(), m.maxMs()));
+        // Un retard d'envoi important signale un générateur saturé : le débit demandé n'a pas été tenu
+        System.out.printf("Retard d'envoi maximal du générateur : %.3f ms%n", rapport.retardEnvoiMaxMs());
+    }
+
+    private static void comparer(Rapport reference, Rapport rapport) {
+        System.out.printf("%nComparaison avec la référence du %s%n", reference.date());
+        if (!reference.charge().equals(rapport.charge())) {
+            System.out.printf("Attention : charge différente de la référence %s%n", reference.charge());
+        }
+        rapport.mesures().forEach((operation, m) -> {
+            Mesure r = reference.mesures().get(operation);
+            if (r != null) {
+                System.out.printf("%-16s débit %s  p50 %s  p99 %s  p99.9 %s%n", operation,
+                        ecart(r.debitParSeconde(), m.debitParSeconde()), ecart(r.p50Ms(), m.p50Ms()),
+                        ecart(r.p99Ms(), m.p99Ms()), ecart(r.p999Ms(), m.p999Ms()));
+            }
+        });
+    }
+
+    private static String ecart(double reference, double valeur) {
+        return reference == 0 ? String.format("%.3f", valeur)
+                : String.format("%.3f → %.3f (%+.1f %%)", reference, valeur, (valeur - reference) * 100 / reference);
+    }
+
+    private static void ecrire(ObjectMapper objectMapper, Path fichier, Rapport rapport) throws IOException {
+        if (fichier.getParent() != null) {
+            Files.createDirectories(fichier.getParent());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(fichier.toFile(), rapport);
+        System.out.printf("Rapport écrit dans %s%n", fichier.toAbsolutePath());
+    }
+
+    /**
+     * Indice d'une entité : 80 % des tirages portent sur les 20 % premières (clients et factures les plus actifs)
+     */
+    private static int choisir(SplittableRandom random, int nombre) {
+        return random.nextInt(5) < 4 ? random.nextInt(Math.max(1, nombre / 5)) : random.nextInt(nombre);
+    }
+
+    private static HttpRequest.Builder json(String url, String methode, String corps) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .method(methode, HttpRequest.BodyPublishers.ofString(corps));
+    }
+
+    private static String email(int indice) {
+        return "client" + indice + "@charge.test";
+    }
+
+    private static String siret(int indice) {
+        return String.format("%014d", indice);
+    }
+
+    private static long[] ids(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static double arrondir(double valeur) {
+        return Math.round(valeur * 1000) / 1000.0;
+    }
+
+    /**
+     * Insertion par lots JDBC de taille bornée
+     */
+    private static final class Inserteur {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String sql;
+        private final List<Object[]> lot = new ArrayList<>(TAILLE_LOT_INSERTION);
+
+        Inserteur(JdbcTemplate jdbcTemplate, String sql) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.sql = sql;
+        }
+
+        void ajouter(Object... valeurs) {
+            lot.add(valeurs);
+            if (lot.size() == TAILLE_LOT_INSERTION) {
+                terminer();
+            }
+        }
+
+        void terminer() {
+            if (!lot.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, lot);
+                lot.clear();
+            }
+        }
+    }
+}
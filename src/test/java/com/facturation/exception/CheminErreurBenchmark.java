@@ -0,0 +1,91 @@
+package com.facturation.exception;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH du coût d'une réponse 404/409 : ancien chemin (IllegalArgumentException avec pile d'appels,
+ * classification par le message, HashMap) contre erreurs typées sans pile traduites en ProblemDetail
+ * La profondeur simule la pile d'appels d'une requête traversant filtres, proxies et services
+ * Lancement : mvn test-compile puis exécuter main() depuis l'IDE (ou java -cp avec le classpath de test)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheminErreurBenchmark {
+
+    @Param({"20", "150"})
+    public int profondeur;
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+    private long id = 42;
+
+    @Benchmark
+    public ResponseEntity<?> ancienNonTrouve() {
+        try {
+            return appelerAncien(profondeur);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage().contains("non trouvé")) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", e.getMessage());
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+            }
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> typeNonTrouve() {
+        try {
+            return appelerType(profondeur);
+        } catch (DomainException e) {
+            return handler.handleDomainException(e);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> typeConflitPrealloue() {
+        try {
+            return appelerConflit(profondeur);
+        } catch (DomainException e) {
+            return handler.handleDomainException(e);
+        }
+    }
+
+    private ResponseEntity<ProblemDetail> appelerAncien(int n) {
+        if (n == 0) {
+            throw new IllegalArgumentException("Client non trouvé avec l'ID: " + id);
+        }
+        return appelerAncien(n - 1);
+    }
+
+    private ResponseEntity<ProblemDetail> appelerType(int n) {
+        if (n == 0) {
+            throw RessourceNonTrouveeException.client(id);
+        }
+        return appelerType(n - 1);
+    }
+
+    private ResponseEntity<ProblemDetail> appelerConflit(int n) {
+        if (n == 0) {
+            throw ConflitException.EMAIL_CLIENT;
+        }
+        return appelerConflit(n - 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CheminErreurBenchmark.class.getSimpleName()).build()).run();
+    }
+}
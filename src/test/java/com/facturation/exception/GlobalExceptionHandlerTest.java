@@ -0,0 +1,129 @@
+package com.facturation.exception;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.sql.SQLException;
+
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Vérifie la traduction des erreurs en réponses problem+json : statut porté par le type des erreurs métier,
+ * messages de validation par champ dans la propriété "erreurs" et 409 réservé aux violations d'unicité
+ */
+@SpringBootTest
+class GlobalExceptionHandlerTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private GlobalExceptionHandler globalExceptionHandler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void initialiser() {
+        // Contexte partagé avec les autres tests : une seule base H2 en mémoire
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    void ressourceInexistante404() throws Exception {
+        mockMvc.perform(get("/api/factures/999999999"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.detail").value("Facture non trouvée avec l'ID: 999999999"));
+        mockMvc.perform(get("/api/factures/999999999/export"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.detail").value("Facture non trouvée avec l'ID: 999999999"));
+        mockMvc.perform(get("/api/clients/999999999"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.detail").value("Client non trouvé avec l'ID: 999999999"));
+    }
+
+    @Test
+    void doublon409() throws Exception {
+        mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Doublon", "doublon@erreurs.test", "77000000000001")))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Doublon", "doublon@erreurs.test", "77000000000002")))
+                .andExpect(status().isConflict())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.status").value(409))
+                .andExpect(jsonPath("$.detail").value("Un client avec cet email existe déjà"));
+        mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Doublon", "autre@erreurs.test", "77000000000001")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value("Un client avec ce SIRET existe déjà"));
+    }
+
+    @Test
+    void violationUniciteEnBase409() throws Exception {
+        String reponse = mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Supprimé", "supprime@erreurs.test", "77000000000003")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(delete("/api/clients/{id}", JsonPath.<Integer>read(reponse, "$.id"))).andExpect(status().isNoContent());
+
+        try {
+            // Client supprimé logiquement : ignoré par les vérifications métier, mais son email est toujours en base
+            mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                            .content(client("Supprimé", "supprime@erreurs.test", "77000000000004")))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.detail").value("Conflit avec des données existantes"));
+        } finally {
+            // Base partagée avec le test de la purge, qui compte les clients supprimés
+            jdbcTemplate.update("DELETE FROM clients WHERE siret = ?", "77000000000003");
+        }
+    }
+
+    @Test
+    void autresViolationsNonTraduitesEnConflit() {
+        DataIntegrityViolationException cleEtrangere = new DataIntegrityViolationException("Clé étrangère",
+                new SQLException("Référence introuvable", "23503"));
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+                globalExceptionHandler.handleDataIntegrityViolation(cleEtrangere).getStatusCode());
+    }
+
+    @Test
+    void erreursDeValidationParChamp() throws Exception {
+        mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("", "invalide@erreurs.test", "123")))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.erreurs", aMapWithSize(2)))
+                .andExpect(jsonPath("$.erreurs.nom").value("Le nom du client est obligatoire"))
+                .andExpect(jsonPath("$.erreurs.siret").value("Le SIRET doit contenir exactement 14 chiffres"));
+    }
+
+    private static String client(String nom, String email, String siret) {
+        return "{\"nom\":\"" + nom + "\",\"email\":\"" + email + "\",\"siret\":\"" + siret + "\"}";
+    }
+}
@@ -0,0 +1,81 @@
+package com.facturation.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie la reprise ou le remplacement de l'identifiant de corrélation reçu et la journalisation des requêtes lentes
+ */
+class CorrelationIdFilterTest {
+
+    private final CorrelationIdFilter filtre = new CorrelationIdFilter(false, 500, 0);
+
+    @Test
+    void identifiantValideRepris() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/factures");
+        request.addHeader(CorrelationIdFilter.CORRELATION_ID_HEADER, "client-42.a_b");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> dansLaRequete = new AtomicReference<>();
+
+        filtre.doFilter(request, response, (req, res) -> dansLaRequete.set(MDC.get(CorrelationIdFilter.MDC_KEY)));
+
+        assertEquals("client-42.a_b", dansLaRequete.get());
+        assertEquals("client-42.a_b", response.getHeader(CorrelationIdFilter.CORRELATION_ID_HEADER));
+        assertNull(MDC.get(CorrelationIdFilter.MDC_KEY));
+    }
+
+    @Test
+    void identifiantInvalideRemplace() throws Exception {
+        for (String recu : new String[]{"id\r\nfausse ligne de log", "x".repeat(65), ""}) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/factures");
+            request.addHeader(CorrelationIdFilter.CORRELATION_ID_HEADER, recu);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            AtomicReference<String> dansLaRequete = new AtomicReference<>();
+
+            filtre.doFilter(request, response, (req, res) -> dansLaRequete.set(MDC.get(CorrelationIdFilter.MDC_KEY)));
+
+            String genere = response.getHeader(CorrelationIdFilter.CORRELATION_ID_HEADER);
+            assertNotEquals(recu, genere);
+            assertTrue(genere.matches("[0-9a-f]{1,16}"), genere);
+            assertEquals(genere, dansLaRequete.get());
+        }
+    }
+
+    @Test
+    void requeteLenteJournalisee() throws Exception {
+        Logger logger = (Logger) LoggerFactory.getLogger("facturation.slow-log.requests");
+        ListAppender<ILoggingEvent> evenements = new ListAppender<>();
+        evenements.start();
+        logger.addAppender(evenements);
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/factures");
+            request.setQueryString("brouillon=true");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            new CorrelationIdFilter(true, 0, 0).doFilter(request, response, (req, res) -> response.setStatus(201));
+            new CorrelationIdFilter(true, 60_000, 0).doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            });
+        } finally {
+            logger.detachAppender(evenements);
+        }
+
+        assertEquals(1, evenements.list.size());
+        assertEquals(Level.WARN, evenements.list.get(0).getLevel());
+        String message = evenements.list.get(0).getFormattedMessage();
+        assertTrue(message.startsWith("Requête lente ") && message.endsWith(": POST /api/factures?brouillon=true -> 201 (-)"),
+                message);
+    }
+}
@@ -0,0 +1,220 @@
+package com.facturation.filter;
+
+import com.facturation.repository.IdempotencyRecordRepository;
+import com.facturation.service.IdempotencyService;
+import com.facturation.service.IdempotencyService.ReponseMemorisee;
+import com.facturation.service.IdempotencyService.Reservation;
+import com.facturation.service.IdempotencyService.Statut;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Vérifie le rejeu des requêtes POST par clé d'idempotence et la réservation des clés en base,
+ * partagée entre instances
+ */
+@SpringBootTest
+class IdempotencyFilterTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void initialiser() {
+        // Contexte partagé avec les autres tests : une seule base H2 en mémoire
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).addFilters(idempotencyFilter).build();
+    }
+
+    @Test
+    void reponseRejoueeSansReexecution() throws Exception {
+        String corps = client("Rejeu", "rejeu@idempotence.test", "71000000000001");
+        MvcResult premiere = mockMvc.perform(post("/api/clients").header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "rejeu")
+                        .contentType(MediaType.APPLICATION_JSON).content(corps))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAY_HEADER))
+                .andReturn();
+
+        MvcResult rejouee = mockMvc.perform(post("/api/clients").header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "rejeu")
+                        .contentType(MediaType.APPLICATION_JSON).content(corps))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAY_HEADER, "true"))
+                .andReturn();
+
+        assertArrayEquals(premiere.getResponse().getContentAsByteArray(), rejouee.getResponse().getContentAsByteArray());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM clients WHERE siret = ?", Integer.class, "71000000000001"));
+    }
+
+    @Test
+    void cleReutiliseeAvecUnAutreCorpsRefusee() throws Exception {
+        mockMvc.perform(post("/api/clients").header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "corps-different")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Premier", "premier@idempotence.test", "71000000000002")))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/clients").header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "corps-different")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Second", "second@idempotence.test", "71000000000003")))
+                .andExpect(status().isUnprocessableEntity());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM clients WHERE siret = ?", Integer.class, "71000000000003"));
+    }
+
+    @Test
+    void conflitNonMemorisePourUneNouvelleTentative() throws Exception {
+        mockMvc.perform(post("/api/clients").contentType(MediaType.APPLICATION_JSON)
+                        .content(client("Existant", "existant@idempotence.test", "71000000000004")))
+                .andExpect(status().isCreated());
+        String doublon = client("Doublon", "existant@idempotence.test", "71000000000005");
+
+        for (int tentative = 0; tentative < 2; tentative++) {
+            mockMvc.perform(post("/api/clients").header(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "conflit")
+                            .contentType(MediaType.APPLICATION_JSON).content(doublon))
+                    .andExpect(status().isConflict())
+                    .andExpect(header().doesNotExist(IdempotencyFilter.REPLAY_HEADER));
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys WHERE cle = ?",
+                Integer.class, "conflit /api/clients"));
+    }
+
+    @Test
+    void reservationPartageeEntreInstances() {
+        // Deux services sur la même table, comme deux instances de l'application
+        IdempotencyService instanceA = new IdempotencyService(idempotencyRecordRepository, 10, 24, 120_000);
+        IdempotencyService instanceB = new IdempotencyService(idempotencyRecordRepository, 10, 24, 120_000);
+        String cle = "instances /api/factures";
+
+        Reservation proprietaire = instanceA.reserver(cle, "empreinte");
+        assertEquals(Statut.RESERVEE, proprietaire.statut());
+        Reservation doublon = instanceB.reserver(cle, "empreinte");
+        assertEquals(Statut.EN_COURS, doublon.statut());
+        assertEquals("empreinte", doublon.empreinte());
+
+        ReponseMemorisee reponse = new ReponseMemorisee(201, "application/json", "{}".getBytes(StandardCharsets.UTF_8));
+        instanceA.terminer(cle, proprietaire.dateReservation(), "empreinte", reponse);
+        Reservation rejeu = instanceB.reserver(cle, "empreinte");
+        assertEquals(Statut.TERMINEE, rejeu.statut());
+        assertEquals(201, rejeu.reponse().statut());
+    }
+
+    @Test
+    void reservationAbandonneeOuExpireeReprise() {
+        String cle = "reprise /api/factures";
+        IdempotencyService instance = new IdempotencyService(idempotencyRecordRepository, 10, 24, 120_000);
+        Reservation abandonnee = instance.reserver(cle, "empreinte");
+        instance.abandonner(cle, abandonnee.dateReservation());
+        assertEquals(Statut.RESERVEE, instance.reserver(cle, "empreinte").statut());
+
+        // Requête d'origine interrompue sans libérer la clé : reprise après la durée maximale
+        IdempotencyService sansAttente = new IdempotencyService(idempotencyRecordRepository, 10, 24, 0);
+        Reservation reprise = sansAttente.reserver(cle, "empreinte");
+        assertEquals(Statut.RESERVEE, reprise.statut());
+
+        // Réponse en cache expirée : la clé est de nouveau réservable
+        IdempotencyService sansConservation = new IdempotencyService(idempotencyRecordRepository, 10, 0, 120_000);
+        sansConservation.terminer(cle, reprise.dateReservation(), "empreinte", new ReponseMemorisee(201, null, null));
+        assertEquals(Statut.RESERVEE, sansConservation.reserver(cle, "empreinte").statut());
+    }
+
+    @Test
+    void corpsRelisibleParUnLecteurNonBloquant() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/lecture-non-bloquante");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "non-bloquante");
+        request.setContent("{\"corps\":\"relu\"}".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream lu = new ByteArrayOutputStream();
+        List<String> evenements = new ArrayList<>();
+
+        idempotencyFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            ServletInputStream flux = req.getInputStream();
+            flux.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    evenements.add("donnees");
+                    while (flux.isReady() && !flux.isFinished()) {
+                        lu.write(flux.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    evenements.add("fin");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    evenements.add("erreur");
+                }
+            });
+            ((HttpServletResponse) res).setStatus(201);
+        });
+
+        assertEquals(List.of("donnees", "fin"), evenements);
+        assertEquals("{\"corps\":\"relu\"}", lu.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void erreurDuLecteurNonBloquantTransmise() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/lecture-non-bloquante");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "non-bloquante-erreur");
+        request.setContent(new byte[]{1});
+        List<Throwable> erreurs = new ArrayList<>();
+
+        idempotencyFilter.doFilter(request, new MockHttpServletResponse(), (req, res) ->
+                req.getInputStream().setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() throws IOException {
+                        throw new IOException("lecture impossible");
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                        erreurs.add(new IllegalStateException("fin signalée après une erreur"));
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        erreurs.add(t);
+                    }
+                }));
+
+        assertEquals(1, erreurs.size());
+        assertEquals("lecture impossible", erreurs.get(0).getMessage());
+    }
+
+    private static String client(String nom, String email, String siret) {
+        return "{\"nom\":\"" + nom + "\",\"email\":\"" + email + "\",\"siret\":\"" + siret + "\"}";
+    }
+}
@@ -0,0 +1,74 @@
+package com.facturation.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Vérifie la résolution des taux datés autour des dates d'effet de chaque catégorie
+ */
+class BaremeTvaTest {
+
+    private static final LocalDate HAUSSE = LocalDate.of(2024, 1, 1);
+    private static final LocalDate BAISSE = LocalDate.of(2025, 7, 1);
+
+    private final BaremeTva bareme = BaremeTva.construire(List.of(
+            periode(TauxTva.VINGT, "19.6", BAISSE),
+            periode(TauxTva.VINGT, "21.0", HAUSSE)));
+
+    @Test
+    void avantLaPremiereDateValeurDeLEnumeration() {
+        assertEquals(new BigDecimal("20.0"), bareme.tauxPourcentage(TauxTva.VINGT, HAUSSE.minusDays(1)));
+        assertEquals(new BigDecimal("0.2"), bareme.tauxDecimal(TauxTva.VINGT, LocalDate.MIN));
+    }
+
+    @Test
+    void leJourDeTransitionAppliqueLaNouvellePeriode() {
+        assertEquals(new BigDecimal("21.0"), bareme.tauxPourcentage(TauxTva.VINGT, HAUSSE));
+        assertEquals(new BigDecimal("21.0"), bareme.tauxPourcentage(TauxTva.VINGT, BAISSE.minusDays(1)));
+        assertEquals(new BigDecimal("19.6"), bareme.tauxPourcentage(TauxTva.VINGT, BAISSE));
+    }
+
+    @Test
+    void apresLaDerniereDateEtSansDate() {
+        assertEquals(new BigDecimal("19.6"), bareme.tauxPourcentage(TauxTva.VINGT, LocalDate.of(2100, 1, 1)));
+        assertEquals(new BigDecimal("19.6"), bareme.tauxPourcentage(TauxTva.VINGT, null));
+        // Catégorie sans période : valeur de l'énumération quelle que soit la date
+        assertEquals(new BigDecimal("10.0"), bareme.tauxPourcentage(TauxTva.DIX, null));
+        assertEquals(new BigDecimal("10.0"), bareme.tauxPourcentage(TauxTva.DIX, BAISSE));
+    }
+
+    @Test
+    void datesEloigneesSansTableauParJour() {
+        BaremeTva extremes = BaremeTva.construire(List.of(
+                periode(TauxTva.CINQ_CINQ, "5.0", LocalDate.of(1, 1, 1)),
+                periode(TauxTva.CINQ_CINQ, "7.0", LocalDate.MAX)));
+
+        assertEquals(new BigDecimal("5.5"), extremes.tauxPourcentage(TauxTva.CINQ_CINQ, LocalDate.of(0, 12, 31)));
+        assertEquals(new BigDecimal("5.0"), extremes.tauxPourcentage(TauxTva.CINQ_CINQ, LocalDate.of(9999, 12, 31)));
+        assertEquals(new BigDecimal("7.0"), extremes.tauxPourcentage(TauxTva.CINQ_CINQ, LocalDate.MAX));
+    }
+
+    @Test
+    void egaliteIndependanteDeLOrdreEtDeLEchelle() {
+        BaremeTva memesTaux = BaremeTva.construire(List.of(
+                periode(TauxTva.VINGT, "21.00", HAUSSE),
+                periode(TauxTva.VINGT, "19.60", BAISSE)));
+
+        assertEquals(bareme, memesTaux);
+        assertEquals(bareme.hashCode(), memesTaux.hashCode());
+        assertNotEquals(bareme, BaremeTva.construire(List.of(periode(TauxTva.VINGT, "21.0", HAUSSE))));
+        assertNotEquals(bareme, BaremeTva.construire(List.of(
+                periode(TauxTva.VINGT, "19.6", BAISSE),
+                periode(TauxTva.VINGT, "21.0", HAUSSE.plusDays(1)))));
+    }
+
+    private static TauxTvaPeriode periode(TauxTva categorie, String taux, LocalDate dateEffet) {
+        return new TauxTvaPeriode(null, categorie, new BigDecimal(taux), dateEffet);
+    }
+}
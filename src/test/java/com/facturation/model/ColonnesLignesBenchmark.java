@@ -0,0 +1,76 @@
+package com.facturation.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH des agrégats analytiques sur l'instantané en colonnes :
+ * chiffre d'affaires par client et par semaine, répartition par taux de TVA, total d'un client
+ * 50M lignes occupent environ 1,4 Go : lancer avec -p lignes=50000000 (tas de 3 Go dans le fork)
+ * Lancement : mvn test-compile puis exécuter main() depuis l'IDE (ou java -cp avec le classpath de test)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ColonnesLignesBenchmark {
+
+    @Param({"10000000"})
+    public int lignes;
+
+    private ColonnesLignes colonnes;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void charger() {
+        SplittableRandom random = new SplittableRandom(42);
+        TauxTva[] taux = TauxTva.values();
+        int premierJour = (int) LocalDate.of(2015, 1, 1).toEpochDay();
+        colonnes = new ColonnesLignes();
+        // 10 lignes par facture, 100 000 clients, 10 ans de factures
+        for (int i = 0; i < lignes; i++) {
+            long factureId = i / 10 + 1;
+            long ht = 100 + random.nextInt(1_000_000);
+            colonnes.ajouter(factureId, (int) (factureId % 100_000) + 1, premierJour + (int) (factureId % 3650),
+                    taux[random.nextInt(taux.length)], ht, ht / 5);
+        }
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void arreter() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int parClientEtSemaine() {
+        return colonnes.agreger(EnumSet.of(DimensionAnalytique.CLIENT, DimensionAnalytique.SEMAINE),
+                null, null, null, null, pool).getNombreGroupes();
+    }
+
+    @Benchmark
+    public int parTauxEtMois() {
+        return colonnes.agreger(EnumSet.of(DimensionAnalytique.TAUX_TVA, DimensionAnalytique.MOIS),
+                null, null, null, null, pool).getNombreGroupes();
+    }
+
+    @Benchmark
+    public int totalClientSurUnAn() {
+        return colonnes.agreger(EnumSet.noneOf(DimensionAnalytique.class),
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31), 4242, null, pool).getNombreGroupes();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ColonnesLignesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.facturation.model;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie que le parcours parallèle en colonnes donne les mêmes agrégats qu'un calcul direct,
+ * sur plusieurs segments et après suppressions
+ */
+class ColonnesLignesTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final LocalDate DEBUT = LocalDate.of(2023, 11, 20);
+
+    private record Ligne(long factureId, int clientId, int jour, TauxTva taux, long ht, long tva) {
+    }
+
+    @AfterAll
+    static void arreter() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void agregatsIdentiquesAuCalculDirect() {
+        List<Ligne> lignes = genererLignes(3 * ColonnesLignes.TAILLE_SEGMENT + 123);
+        ColonnesLignes colonnes = charger(lignes);
+
+        assertEquals(attendu(lignes, DimensionAnalytique.MOIS, null),
+                obtenu(colonnes, EnumSet.of(DimensionAnalytique.CLIENT, DimensionAnalytique.MOIS), null, null));
+        assertEquals(attendu(lignes, DimensionAnalytique.SEMAINE, null),
+                obtenu(colonnes, EnumSet.of(DimensionAnalytique.CLIENT, DimensionAnalytique.SEMAINE), null, null));
+        LocalDate du = DEBUT.plusDays(40);
+        LocalDate au = DEBUT.plusDays(200);
+        assertEquals(attendu(lignes, DimensionAnalytique.ANNEE, new LocalDate[]{du, au}),
+                obtenu(colonnes, EnumSet.of(DimensionAnalytique.CLIENT, DimensionAnalytique.ANNEE), du, au));
+    }
+
+    @Test
+    void suppressionsExclues() {
+        List<Ligne> lignes = genererLignes(2 * ColonnesLignes.TAILLE_SEGMENT);
+        ColonnesLignes colonnes = charger(lignes);
+
+        colonnes.supprimerFacture(5);
+        colonnes.supprimerClient(3);
+        List<Ligne> restantes = lignes.stream().filter(l -> l.factureId() != 5 && l.clientId() != 3).toList();
+
+        assertEquals(restantes.size(), colonnes.getNombreLignes());
+        assertEquals(attendu(restantes, DimensionAnalytique.JOUR, null),
+                obtenu(colonnes, EnumSet.of(DimensionAnalytique.CLIENT, DimensionAnalytique.JOUR), null, null));
+    }
+
+    private static List<Ligne> genererLignes(int nombre) {
+        Random random = new Random(42);
+        TauxTva[] taux = TauxTva.values();
+        List<Ligne> lignes = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            long factureId = 1 + random.nextInt(5000);
+            long ht = 1 + random.nextInt(100_000);
+            lignes.add(new Ligne(factureId, (int) (factureId % 50), (int) DEBUT.toEpochDay() + (int) (factureId % 400),
+                    taux[random.nextInt(taux.length)], ht, ht / 5));
+        }
+        return lignes;
+    }
+
+    private static ColonnesLignes charger(List<Ligne> lignes) {
+        ColonnesLignes colonnes = new ColonnesLignes();
+        for (Ligne l : lignes) {
+            colonnes.ajouter(l.factureId(), l.clientId(), l.jour(), l.taux(), l.ht(), l.tva());
+        }
+        return colonnes;
+    }
+
+    private static Map<String, List<Long>> obtenu(ColonnesLignes colonnes, EnumSet<DimensionAnalytique> dimensions,
+                                                  LocalDate du, LocalDate au) {
+        Map<String, List<Long>> groupes = new HashMap<>();
+        colonnes.agreger(dimensions, du, au, null, null, POOL).parcourir((client, periode, taux, ht, tva, lignes) ->
+                groupes.put(client + "/" + periode, List.of(ht, tva, lignes)));
+        return groupes;
+    }
+
+    private static Map<String, List<Long>> attendu(List<Ligne> lignes, DimensionAnalytique dimension, LocalDate[] bornes) {
+        Map<String, long[]> sommes = new HashMap<>();
+        for (Ligne l : lignes) {
+            LocalDate date = LocalDate.ofEpochDay(l.jour());
+            if (bornes != null && (date.isBefore(bornes[0]) || date.isAfter(bornes[1]))) {
+                continue;
+            }
+            LocalDate periode = switch (dimension) {
+                case SEMAINE -> date.with(DayOfWeek.MONDAY);
+                case MOIS -> date.withDayOfMonth(1);
+                case ANNEE -> date.withDayOfYear(1);
+                default -> date;
+            };
+            long[] somme = sommes.computeIfAbsent((long) l.clientId() + "/" + periode, k -> new long[3]);
+            somme[0] += l.ht();
+            somme[1] += l.tva();
+            somme[2]++;
+        }
+        Map<String, List<Long>> groupes = new HashMap<>();
+        sommes.forEach((cle, somme) -> groupes.put(cle, List.of(somme[0], somme[1], somme[2])));
+        return groupes;
+    }
+}
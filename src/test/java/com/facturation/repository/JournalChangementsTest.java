@@ -0,0 +1,60 @@
+package com.facturation.repository;
+
+import com.facturation.repository.JournalChangements.Enregistrement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Vérifie l'ajout, la lecture par offset et la réouverture du journal des changements
+ */
+class JournalChangementsTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void enregistrementsLusDansLOrdreAuDelaDesRegions() throws IOException {
+        Path chemin = dossier.resolve("journal.log");
+        long[] offsets = new long[10];
+        try (JournalChangements journal = new JournalChangements(chemin, 64)) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = journal.ajouter(("changement-" + i + "-" + "x".repeat(i * 4)).getBytes(StandardCharsets.UTF_8));
+            }
+            List<Enregistrement> tous = journal.lire(0, 100);
+            assertEquals(offsets.length, tous.size());
+            for (int i = 0; i < offsets.length; i++) {
+                assertEquals(offsets[i], tous.get(i).offset());
+                assertEquals("changement-" + i + "-" + "x".repeat(i * 4), new String(tous.get(i).donnees(), StandardCharsets.UTF_8));
+            }
+            // La position suivante d'un enregistrement en fin de région reprend à la région suivante
+            List<Enregistrement> suite = journal.lire(tous.get(3).suivant(), 2);
+            assertEquals(List.of(offsets[4], offsets[5]), suite.stream().map(Enregistrement::offset).toList());
+            assertEquals(journal.getFin(), tous.get(offsets.length - 1).suivant());
+        }
+
+        try (JournalChangements journal = new JournalChangements(chemin, 64)) {
+            assertEquals(offsets.length, journal.lire(0, 100).size());
+            long offset = journal.ajouter("apres-reouverture".getBytes(StandardCharsets.UTF_8));
+            assertEquals("apres-reouverture", new String(journal.lire(offset, 1).get(0).donnees(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void offsetsInvalidesRefuses() throws IOException {
+        try (JournalChangements journal = new JournalChangements(dossier.resolve("journal.log"), 64)) {
+            journal.ajouter("premier".getBytes(StandardCharsets.UTF_8));
+            assertEquals(0, journal.lire(journal.getFin(), 10).size());
+            assertThrows(IllegalArgumentException.class, () -> journal.lire(3, 10));
+            assertThrows(IllegalArgumentException.class, () -> journal.lire(journal.getFin() + 1, 10));
+            assertThrows(IllegalArgumentException.class, () -> journal.ajouter(new byte[60]));
+        }
+    }
+}
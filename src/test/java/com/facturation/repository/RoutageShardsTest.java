@@ -0,0 +1,104 @@
+package com.facturation.repository;
+
+import com.facturation.config.DataSourceShardee;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Vérifie le calcul du shard d'une entité, la fusion des résultats des shards
+ * et l'enregistrement du premier ID entrelacé au partitionnement d'une base existante
+ */
+class RoutageShardsTest {
+
+    @Test
+    void shardDeduitDesIdEntrelaces() {
+        RoutageShards routage = new RoutageShards(List.of("jdbc:shard1", " ", "jdbc:shard2"), 101, 2);
+        try {
+            assertEquals(3, routage.getNombreShards());
+            // Données antérieures au partitionnement : shard principal
+            assertEquals(0, routage.shardDe(100L));
+            assertEquals(0, routage.shardDe(101L));
+            assertEquals(1, routage.shardDe(102L));
+            assertEquals(2, routage.shardDe(103L));
+            assertEquals(0, routage.shardDe(104L));
+            assertEquals(0, routage.shardDe(null));
+            assertEquals(routage.shardNouveauClient("12345678901234"), routage.shardNouveauClient("12345678901234"));
+        } finally {
+            routage.arreter();
+        }
+    }
+
+    @Test
+    void fusionTrieeEtBornee() {
+        RoutageShards routage = new RoutageShards(List.of("jdbc:shard1", "jdbc:shard2"), 1, 3);
+        try {
+            List<List<Long>> parShard = List.of(List.of(1L, 4L, 7L), List.of(2L, 5L), List.of(3L, 6L, 9L));
+            // Chaque shard voit son propre numéro comme shard courant
+            assertEquals(List.of(0, 1, 2), routage.surChaqueShard(shard -> RoutageShards.shardCourant()));
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L),
+                    routage.fusionner(parShard::get, Comparator.naturalOrder(), 5));
+            assertEquals(List.of(9L, 5L, 4L),
+                    routage.chargerParIds(List.of(4L, 9L, 5L), ids -> ids, Comparator.reverseOrder()));
+            assertNull(RoutageShards.shardCourant());
+        } finally {
+            routage.arreter();
+        }
+    }
+
+    @Test
+    void premierIdEnregistreAuDelaDesIdExistants() {
+        List<DataSource> bases = List.of(base("routage-principal"), base("routage-shard1"));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DataSourceShardee(bases));
+        List<String> tables = List.of("clients", "factures");
+        // Base existante avant le partitionnement
+        JdbcTemplate principale = new JdbcTemplate(bases.get(0));
+        principale.update("INSERT INTO clients (id) VALUES (41)");
+        principale.update("INSERT INTO factures (id) VALUES (57)");
+
+        RoutageShards routage = new RoutageShards(List.of("jdbc:shard1"), 1, 2);
+        try {
+            routage.initialiserPremierId(jdbcTemplate, tables);
+            assertEquals(58, routage.getPremierId());
+            assertEquals(0, routage.shardDe(41L));
+            assertEquals(0, routage.shardDe(57L));
+            assertEquals(1, routage.shardDe(59L));
+        } finally {
+            routage.arreter();
+        }
+
+        // Redémarrage : le premier ID enregistré est relu, même après de nouveaux ID sur la base principale
+        principale.update("INSERT INTO clients (id) VALUES (60)");
+        RoutageShards redemarrage = new RoutageShards(List.of("jdbc:shard1"), 1, 2);
+        try {
+            redemarrage.initialiserPremierId(jdbcTemplate, tables);
+            assertEquals(58, redemarrage.getPremierId());
+        } finally {
+            redemarrage.arreter();
+        }
+
+        RoutageShards autreNombre = new RoutageShards(List.of("jdbc:shard1", "jdbc:shard2"), 1, 2);
+        try {
+            assertThrows(IllegalStateException.class, () -> autreNombre.initialiserPremierId(jdbcTemplate, tables));
+        } finally {
+            autreNombre.arreter();
+        }
+    }
+
+    private static DataSource base(String nom) {
+        DataSource base = new DriverManagerDataSource("jdbc:h2:mem:" + nom + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(base);
+        jdbcTemplate.execute("CREATE TABLE clients (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE factures (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE partitionnement (id INT PRIMARY KEY, premier_id BIGINT NOT NULL, nombre_shards INT NOT NULL)");
+        return base;
+    }
+}
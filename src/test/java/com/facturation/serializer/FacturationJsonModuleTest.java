@@ -0,0 +1,66 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Client;
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.Produit;
+import com.facturation.model.TauxTva;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Vérifie que les sérialiseurs dédiés produisent exactement le même JSON que l'introspection Jackson
+ */
+class FacturationJsonModuleTest {
+
+    private final ObjectMapper introspection = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper dedie = Jackson2ObjectMapperBuilder.json().modulesToInstall(new FacturationJsonModule()).build();
+
+    @Test
+    void factureIdentiqueOctetParOctet() throws Exception {
+        Facture facture = creerFacture();
+        assertArrayEquals(introspection.writeValueAsBytes(facture), dedie.writeValueAsBytes(facture));
+        assertArrayEquals(introspection.writeValueAsBytes(List.of(facture, new Facture())),
+                dedie.writeValueAsBytes(List.of(facture, new Facture())));
+    }
+
+    @Test
+    void clientIdentiqueOctetParOctet() throws Exception {
+        Facture facture = creerFacture();
+        assertArrayEquals(introspection.writeValueAsBytes(facture.getClient()), dedie.writeValueAsBytes(facture.getClient()));
+    }
+
+    static Facture creerFacture() {
+        Client client = new Client("Entreprise ABC", "contact@abc.com", "12345678901234");
+        client.setId(1L);
+        client.setDateCreation(LocalDateTime.of(2024, 1, 2, 10, 30, 15, 123456000));
+
+        Facture facture = new Facture(client);
+        facture.setId(7L);
+        facture.setDateFacture(LocalDate.of(2024, 1, 15));
+        client.getFactures().add(facture);
+
+        LigneFacture libre = new LigneFacture("Développement web", 10, new BigDecimal("50.00"), TauxTva.VINGT);
+        libre.setId(1L);
+        facture.ajouterLigne(libre);
+
+        LigneFacture reduite = new LigneFacture("Livres", 3, new BigDecimal("12.35"), TauxTva.CINQ_CINQ);
+        reduite.setId(2L);
+        facture.ajouterLigne(reduite);
+
+        Produit produit = new Produit(3L, "HEB-01", "Hébergement", new BigDecimal("25.00"), TauxTva.DIX, true);
+        LigneFacture catalogue = LigneFacture.depuisProduit(produit, 2);
+        catalogue.setId(3L);
+        catalogue.setPrixUnitaireHt(new BigDecimal("20.00"));
+        facture.ajouterLigne(catalogue);
+        return facture;
+    }
+}
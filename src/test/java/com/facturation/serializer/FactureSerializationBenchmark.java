@@ -0,0 +1,66 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.TauxTva;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH comparant la sérialisation par introspection et les sérialiseurs dédiés
+ * Lancement : mvn test-compile puis exécuter main() depuis l'IDE (ou java -cp avec le classpath de test)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FactureSerializationBenchmark {
+
+    @Param({"100"})
+    public int nombreFactures;
+
+    @Param({"10"})
+    public int lignesParFacture;
+
+    private final ObjectMapper introspection = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper dedie = Jackson2ObjectMapperBuilder.json().modulesToInstall(new FacturationJsonModule()).build();
+    private List<Facture> factures;
+
+    @Setup
+    public void preparer() {
+        factures = new ArrayList<>(nombreFactures);
+        for (int i = 0; i < nombreFactures; i++) {
+            Facture facture = FacturationJsonModuleTest.creerFacture();
+            facture.setId((long) i);
+            for (int j = 0; j < lignesParFacture; j++) {
+                facture.ajouterLigne(new LigneFacture("Prestation " + j, j + 1, new BigDecimal("19.99"), TauxTva.VINGT));
+            }
+            factures.add(facture);
+        }
+    }
+
+    @Benchmark
+    public byte[] introspection() throws Exception {
+        return introspection.writeValueAsBytes(factures);
+    }
+
+    @Benchmark
+    public byte[] serialiseursDedies() throws Exception {
+        return dedie.writeValueAsBytes(factures);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FactureSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
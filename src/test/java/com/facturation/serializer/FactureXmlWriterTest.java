@@ -0,0 +1,109 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.FormatFactureXml;
+import com.facturation.model.Vendeur;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie les documents UBL et CII : conformité aux schémas XSD, ventilation de la TVA par catégorie et totaux cohérents
+ */
+class FactureXmlWriterTest {
+
+    private final FactureXmlWriter writer = new FactureXmlWriter(
+            new Vendeur("Vendeur SAS", "98765432109876", "FR12987654321", "1 rue de la Paix", "75002", "Paris", "FR", 30));
+
+    @Test
+    void documentsConformesAuxSchemas() throws Exception {
+        // Schémas importés par UBL sans emplacement, chargés en premier
+        valider(FormatFactureXml.UBL, "schemas/CCTS_CCT_SchemaModule.xsd", "schemas/xmldsig-core-schema.xsd",
+                "schemas/XAdES01903v132-201601.xsd", "schemas/XAdES01903v141-201601.xsd",
+                "external/schemas/ubl21/maindoc/UBL-Invoice-2.1.xsd");
+        valider(FormatFactureXml.CII, "external/schemas/d16b/data/standard/CrossIndustryInvoice_100pD16B.xsd");
+    }
+
+    @Test
+    void adressesEtEcheance() throws Exception {
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        // BR-08 à BR-11 : adresses postales et pays du vendeur et de l'acheteur ; BR-CO-25 : échéance
+        Document ubl = lire(FormatFactureXml.UBL);
+        assertEquals("FR", xpath.evaluate("//*[local-name()='AccountingSupplierParty']//*[local-name()='PostalAddress']"
+                + "/*[local-name()='Country']/*[local-name()='IdentificationCode']", ubl));
+        assertEquals("Paris", xpath.evaluate("//*[local-name()='AccountingSupplierParty']//*[local-name()='CityName']", ubl));
+        assertEquals("FR", xpath.evaluate("//*[local-name()='AccountingCustomerParty']//*[local-name()='PostalAddress']"
+                + "/*[local-name()='Country']/*[local-name()='IdentificationCode']", ubl));
+        assertEquals("2024-02-14", xpath.evaluate("/*/*[local-name()='DueDate']", ubl));
+
+        Document cii = lire(FormatFactureXml.CII);
+        assertEquals("75002", xpath.evaluate("//*[local-name()='SellerTradeParty']/*[local-name()='PostalTradeAddress']"
+                + "/*[local-name()='PostcodeCode']", cii));
+        assertEquals("FR", xpath.evaluate("//*[local-name()='BuyerTradeParty']/*[local-name()='PostalTradeAddress']"
+                + "/*[local-name()='CountryID']", cii));
+        assertEquals("20240214", xpath.evaluate("//*[local-name()='SpecifiedTradePaymentTerms']"
+                + "/*[local-name()='DueDateDateTime']/*[local-name()='DateTimeString']", cii));
+    }
+
+    @Test
+    void ubl() throws Exception {
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        Document document = lire(FormatFactureXml.UBL);
+        // 10 x 50.00 à 20 %, 3 x 12.35 à 5,5 %, 2 x 20.00 à 10 %
+        assertEquals("3", xpath.evaluate("count(/*/*[local-name()='TaxTotal']/*[local-name()='TaxSubtotal'])", document));
+        assertEquals("106.04", xpath.evaluate("/*/*[local-name()='TaxTotal']/*[local-name()='TaxAmount']", document));
+        assertEquals("577.05", xpath.evaluate("//*[local-name()='TaxExclusiveAmount']", document));
+        assertEquals("683.09", xpath.evaluate("//*[local-name()='PayableAmount']", document));
+        assertEquals("2.04", xpath.evaluate("//*[local-name()='TaxSubtotal'][*[local-name()='TaxCategory']"
+                + "/*[local-name()='Percent']='5.5']/*[local-name()='TaxAmount']", document));
+        assertEquals("Hébergement", xpath.evaluate("//*[local-name()='InvoiceLine'][3]//*[local-name()='Name']", document));
+    }
+
+    @Test
+    void cii() throws Exception {
+        XPath xpath = XPathFactory.newInstance().newXPath();
+        Document document = lire(FormatFactureXml.CII);
+        assertEquals("20240115", xpath.evaluate("//*[local-name()='DateTimeString']", document));
+        assertEquals("3", xpath.evaluate("count(//*[local-name()='ApplicableHeaderTradeSettlement']"
+                + "/*[local-name()='ApplicableTradeTax'])", document));
+        assertEquals("106.04", xpath.evaluate("//*[local-name()='TaxTotalAmount']", document));
+        assertEquals("683.09", xpath.evaluate("//*[local-name()='GrandTotalAmount']", document));
+        assertEquals("12345678901234", xpath.evaluate("//*[local-name()='BuyerTradeParty']"
+                + "/*[local-name()='SpecifiedLegalOrganization']/*[local-name()='ID']", document));
+    }
+
+    private Document lire(FormatFactureXml format) throws Exception {
+        DocumentBuilderFactory fabrique = DocumentBuilderFactory.newInstance();
+        fabrique.setNamespaceAware(true);
+        return fabrique.newDocumentBuilder().parse(new ByteArrayInputStream(ecrire(format)));
+    }
+
+    private byte[] ecrire(FormatFactureXml format) {
+        Facture facture = FacturationJsonModuleTest.creerFacture();
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        writer.ecrire(facture, format, sortie);
+        return sortie.toByteArray();
+    }
+
+    // Schémas chargés depuis le classpath pour que leurs imports relatifs soient résolus dans le jar
+    private void valider(FormatFactureXml format, String... xsd) throws Exception {
+        Source[] sources = new Source[xsd.length];
+        for (int i = 0; i < xsd.length; i++) {
+            sources[i] = new StreamSource(getClass().getClassLoader().getResource(xsd[i]).toExternalForm());
+        }
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(sources);
+        schema.newValidator().validate(new StreamSource(new ByteArrayInputStream(ecrire(format))));
+    }
+}
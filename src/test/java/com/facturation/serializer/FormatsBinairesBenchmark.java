@@ -0,0 +1,113 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.TauxTva;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmark JMH comparant taille et temps d'écriture/lecture d'une liste de factures en JSON,
+ * JSON compressé (gzip), CBOR et Smile
+ * Les tailles sont affichées au démarrage de chaque fork
+ * Lancement : mvn test-compile puis exécuter main() depuis l'IDE (ou java -cp avec le classpath de test)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatsBinairesBenchmark {
+
+    @Param({"500"})
+    public int nombreFactures;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+    private List<Facture> factures;
+    private byte[] octetsJson;
+    private byte[] octetsCbor;
+    private byte[] octetsSmile;
+
+    @Setup
+    public void preparer() throws IOException {
+        factures = new ArrayList<>(nombreFactures);
+        for (int i = 0; i < nombreFactures; i++) {
+            Facture facture = FacturationJsonModuleTest.creerFacture();
+            facture.setId((long) i);
+            for (int j = 0; j < 5; j++) {
+                facture.ajouterLigne(new LigneFacture("Prestation " + j, j + 1, new BigDecimal("19.99"), TauxTva.VINGT));
+            }
+            factures.add(facture);
+        }
+        octetsJson = json.writeValueAsBytes(factures);
+        octetsCbor = cbor.writeValueAsBytes(factures);
+        octetsSmile = smile.writeValueAsBytes(factures);
+        System.out.printf("%nTailles pour %d factures : JSON %d o, JSON gzip %d o, CBOR %d o, Smile %d o%n",
+                nombreFactures, octetsJson.length, gzip(octetsJson).length, octetsCbor.length, octetsSmile.length);
+    }
+
+    @Benchmark
+    public byte[] ecritureJson() throws IOException {
+        return json.writeValueAsBytes(factures);
+    }
+
+    @Benchmark
+    public byte[] ecritureJsonGzip() throws IOException {
+        return gzip(json.writeValueAsBytes(factures));
+    }
+
+    @Benchmark
+    public byte[] ecritureCbor() throws IOException {
+        return cbor.writeValueAsBytes(factures);
+    }
+
+    @Benchmark
+    public byte[] ecritureSmile() throws IOException {
+        return smile.writeValueAsBytes(factures);
+    }
+
+    @Benchmark
+    public JsonNode lectureJson() throws IOException {
+        return json.readTree(octetsJson);
+    }
+
+    @Benchmark
+    public JsonNode lectureCbor() throws IOException {
+        return cbor.readTree(octetsCbor);
+    }
+
+    @Benchmark
+    public JsonNode lectureSmile() throws IOException {
+        return smile.readTree(octetsSmile);
+    }
+
+    private static byte[] gzip(byte[] octets) throws IOException {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream(octets.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(sortie)) {
+            gzip.write(octets);
+        }
+        return sortie.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FormatsBinairesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
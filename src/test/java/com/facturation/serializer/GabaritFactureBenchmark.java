@@ -0,0 +1,68 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.TauxTva;
+import com.facturation.model.Vendeur;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH du rendu HTML d'une facture (une opération = un document) :
+ * gabarit compilé une fois, comparé à une analyse du gabarit à chaque document
+ * Lancement : mvn test-compile puis exécuter main() depuis l'IDE (ou java -cp avec le classpath de test)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GabaritFactureBenchmark {
+
+    @Param({"10"})
+    public int lignesParFacture;
+
+    private final Vendeur vendeur = new Vendeur("Vendeur SAS", "98765432109876", "FR12987654321",
+            "1 rue de la Paix", "75002", "Paris", "FR", 30);
+    private String source;
+    private GabaritFacture gabarit;
+    private Facture facture;
+
+    @Setup
+    public void preparer() {
+        try (InputStream flux = getClass().getResourceAsStream("/gabarits/facture.html")) {
+            source = new String(flux.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        gabarit = GabaritFacture.compiler(source);
+        facture = FacturationJsonModuleTest.creerFacture();
+        for (int j = 0; j < lignesParFacture; j++) {
+            facture.ajouterLigne(new LigneFacture("Prestation " + j, j + 1, new BigDecimal("19.99"), TauxTva.VINGT));
+        }
+    }
+
+    @Benchmark
+    public byte[] gabaritCompile() {
+        return gabarit.rendre(facture, vendeur);
+    }
+
+    @Benchmark
+    public byte[] gabaritAnalyseAChaqueDocument() {
+        return GabaritFacture.compiler(source).rendre(facture, vendeur);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GabaritFactureBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,52 @@
+package com.facturation.serializer;
+
+import com.facturation.model.Vendeur;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie la compilation et le rendu du gabarit HTML des factures
+ */
+class GabaritFactureTest {
+
+    private final Vendeur vendeur = new Vendeur("Vendeur <SAS>", "98765432109876", "FR12987654321",
+            "1 rue de la Paix", "75002", "Paris", "FR", 30);
+
+    @Test
+    void sectionsEtChampsEchappes() {
+        GabaritFacture gabarit = GabaritFacture.compiler(
+                "{{vendeurNom}}|{{#lignes}}{{description}}:{{montantHt}};{{/lignes}}|{{#tva}}{{taux}}={{montant}};{{/tva}}|{{totalTtc}}");
+        String document = new String(gabarit.rendre(FacturationJsonModuleTest.creerFacture(), vendeur), StandardCharsets.UTF_8);
+        assertEquals("Vendeur &lt;SAS&gt;|Développement web:500,00 €;Livres:37,05 €;Hébergement:40,00 €;"
+                + "|5,5 %=2,04 €;10 %=4,00 €;20 %=100,00 €;|683,09 €", document);
+    }
+
+    @Test
+    void gabaritParDefaut() throws IOException {
+        try (InputStream source = getClass().getResourceAsStream("/gabarits/facture.html")) {
+            GabaritFacture gabarit = GabaritFacture.compiler(new String(source.readAllBytes(), StandardCharsets.UTF_8));
+            String document = new String(gabarit.rendre(FacturationJsonModuleTest.creerFacture(), vendeur), StandardCharsets.UTF_8);
+            assertTrue(document.contains("<td class=\"nombre\">683,09 €</td>"));
+        }
+    }
+
+    @Test
+    void gabaritInvalide() {
+        assertThrows(IllegalArgumentException.class, () -> GabaritFacture.compiler("{{inconnu}}"));
+        assertThrows(IllegalArgumentException.class, () -> GabaritFacture.compiler("{{#lignes}}{{description}}"));
+        assertThrows(IllegalArgumentException.class, () -> GabaritFacture.compiler("{{#lignes}}{{/tva}}"));
+    }
+
+    @Test
+    void separateurDesMilliers() {
+        assertEquals("-1\u202F234\u202F567,89 €", GabaritFacture.montant(new BigDecimal("-1234567.891")));
+    }
+}
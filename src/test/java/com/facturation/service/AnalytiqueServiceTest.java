@@ -0,0 +1,66 @@
+package com.facturation.service;
+
+import com.facturation.model.DimensionAnalytique;
+import com.facturation.model.TauxTva;
+import com.facturation.service.AnalytiqueService.Groupe;
+import com.facturation.service.AnalytiqueService.Statistiques;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie la mise à jour incrémentale de l'instantané analytique : l'ajout d'une ligne n'ajoute que cette ligne,
+ * la modification d'une facture remplace toutes ses lignes
+ */
+@SpringBootTest
+class AnalytiqueServiceTest {
+
+    @Autowired
+    private AnalytiqueService analytiqueService;
+
+    @Autowired
+    private FactureService factureService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void ajoutDeLigneSansLignesMortes() {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                "Analytique", "ajout@analytique.test", "79000000000001", LocalDateTime.now());
+        Long clientId = jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, "79000000000001");
+        Long factureId = factureService.createFacture(clientId, LocalDate.of(2024, 9, 1)).getId();
+        Statistiques avant = analytiqueService.getStatistiques();
+
+        for (int i = 1; i <= 3; i++) {
+            factureService.ajouterLigneFacture(factureId, "Ligne " + i, i, new BigDecimal("10.00"), TauxTva.VINGT);
+        }
+
+        Statistiques apresAjouts = analytiqueService.getStatistiques();
+        assertEquals(avant.lignes() + 3, apresAjouts.lignes());
+        assertEquals(avant.lignesSupprimees(), apresAjouts.lignesSupprimees());
+        assertEquals(List.of(new Groupe(clientId, null, null, new BigDecimal("60.00"), new BigDecimal("12.00"),
+                new BigDecimal("72.00"), 3)), groupes(clientId));
+
+        // Modification de la facture : ses lignes sont retirées puis ajoutées de nouveau
+        factureService.updateFacture(factureId, clientId, LocalDate.of(2024, 9, 2));
+
+        Statistiques apresModification = analytiqueService.getStatistiques();
+        assertEquals(apresAjouts.lignes(), apresModification.lignes());
+        assertEquals(apresAjouts.lignesSupprimees() + 3, apresModification.lignesSupprimees());
+        assertEquals(3, groupes(clientId).get(0).nombreLignes());
+    }
+
+    private List<Groupe> groupes(Long clientId) {
+        return analytiqueService.agreger(Set.of(DimensionAnalytique.CLIENT), null, null, clientId, null).groupes();
+    }
+}
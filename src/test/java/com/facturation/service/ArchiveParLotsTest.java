@@ -0,0 +1,57 @@
+package com.facturation.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Vérifie l'écriture d'une archive par pages d'ID croissants : ordre des documents, documents absents ignorés,
+ * arrêt sur une page incomplète et contexte de persistance vidé après chaque lot
+ */
+class ArchiveParLotsTest {
+
+    @Test
+    void documentsEcritsDansLOrdrePageParPage() throws Exception {
+        EntityManager entityManager = mock(EntityManager.class);
+        List<Long> curseurs = new ArrayList<>();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        long nombre = ArchiveParLots.ecrire(archive, 2, entityManager,
+                apresId -> {
+                    curseurs.add(apresId);
+                    return LongStream.rangeClosed(apresId + 1, Math.min(apresId + 2, 5)).boxed().toList();
+                },
+                id -> id,
+                ids -> ids.stream()
+                        // Facture 3 supprimée entre la lecture de la page et son chargement
+                        .map(id -> new ArchiveParLots.Entree("facture-" + id, id == 3 ? null
+                                : CompletableFuture.completedFuture(("document " + id).getBytes(StandardCharsets.UTF_8))))
+                        .toList());
+
+        assertEquals(4, nombre);
+        assertEquals(List.of(0L, 2L, 4L), curseurs);
+        verify(entityManager, times(3)).clear();
+        List<String> documents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            for (ZipEntry entree = zip.getNextEntry(); entree != null; entree = zip.getNextEntry()) {
+                documents.add(entree.getName() + "=" + new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(List.of("facture-1=document 1", "facture-2=document 2", "facture-4=document 4",
+                "facture-5=document 5"), documents);
+    }
+}
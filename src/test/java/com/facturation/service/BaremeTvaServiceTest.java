@@ -0,0 +1,64 @@
+package com.facturation.service;
+
+import com.facturation.model.TauxTva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie que le rafraîchissement périodique du barème invalide les documents rendus en cache
+ * lorsqu'une période de TVA a été modifiée par une autre instance, et seulement dans ce cas
+ */
+@SpringBootTest
+class BaremeTvaServiceTest {
+
+    @Autowired
+    private BaremeTvaService baremeTvaService;
+
+    @Autowired
+    private RenduFactureService renduFactureService;
+
+    @Autowired
+    private FactureService factureService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void documentsEnCacheInvalidesQuandLeBaremeChange() {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                "Barème", "bareme@tva.test", "75000000000001", LocalDateTime.now());
+        Long clientId = jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, "75000000000001");
+        Long factureId = factureService.createFacture(clientId, LocalDate.of(2040, 6, 1)).getId();
+        factureService.ajouterLigneFacture(factureId, "Prestation", 1, new BigDecimal("100.00"), TauxTva.VINGT);
+
+        byte[] avant = renduFactureService.rendreFacture(factureId);
+        // Barème inchangé : le document reste servi depuis le cache
+        baremeTvaService.rafraichir();
+        assertSame(avant, renduFactureService.rendreFacture(factureId));
+
+        // Période créée par une autre instance, visible au prochain rafraîchissement
+        jdbcTemplate.update("INSERT INTO taux_tva_periodes (categorie, taux, date_effet) VALUES (?, ?, ?)",
+                TauxTva.VINGT.name(), new BigDecimal("25.00"), LocalDate.of(2040, 1, 1));
+        try {
+            baremeTvaService.rafraichir();
+            String apres = new String(renduFactureService.rendreFacture(factureId), StandardCharsets.UTF_8);
+            assertFalse(apres.contains("120,00 €"), apres);
+            assertTrue(apres.contains("Total TTC</td><td class=\"nombre\">125,00 €"), apres);
+        } finally {
+            // Barème partagé avec les autres tests
+            jdbcTemplate.update("DELETE FROM taux_tva_periodes WHERE date_effet = ?", LocalDate.of(2040, 1, 1));
+            baremeTvaService.rafraichir();
+        }
+    }
+}
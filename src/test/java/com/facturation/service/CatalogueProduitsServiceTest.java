@@ -0,0 +1,126 @@
+package com.facturation.service;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneFacture;
+import com.facturation.model.Produit;
+import com.facturation.model.TauxTva;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie les lignes de facture référençant le catalogue : stockage de la seule référence et des surcharges,
+ * résolution au chargement depuis l'instantané en mémoire et remplacement de l'instantané par copie sur écriture
+ */
+@SpringBootTest
+class CatalogueProduitsServiceTest {
+
+    @Autowired
+    private CatalogueProduitsService catalogueProduitsService;
+
+    @Autowired
+    private FactureService factureService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void ligneParCodeStockeLaReferenceEtLesSurcharges() {
+        Produit produit = catalogueProduitsService.createProduit(
+                new Produit(null, "CAT-REF", "Hébergement", new BigDecimal("50.00"), TauxTva.VINGT, true));
+        Long factureId = facture("Catalogue", "reference@catalogue.test", "73000000000001");
+
+        factureService.ajouterLigneProduit(factureId, "CAT-REF", 2, null, null, null);
+        factureService.ajouterLigneProduit(factureId, "CAT-REF", 1, "Hébergement", new BigDecimal("45.00"), null);
+
+        List<Map<String, Object>> lignes = jdbcTemplate.queryForList("SELECT description, prix_unitaire_ht, taux_tva, produit_id "
+                + "FROM lignes_facture WHERE facture_id = ? ORDER BY quantite DESC", factureId);
+        assertEquals(2, lignes.size());
+        assertNull(lignes.get(0).get("description"));
+        assertNull(lignes.get(0).get("prix_unitaire_ht"));
+        assertNull(lignes.get(0).get("taux_tva"));
+        assertEquals(produit.getId(), ((Number) lignes.get(0).get("produit_id")).longValue());
+        // Description identique à celle du produit : non stockée, seul le prix est surchargé
+        assertNull(lignes.get(1).get("description"));
+        assertEquals(0, new BigDecimal("45.00").compareTo((BigDecimal) lignes.get(1).get("prix_unitaire_ht")));
+        assertNull(lignes.get(1).get("taux_tva"));
+    }
+
+    @Test
+    void produitResoluAuChargementDepuisLInstantane() {
+        catalogueProduitsService.createProduit(
+                new Produit(null, "CAT-LOAD", "Maintenance", new BigDecimal("80.00"), TauxTva.DIX, true));
+        Long factureId = facture("Chargement", "chargement@catalogue.test", "73000000000002");
+        factureService.ajouterLigneProduit(factureId, "CAT-LOAD", 3, null, null, TauxTva.VINGT);
+
+        Facture chargee = factureService.getFactureById(factureId).orElseThrow();
+
+        LigneFacture ligne = chargee.getLignes().get(0);
+        // Instance partagée par toutes les lignes du produit, sans requête supplémentaire
+        assertSame(catalogueProduitsService.getProduitByCode("CAT-LOAD").orElseThrow(), ligne.getProduit());
+        assertEquals("Maintenance", ligne.getDescription());
+        assertEquals(0, new BigDecimal("240.00").compareTo(ligne.getMontantHt()));
+        assertEquals(TauxTva.VINGT, ligne.getTauxTva());
+        assertEquals("CAT-LOAD", ligne.getProduitCode());
+    }
+
+    @Test
+    void instantaneRemplaceParCopieSurEcriture() {
+        catalogueProduitsService.createProduit(
+                new Produit(null, "CAT-COW", "Formation", new BigDecimal("300.00"), TauxTva.VINGT, true));
+        List<Produit> avant = catalogueProduitsService.getAllProduits();
+        Produit publie = catalogueProduitsService.getProduitByCode("CAT-COW").orElseThrow();
+
+        // Produit créé par une autre instance : visible après le rafraîchissement seulement
+        jdbcTemplate.update("INSERT INTO produits (code, description, prix_unitaire_ht, taux_tva, actif) VALUES (?, ?, ?, ?, ?)",
+                "CAT-EXT", "Audit", new BigDecimal("900.00"), TauxTva.VINGT.name(), true);
+        assertTrue(catalogueProduitsService.getProduitByCode("CAT-EXT").isEmpty());
+        catalogueProduitsService.rafraichir();
+        assertEquals("Audit", catalogueProduitsService.getProduitByCode("CAT-EXT").orElseThrow().getDescription());
+        assertFalse(avant.stream().anyMatch(produit -> produit.getCode().equals("CAT-EXT")));
+
+        catalogueProduitsService.setActif("CAT-COW", false);
+        assertFalse(catalogueProduitsService.getProduitByCode("CAT-COW").orElseThrow().isActif());
+        // L'instance déjà publiée, partagée entre threads, n'est pas modifiée
+        assertTrue(publie.isActif());
+    }
+
+    @Test
+    void produitReferenceIntrouvableRefuse() {
+        Long factureId = facture("Produit manquant", "manquant@catalogue.test", "73000000000003");
+        jdbcTemplate.update("INSERT INTO lignes_facture (facture_id, quantite, produit_id) VALUES (?, ?, ?)",
+                factureId, 1, 999_999_999L);
+        try {
+            RuntimeException erreur = assertThrows(RuntimeException.class, () -> factureService.getFactureById(factureId));
+            Throwable cause = NestedExceptionUtils.getMostSpecificCause(erreur);
+            assertInstanceOf(IllegalStateException.class, cause);
+            assertTrue(cause.getMessage().contains("Produit 999999999"), cause.getMessage());
+        } finally {
+            // Base partagée avec les autres tests
+            jdbcTemplate.update("DELETE FROM lignes_facture WHERE facture_id = ?", factureId);
+        }
+    }
+
+    private Long facture(String nom, String email, String siret) {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                nom, email, siret, LocalDateTime.now());
+        Long clientId = jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, siret);
+        return factureService.createFacture(clientId, LocalDate.of(2024, 5, 1)).getId();
+    }
+}
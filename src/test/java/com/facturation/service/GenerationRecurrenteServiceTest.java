@@ -0,0 +1,88 @@
+package com.facturation.service;
+
+import com.facturation.model.LigneModele;
+import com.facturation.model.StatutGeneration;
+import com.facturation.model.TauxTva;
+import com.facturation.service.GenerationRecurrenteService.RapportGeneration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vérifie la reprise d'une génération interrompue : les lots terminés sont ignorés, les autres traités une seule fois
+ */
+@SpringBootTest
+class GenerationRecurrenteServiceTest {
+
+    @Autowired
+    private GenerationRecurrenteService generationRecurrenteService;
+
+    @Autowired
+    private ModeleFactureRecurrenteService modeleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void repriseSansDoublons() {
+        Long termine = client("Lot terminé", "termine@recurrence.test", "72000000000001");
+        Long enAttente = client("Lot en attente", "attente@recurrence.test", "72000000000002");
+        modeleService.createModele(termine, lignes());
+        // Plus de modèles que la taille d'un flush : le contexte de persistance est vidé en cours de lot
+        for (int i = 0; i < 51; i++) {
+            modeleService.createModele(enAttente, lignes());
+        }
+
+        // Génération interrompue après la validation du premier lot
+        LocalDate dateFacture = LocalDate.of(2031, 3, 1);
+        jdbcTemplate.update("INSERT INTO generations_recurrentes (periode, date_facture, statut, date_debut) VALUES (?, ?, ?, ?)",
+                "2031-03", dateFacture, StatutGeneration.EN_COURS.name(), LocalDateTime.now());
+        Long generationId = jdbcTemplate.queryForObject("SELECT id FROM generations_recurrentes WHERE periode = ?",
+                Long.class, "2031-03");
+        String lot = "INSERT INTO lots_generation (generation_id, premier_client_id, dernier_client_id, statut, nombre_factures) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.update(lot, generationId, termine, termine, StatutGeneration.TERMINEE.name(), 1);
+        jdbcTemplate.update(lot, generationId, enAttente, enAttente, StatutGeneration.EN_ATTENTE.name(), 0);
+
+        RapportGeneration reprise = generationRecurrenteService.genererPeriode(YearMonth.of(2031, 3), null);
+
+        assertEquals(StatutGeneration.TERMINEE, reprise.statut());
+        assertEquals(1, reprise.lotsTraites());
+        assertEquals(51, reprise.nombreFactures());
+        assertEquals(0, factures(termine, dateFacture));
+        assertEquals(51, factures(enAttente, dateFacture));
+        assertEquals(51, jdbcTemplate.queryForObject("SELECT nombre_factures FROM lots_generation "
+                + "WHERE generation_id = ? AND premier_client_id = ? AND statut = 'TERMINEE'", Integer.class, generationId, enAttente));
+
+        RapportGeneration relance = generationRecurrenteService.genererPeriode(YearMonth.of(2031, 3), null);
+
+        assertEquals(0, relance.lotsTraites());
+        assertEquals(0, relance.nombreFactures());
+        assertEquals(51, factures(enAttente, dateFacture));
+    }
+
+    private Long client(String nom, String email, String siret) {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                nom, email, siret, LocalDateTime.now());
+        return jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, siret);
+    }
+
+    private int factures(Long clientId, LocalDate dateFacture) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM factures WHERE client_id = ? AND date_facture = ?",
+                Integer.class, clientId, dateFacture);
+    }
+
+    private static List<LigneModele> lignes() {
+        return new ArrayList<>(List.of(new LigneModele("Abonnement", 1, new BigDecimal("10.00"), TauxTva.VINGT)));
+    }
+}
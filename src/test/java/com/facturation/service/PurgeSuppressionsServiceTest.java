@@ -0,0 +1,119 @@
+package com.facturation.service;
+
+import com.facturation.model.Facture;
+import com.facturation.model.LigneModele;
+import com.facturation.model.TauxTva;
+import com.facturation.repository.ClientRepository;
+import com.facturation.repository.FactureRepository;
+import com.facturation.repository.ModeleFactureRecurrenteRepository;
+import com.facturation.repository.RoutageShards;
+import com.facturation.service.PurgeSuppressionsService.RapportPurge;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie que les clients et factures supprimés logiquement sont masqués de toutes les requêtes,
+ * puis purgés par lots en effaçant les lignes enfants avant leurs parents
+ */
+@SpringBootTest
+class PurgeSuppressionsServiceTest {
+
+    @Autowired
+    private ClientService clientService;
+
+    @Autowired
+    private FactureService factureService;
+
+    @Autowired
+    private ModeleFactureRecurrenteService modeleService;
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private ModeleFactureRecurrenteRepository modeleRepository;
+
+    @Autowired
+    private RoutageShards routageShards;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void suppressionsMasqueesPuisPurgeesEnfantsAvantParents() {
+        Long supprime = client("Client supprimé", "supprime@purge.test", "74000000000001");
+        Long conserve = client("Client conservé", "conserve@purge.test", "74000000000002");
+        Long factureClientSupprime = facture(supprime, 2);
+        Long factureSupprimee = facture(conserve, 3);
+        Long factureConservee = facture(conserve, 1);
+        modeleService.createModele(supprime, new ArrayList<>(List.of(
+                new LigneModele("Abonnement", 1, new BigDecimal("10.00"), TauxTva.VINGT),
+                new LigneModele("Support", 1, new BigDecimal("5.00"), TauxTva.VINGT))));
+
+        clientService.deleteClient(supprime);
+        factureService.deleteFacture(factureSupprimee);
+
+        // Lignes toujours en base, mais exclues de toutes les requêtes
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM factures WHERE date_suppression IS NOT NULL "
+                + "AND id IN (?, ?)", Integer.class, factureClientSupprime, factureSupprimee));
+        assertTrue(clientService.getClientById(supprime).isEmpty());
+        assertFalse(clientService.getAllClients().stream().anyMatch(client -> client.getId().equals(supprime)));
+        assertTrue(factureService.getFactureById(factureClientSupprime).isEmpty());
+        assertTrue(factureService.getFactureById(factureSupprimee).isEmpty());
+        assertTrue(factureService.getFacturesByClientId(supprime).isEmpty());
+        assertEquals(List.of(factureConservee), factureService.getFacturesByClientId(conserve).stream().map(Facture::getId).toList());
+        assertFalse(factureService.getAllFactures().stream()
+                .anyMatch(facture -> facture.getId().equals(factureClientSupprime) || facture.getId().equals(factureSupprimee)));
+        assertTrue(modeleRepository.findClientIdsActifs().stream().noneMatch(supprime::equals));
+
+        // Lots d'une ligne : chaque table est vidée en plusieurs transactions, et les clés étrangères
+        // font échouer toute suppression d'un parent avant ses enfants
+        PurgeSuppressionsService purge = new PurgeSuppressionsService(factureRepository, clientRepository, modeleRepository,
+                routageShards, transactionManager, 1, 0);
+        RapportPurge rapport = purge.purger();
+
+        assertEquals(new RapportPurge(5, 2, 2, 1, 1), rapport);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM clients WHERE id = ?", Integer.class, supprime));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM factures WHERE client_id = ? OR id = ?",
+                Integer.class, supprime, factureSupprimee));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lignes_facture WHERE facture_id IN (?, ?)",
+                Integer.class, factureClientSupprime, factureSupprimee));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM modeles_facture_recurrente WHERE client_id = ?",
+                Integer.class, supprime));
+        assertEquals(1, factureService.getFactureById(factureConservee).orElseThrow().getLignes().size());
+        assertEquals(new RapportPurge(0, 0, 0, 0, 0), purge.purger());
+    }
+
+    private Long client(String nom, String email, String siret) {
+        jdbcTemplate.update("INSERT INTO clients (nom, email, siret, date_creation) VALUES (?, ?, ?, ?)",
+                nom, email, siret, LocalDateTime.now());
+        return jdbcTemplate.queryForObject("SELECT id FROM clients WHERE siret = ?", Long.class, siret);
+    }
+
+    private Long facture(Long clientId, int nombreLignes) {
+        Long factureId = factureService.createFacture(clientId, LocalDate.of(2024, 6, 1)).getId();
+        for (int i = 0; i < nombreLignes; i++) {
+            factureService.ajouterLigneFacture(factureId, "Ligne " + i, 1, new BigDecimal("20.00"), TauxTva.VINGT);
+        }
+        return factureId;
+    }
+}
@@ -0,0 +1,101 @@
+package com.facturation.service;
+
+import com.facturation.exception.ConflitException;
+import com.facturation.repository.BailRelaisRepository;
+import com.facturation.repository.ChangementRepository;
+import com.facturation.repository.RoutageShards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Vérifie qu'une seule instance relaie l'outbox et sert le flux des changements,
+ * qu'une autre instance reprend le relais quand le bail expire, et que les offsets du journal de l'ancien relais
+ * sont alors refusés au lieu de désigner une autre position dans le nouveau journal
+ */
+@SpringBootTest
+class RelaisChangementsServiceTest {
+
+    @Autowired
+    private RelaisChangementsService relaisChangementsService;
+
+    @Autowired
+    private ChangementRepository changementRepository;
+
+    @Autowired
+    private BailRelaisRepository bailRelaisRepository;
+
+    @Autowired
+    private RoutageShards routageShards;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void uneSeuleInstanceRelaie() throws Exception {
+        relaisChangementsService.relayer();
+        assertDoesNotThrow(() -> relaisChangementsService.lire(0, 10));
+
+        RelaisChangementsService autreInstance = autreInstance();
+        try {
+            assertEquals(0, autreInstance.relayer());
+            assertThrows(ConflitException.class, () -> autreInstance.lire(0, 10));
+            assertThrows(ConflitException.class, () -> autreInstance.suivre(0));
+
+            // Relais en panne : son bail n'est plus prolongé et expire
+            jdbcTemplate.update("UPDATE relais_changements_bail SET expiration = ?", LocalDateTime.now().minusSeconds(1));
+            autreInstance.relayer();
+            assertDoesNotThrow(() -> autreInstance.lire(0, 10));
+        } finally {
+            // Libère le bail, repris par le relais du contexte à son prochain passage
+            autreInstance.arreter();
+        }
+    }
+
+    @Test
+    void repriseDuBailRefuseLesOffsetsDuJournalPrecedent() throws Exception {
+        relaisChangementsService.relayer();
+        long offsetAncienRelais = relaisChangementsService.lire(0, 10).suivant();
+
+        RelaisChangementsService autreInstance = autreInstance();
+        try {
+            jdbcTemplate.update("UPDATE relais_changements_bail SET expiration = ?", LocalDateTime.now().minusSeconds(1));
+            autreInstance.relayer();
+
+            assertSame(ConflitException.JOURNAL_PRECEDENT,
+                    assertThrows(ConflitException.class, () -> autreInstance.lire(offsetAncienRelais, 10)));
+            assertSame(ConflitException.JOURNAL_PRECEDENT,
+                    assertThrows(ConflitException.class, () -> autreInstance.suivre(offsetAncienRelais)));
+            // Le consommateur repart du début du nouveau journal, dont les offsets portent une autre génération
+            long offsetNouveauRelais = autreInstance.lire(0, 10).suivant();
+            assertNotEquals(offsetAncienRelais >>> 40, offsetNouveauRelais >>> 40);
+            assertDoesNotThrow(() -> autreInstance.lire(offsetNouveauRelais, 10));
+        } finally {
+            autreInstance.arreter();
+        }
+    }
+
+    private RelaisChangementsService autreInstance() throws Exception {
+        return new RelaisChangementsService(changementRepository, bailRelaisRepository, routageShards, transactionManager,
+                objectMapper, "target/journal-autre-instance-" + UUID.randomUUID() + ".log", 1048576, 500, 200, 30000,
+                1800000, 1);
+    }
+}